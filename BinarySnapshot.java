@@ -0,0 +1,494 @@
+package repository;
+
+import domain.*;
+import interfaces.Persistable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Snapshot nhị phân dạng cột cho products và orders, thay cho việc parse lại CSV khi khởi động.
+// - Chuỗi (id, tên, danh mục, địa chỉ...) mã hóa bằng từ điển, cột chỉ lưu chỉ số int
+// - Ngày lưu epoch day, enum lưu ordinal
+// - Tổng tiền và đơn giá của order lưu long theo Money.SCALE (Money.toMinorExact, như cột tiền trong CSV);
+//   giá product lưu nguyên 64 bit của double. Version 1 lưu mọi giá dạng long, version 2 lưu mọi giá dạng double.
+// - Mỗi product có tag loại; các field riêng của từng loại nằm ở cột riêng của loại đó
+// customers/suppliers không nằm trong snapshot, phải load trước để gắn vào order.
+// load() giải mã hết vào danh sách cục bộ rồi thay vào repository một lần (không qua add(), không ghi change log).
+public class BinarySnapshot implements Persistable {
+    private static final int MAGIC = 0x494E5642; // "INVB"
+    private static final int VERSION = 3;
+    private static final int VERSION_DOUBLES = 2; // vẫn đọc được
+    private static final int VERSION_CENTS = 1;   // vẫn đọc được
+
+    private static final byte ELECTRONICS = 0;
+    private static final byte CLOTHING = 1;
+    private static final byte FOOD = 2;
+    private static final byte FURNITURE = 3;
+
+    private final String filePath;
+    private final ProductStore productRepository;
+    private final OrderRepository orderRepository;
+    private final CustomerRepository customerRepository;
+    private final SupplierRepository supplierRepository;
+
+    public BinarySnapshot(String filePath,
+                          ProductStore productRepository,
+                          OrderRepository orderRepository,
+                          CustomerRepository customerRepository,
+                          SupplierRepository supplierRepository) {
+        this.filePath = filePath;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.customerRepository = customerRepository;
+        this.supplierRepository = supplierRepository;
+    }
+
+    // Đọc products/orders từ các file CSV rồi ghi ra snapshot nhị phân
+    public void convertFromCsv() throws IOException {
+        productRepository.load();
+        orderRepository.load();
+        save();
+    }
+
+    // Đọc snapshot nhị phân rồi ghi lại các file CSV
+    public void convertToCsv() throws IOException {
+        load();
+        productRepository.compact();
+        orderRepository.compact();
+    }
+
+    @Override
+    public void save() throws IOException {
+        Dictionary dictionary = new Dictionary();
+        List<Product> products = productRepository.findAll();
+        List<ImportOrder> importOrders = orderRepository.findAllImportOrders();
+        List<ExportOrder> exportOrders = orderRepository.findAllExportOrders();
+
+        // Mã hóa trước toàn bộ chuỗi để ghi từ điển lên đầu file
+        int[] productIds = new int[products.size()];
+        int[] productNames = new int[products.size()];
+        int[] productCategories = new int[products.size()];
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            productIds[i] = dictionary.encode(product.getId());
+            productNames[i] = dictionary.encode(product.getName());
+            productCategories[i] = dictionary.encode(product.getCategory());
+            if (product instanceof Clothing) {
+                dictionary.encode(((Clothing) product).getSize());
+                dictionary.encode(((Clothing) product).getMaterial());
+            } else if (product instanceof Furniture) {
+                dictionary.encode(((Furniture) product).getDimensions());
+            }
+        }
+        for (ImportOrder order : importOrders) {
+            dictionary.encode(order.getId());
+            dictionary.encode(order.getSupplier() != null ? order.getSupplier().getId() : null);
+            dictionary.encode(order.getWarehouseLocation());
+            for (OrderItem item : order.getItems()) {
+                dictionary.encode(item.getProduct().getId());
+            }
+        }
+        for (ExportOrder order : exportOrders) {
+            dictionary.encode(order.getId());
+            dictionary.encode(order.getCustomer() != null ? order.getCustomer().getId() : null);
+            dictionary.encode(order.getDeliveryAddress());
+            for (OrderItem item : order.getItems()) {
+                dictionary.encode(item.getProduct().getId());
+            }
+        }
+
+        try (SnapshotWriter writer = new SnapshotWriter(filePath)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(writer.asOutputStream(), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            dictionary.writeTo(out);
+
+            writeProducts(out, dictionary, products, productIds, productNames, productCategories);
+            writeImportOrders(out, dictionary, importOrders);
+            writeExportOrders(out, dictionary, exportOrders);
+
+            out.flush();
+            writer.commit();
+        }
+    }
+
+    @Override
+    public void load() throws IOException {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            clear();
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Không phải file snapshot: " + filePath);
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != VERSION_DOUBLES && version != VERSION_CENTS) {
+                throw new IOException("Không hỗ trợ snapshot version " + version);
+            }
+
+            String[] dictionary = Dictionary.readFrom(in);
+            Map<String, Product> products = readProducts(in, dictionary, version);
+            List<ImportOrder> importOrders = readImportOrders(in, dictionary, products, version);
+            List<ExportOrder> exportOrders = readExportOrders(in, dictionary, products, version);
+
+            productRepository.replaceAll(products.values());
+            orderRepository.replaceAll(importOrders, exportOrders);
+        }
+    }
+
+    @Override
+    public String getFilePath() {
+        return filePath;
+    }
+
+    @Override
+    public void clear() {
+        productRepository.clear();
+        orderRepository.clear();
+    }
+
+    private void writeProducts(DataOutputStream out, Dictionary dictionary, List<Product> products,
+                               int[] ids, int[] names, int[] categories) throws IOException {
+        int n = products.size();
+        out.writeInt(n);
+        writeInts(out, ids);
+        for (Product product : products) {
+            out.writeByte(tagOf(product));
+        }
+        writeInts(out, names);
+        writeInts(out, categories);
+        for (Product product : products) {
+            out.writeDouble(product.getImportPrice());
+        }
+        for (Product product : products) {
+            out.writeDouble(product.getSalePrice());
+        }
+        for (Product product : products) {
+            out.writeInt(product.getStockQuantity());
+        }
+
+        // Cột riêng của từng loại, theo thứ tự xuất hiện
+        for (Product product : products) {
+            if (product instanceof Electronics) {
+                out.writeInt(((Electronics) product).getWarrantyMonths());
+            }
+        }
+        for (Product product : products) {
+            if (product instanceof Clothing) {
+                out.writeInt(dictionary.encode(((Clothing) product).getSize()));
+                out.writeInt(dictionary.encode(((Clothing) product).getMaterial()));
+            }
+        }
+        for (Product product : products) {
+            if (product instanceof Food) {
+                out.writeInt((int) ((Food) product).getExpiryDate().toEpochDay());
+            }
+        }
+        for (Product product : products) {
+            if (product instanceof Furniture) {
+                out.writeInt(dictionary.encode(((Furniture) product).getDimensions()));
+                out.writeDouble(((Furniture) product).getWeight());
+            }
+        }
+    }
+
+    private Map<String, Product> readProducts(DataInputStream in, String[] dictionary, int version) throws IOException {
+        int n = in.readInt();
+        int[] ids = readInts(in, n);
+        byte[] tags = new byte[n];
+        in.readFully(tags);
+        int[] names = readInts(in, n);
+        int[] categories = readInts(in, n);
+        double[] importPrices = readAmounts(in, n, version == VERSION_CENTS);
+        double[] salePrices = readAmounts(in, n, version == VERSION_CENTS);
+        int[] stocks = readInts(in, n);
+
+        Product[] products = new Product[n];
+        for (int i = 0; i < n; i++) {
+            if (tags[i] == ELECTRONICS) {
+                products[i] = new Electronics(dictionary[ids[i]], dictionary[names[i]], dictionary[categories[i]],
+                        importPrices[i], salePrices[i], stocks[i], in.readInt());
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (tags[i] == CLOTHING) {
+                String size = decode(dictionary, in.readInt());
+                String material = decode(dictionary, in.readInt());
+                products[i] = new Clothing(dictionary[ids[i]], dictionary[names[i]], dictionary[categories[i]],
+                        importPrices[i], salePrices[i], stocks[i], size, material);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (tags[i] == FOOD) {
+                LocalDate expiryDate = LocalDate.ofEpochDay(in.readInt());
+                products[i] = new Food(dictionary[ids[i]], dictionary[names[i]], dictionary[categories[i]],
+                        importPrices[i], salePrices[i], stocks[i], expiryDate);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (tags[i] == FURNITURE) {
+                String dimensions = decode(dictionary, in.readInt());
+                double weight = in.readDouble();
+                products[i] = new Furniture(dictionary[ids[i]], dictionary[names[i]], dictionary[categories[i]],
+                        importPrices[i], salePrices[i], stocks[i], dimensions, weight);
+            }
+        }
+
+        Map<String, Product> byId = new LinkedHashMap<>();
+        for (Product product : products) {
+            if (product != null) {
+                byId.put(product.getId(), product);
+            }
+        }
+        return byId;
+    }
+
+    private void writeImportOrders(DataOutputStream out, Dictionary dictionary,
+                                   List<ImportOrder> orders) throws IOException {
+        int n = orders.size();
+        int[] ids = new int[n];
+        int[] suppliers = new int[n];
+        int[] dates = new int[n];
+        double[] amounts = new double[n];
+        byte[] statuses = new byte[n];
+        int[] warehouses = new int[n];
+        List<List<OrderItem>> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ImportOrder order = orders.get(i);
+            ids[i] = dictionary.encode(order.getId());
+            suppliers[i] = dictionary.encode(order.getSupplier() != null ? order.getSupplier().getId() : null);
+            dates[i] = (int) order.getOrderDate().toEpochDay();
+            amounts[i] = order.getTotalAmount();
+            statuses[i] = (byte) order.getStatus().ordinal();
+            warehouses[i] = dictionary.encode(order.getWarehouseLocation());
+            items.add(order.getItems());
+        }
+        writeOrderColumns(out, ids, suppliers, dates, amounts, statuses, warehouses);
+        writeItems(out, dictionary, items);
+    }
+
+    private void writeExportOrders(DataOutputStream out, Dictionary dictionary,
+                                   List<ExportOrder> orders) throws IOException {
+        int n = orders.size();
+        int[] ids = new int[n];
+        int[] customers = new int[n];
+        int[] dates = new int[n];
+        double[] amounts = new double[n];
+        byte[] statuses = new byte[n];
+        int[] addresses = new int[n];
+        List<List<OrderItem>> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ExportOrder order = orders.get(i);
+            ids[i] = dictionary.encode(order.getId());
+            customers[i] = dictionary.encode(order.getCustomer() != null ? order.getCustomer().getId() : null);
+            dates[i] = (int) order.getOrderDate().toEpochDay();
+            amounts[i] = order.getTotalAmount();
+            statuses[i] = (byte) order.getStatus().ordinal();
+            addresses[i] = dictionary.encode(order.getDeliveryAddress());
+            items.add(order.getItems());
+        }
+        writeOrderColumns(out, ids, customers, dates, amounts, statuses, addresses);
+        writeItems(out, dictionary, items);
+    }
+
+    // Cột chung của import/export: id, đối tác (supplier/customer), ngày, tổng tiền, trạng thái, địa điểm
+    private void writeOrderColumns(DataOutputStream out, int[] ids, int[] partners, int[] dates,
+                                   double[] amounts, byte[] statuses, int[] locations) throws IOException {
+        out.writeInt(ids.length);
+        writeInts(out, ids);
+        writeInts(out, partners);
+        writeInts(out, dates);
+        for (double amount : amounts) {
+            out.writeLong(Money.toMinorExact(amount));
+        }
+        out.write(statuses);
+        writeInts(out, locations);
+    }
+
+    // Items của từng order: số item mỗi order, rồi các cột product/quantity/unitPrice
+    private void writeItems(DataOutputStream out, Dictionary dictionary,
+                            List<List<OrderItem>> items) throws IOException {
+        int total = 0;
+        for (List<OrderItem> orderItems : items) {
+            out.writeInt(orderItems.size());
+            total += orderItems.size();
+        }
+        out.writeInt(total);
+        for (List<OrderItem> orderItems : items) {
+            for (OrderItem item : orderItems) {
+                out.writeInt(dictionary.encode(item.getProduct().getId()));
+            }
+        }
+        for (List<OrderItem> orderItems : items) {
+            for (OrderItem item : orderItems) {
+                out.writeInt(item.getQuantity());
+            }
+        }
+        for (List<OrderItem> orderItems : items) {
+            for (OrderItem item : orderItems) {
+                out.writeLong(Money.toMinorExact(item.getUnitPrice()));
+            }
+        }
+    }
+
+    private List<ImportOrder> readImportOrders(DataInputStream in, String[] dictionary,
+                                              Map<String, Product> products, int version) throws IOException {
+        int n = in.readInt();
+        int[] ids = readInts(in, n);
+        int[] suppliers = readInts(in, n);
+        int[] dates = readInts(in, n);
+        double[] amounts = readAmounts(in, n, version != VERSION_DOUBLES);
+        byte[] statuses = new byte[n];
+        in.readFully(statuses);
+        int[] warehouses = readInts(in, n);
+        List<List<OrderItem>> items = readItems(in, dictionary, products, n, version);
+
+        OrderStatus[] statusValues = OrderStatus.values();
+        List<ImportOrder> orders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String supplierId = decode(dictionary, suppliers[i]);
+            Supplier supplier = supplierRepository != null && supplierId != null ?
+                    supplierRepository.findById(supplierId) : null;
+
+            ImportOrder order = new ImportOrder(dictionary[ids[i]], LocalDate.ofEpochDay(dates[i]),
+                    amounts[i], statusValues[statuses[i]], supplier,
+                    decode(dictionary, warehouses[i]));
+            order.setItems(items.get(i));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private List<ExportOrder> readExportOrders(DataInputStream in, String[] dictionary,
+                                              Map<String, Product> products, int version) throws IOException {
+        int n = in.readInt();
+        int[] ids = readInts(in, n);
+        int[] customers = readInts(in, n);
+        int[] dates = readInts(in, n);
+        double[] amounts = readAmounts(in, n, version != VERSION_DOUBLES);
+        byte[] statuses = new byte[n];
+        in.readFully(statuses);
+        int[] addresses = readInts(in, n);
+        List<List<OrderItem>> items = readItems(in, dictionary, products, n, version);
+
+        OrderStatus[] statusValues = OrderStatus.values();
+        List<ExportOrder> orders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String customerId = decode(dictionary, customers[i]);
+            Customer customer = customerRepository != null && customerId != null ?
+                    customerRepository.findById(customerId) : null;
+
+            ExportOrder order = new ExportOrder(dictionary[ids[i]], LocalDate.ofEpochDay(dates[i]),
+                    amounts[i], statusValues[statuses[i]], customer,
+                    decode(dictionary, addresses[i]));
+            order.setItems(items.get(i));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private List<List<OrderItem>> readItems(DataInputStream in, String[] dictionary,
+                                            Map<String, Product> products, int orderCount,
+                                            int version) throws IOException {
+        int[] counts = readInts(in, orderCount);
+        int total = in.readInt();
+        int[] productIds = readInts(in, total);
+        int[] quantities = readInts(in, total);
+        double[] unitPrices = readAmounts(in, total, version != VERSION_DOUBLES);
+
+        List<List<OrderItem>> items = new ArrayList<>(orderCount);
+        int k = 0;
+        for (int i = 0; i < orderCount; i++) {
+            List<OrderItem> orderItems = new ArrayList<>(counts[i]);
+            for (int j = 0; j < counts[i]; j++, k++) {
+                Product product = products.get(dictionary[productIds[k]]);
+                if (product != null) {
+                    orderItems.add(new OrderItem(product, quantities[k], unitPrices[k]));
+                }
+            }
+            items.add(orderItems);
+        }
+        return items;
+    }
+
+    private static byte tagOf(Product product) {
+        if (product instanceof Electronics) return ELECTRONICS;
+        if (product instanceof Clothing) return CLOTHING;
+        if (product instanceof Food) return FOOD;
+        if (product instanceof Furniture) return FURNITURE;
+        throw new IllegalArgumentException("Loại sản phẩm không hỗ trợ: " + product.getProductType());
+    }
+
+    private static String decode(String[] dictionary, int index) {
+        return index < 0 ? null : dictionary[index];
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int n) throws IOException {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    // minor: cột lưu long theo Money.SCALE, ngược lại lưu 64 bit của double
+    private static double[] readAmounts(DataInputStream in, int n, boolean minor) throws IOException {
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = minor ? Money.toDouble(in.readLong()) : in.readDouble();
+        }
+        return values;
+    }
+
+    // Từ điển chuỗi: mỗi chuỗi khác nhau chỉ lưu một lần, null mã hóa thành -1
+    private static class Dictionary {
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(indexes.size());
+            for (String value : indexes.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        static String[] readFrom(DataInputStream in) throws IOException {
+            String[] values = new String[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+    }
+}
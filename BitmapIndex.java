@@ -0,0 +1,164 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Chỉ mục phụ cho các trường ít giá trị (loại sản phẩm, category, CustomerType, OrderStatus).
+// Mỗi entity giữ một slot cố định theo thứ tự thêm vào; mỗi giá trị của một chiều là một BitSet slot,
+// nên lọc nhiều điều kiện chỉ là and/or trên BitSet rồi đọc ra các slot được bật.
+// Không tự đồng bộ: listener chạy trong khóa ghi của store, truy vấn phải giữ khóa đọc.
+public class BitmapIndex<T> implements EntityStore.Listener<T> {
+    private static final int MIN_GARBAGE_TO_REBUILD = 1024;
+
+    private final List<Function<T, ?>> dimensions;
+    private final List<Map<Object, BitSet>> bitmaps; // chiều -> giá trị -> slot
+    private final List<T> slots;          // slot -> entity, null nếu đã xóa
+    private final List<Object[]> values;  // slot -> giá trị từng chiều lúc được index
+    private final Map<T, Integer> slotIds;
+    private int garbage;
+
+    @SafeVarargs
+    public BitmapIndex(Function<T, ?>... dimensions) {
+        this.dimensions = Arrays.asList(dimensions);
+        this.bitmaps = new ArrayList<>();
+        for (int i = 0; i < dimensions.length; i++) {
+            bitmaps.add(new HashMap<>());
+        }
+        this.slots = new ArrayList<>();
+        this.values = new ArrayList<>();
+        this.slotIds = new IdentityHashMap<>();
+    }
+
+    // Các slot có giá trị key ở chiều dimension (bản sao, có thể and/or tiếp)
+    public BitSet matching(int dimension, Object key) {
+        BitSet bits = bitmaps.get(dimension).get(key);
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    // Hợp các giá trị: slot có giá trị thuộc keys
+    public BitSet matchingAny(int dimension, Collection<?> keys) {
+        BitSet result = new BitSet();
+        for (Object key : keys) {
+            BitSet bits = bitmaps.get(dimension).get(key);
+            if (bits != null) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+
+    public List<T> find(int dimension, Object key) {
+        BitSet bits = bitmaps.get(dimension).get(key);
+        return bits == null ? new ArrayList<>() : collect(bits);
+    }
+
+    // Entity của các slot được bật, theo thứ tự thêm vào
+    public List<T> collect(BitSet bits) {
+        List<T> result = new ArrayList<>(bits.cardinality());
+        for (int slot = bits.nextSetBit(0); slot >= 0; slot = bits.nextSetBit(slot + 1)) {
+            result.add(slots.get(slot));
+        }
+        return result;
+    }
+
+    // Như collect nhưng không tạo danh sách; chỉ dùng trong khóa đọc
+    public Stream<T> stream(BitSet bits) {
+        return bits.stream().mapToObj(slots::get);
+    }
+
+    public int count(int dimension, Object key) {
+        BitSet bits = bitmaps.get(dimension).get(key);
+        return bits == null ? 0 : bits.cardinality();
+    }
+
+    @Override
+    public void added(T entity) {
+        int slot = slots.size();
+        slots.add(entity);
+        values.add(null);
+        slotIds.put(entity, slot);
+        index(slot, entity);
+    }
+
+    @Override
+    public void removed(T entity) {
+        Integer slot = slotIds.remove(entity);
+        if (slot == null) {
+            return;
+        }
+        unindex(slot);
+        slots.set(slot, null);
+        garbage++;
+        if (garbage >= MIN_GARBAGE_TO_REBUILD && garbage >= slotIds.size()) {
+            rebuild();
+        }
+    }
+
+    // Giữ slot cũ, chỉ chuyển bit sang giá trị mới (đổi status của order...)
+    @Override
+    public void replaced(T previous, T current) {
+        Integer slot = slotIds.remove(previous);
+        if (slot == null) {
+            added(current);
+            return;
+        }
+        unindex(slot);
+        slots.set(slot, current);
+        slotIds.put(current, slot);
+        index(slot, current);
+    }
+
+    @Override
+    public void cleared() {
+        for (Map<Object, BitSet> bitmap : bitmaps) {
+            bitmap.clear();
+        }
+        slots.clear();
+        values.clear();
+        slotIds.clear();
+        garbage = 0;
+    }
+
+    private void index(int slot, T entity) {
+        Object[] keys = new Object[dimensions.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = dimensions.get(i).apply(entity);
+            bitmaps.get(i).computeIfAbsent(keys[i], k -> new BitSet()).set(slot);
+        }
+        values.set(slot, keys);
+    }
+
+    private void unindex(int slot) {
+        Object[] keys = values.get(slot);
+        for (int i = 0; i < keys.length; i++) {
+            BitSet bits = bitmaps.get(i).get(keys[i]);
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                bitmaps.get(i).remove(keys[i]);
+            }
+        }
+        values.set(slot, null);
+    }
+
+    // Đánh số lại slot khi slot trống chiếm quá nửa
+    private void rebuild() {
+        List<T> live = new ArrayList<>(slotIds.size());
+        for (T entity : slots) {
+            if (entity != null) {
+                live.add(entity);
+            }
+        }
+        cleared();
+        for (T entity : live) {
+            added(entity);
+        }
+    }
+}
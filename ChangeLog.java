@@ -0,0 +1,164 @@
+package repository;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+// Nhật ký thay đổi ghi nối đuôi vào <file snapshot>.log cho chế độ journal.
+// Mỗi record là "<op>,<dữ liệu>": A/U kèm dòng CSV của entity (ghép bằng Csv), D kèm id.
+// Field trong nháy có thể chứa xuống dòng nên record kết thúc ở '\n' đầu tiên nằm ngoài nháy.
+// load() đọc snapshot rồi phát lại log; compact() ghi snapshot mới và xóa log.
+// Repository ghi log trước rồi mới đổi dữ liệu trong bộ nhớ: append() chỉ trả về khi record đã fsync xuống đĩa,
+// ghi lỗi thì file được cắt về như trước lúc ghi và thay đổi không được áp dụng.
+public class ChangeLog implements Closeable {
+    public static final char ADD = 'A';
+    public static final char UPDATE = 'U';
+    public static final char DELETE = 'D';
+
+    public static final int DEFAULT_COMPACT_THRESHOLD = 10_000;
+
+    private final Path logPath;
+    private FileChannel channel;
+    private int records; // số record chưa được compact (chỉ dùng để quyết định compact)
+
+    public ChangeLog(String snapshotPath) {
+        this.logPath = Paths.get(snapshotPath + ".log");
+    }
+
+    // Các hàm ghi/đọc log đồng bộ trên cùng một khóa: log items dùng chung cho order nhập và xuất
+    public void append(char op, String data) {
+        appendAll(Collections.singletonList(record(op, data)));
+    }
+
+    // Nhiều record (tạo bằng record()) trong một lần ghi và một lần fsync
+    public synchronized void appendAll(List<String> newRecords) {
+        StringBuilder sb = new StringBuilder();
+        for (String record : newRecords) {
+            sb.append(record).append('\n');
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(sb));
+
+        long length = -1;
+        try {
+            length = open().size();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            records += newRecords.size();
+        } catch (IOException e) {
+            discardPartial(length, e);
+            throw new UncheckedIOException("Không ghi được log " + logPath, e);
+        }
+    }
+
+    public static String record(char op, String data) {
+        return op + "," + data;
+    }
+
+    // Độ dài log hiện tại, dùng với rollback() khi một thay đổi ghi vào nhiều log
+    // (vd. order vào import log, items vào items log) mà log sau ghi lỗi
+    public synchronized long mark() {
+        try {
+            return open().size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đọc được log " + logPath, e);
+        }
+    }
+
+    public synchronized void rollback(long mark) {
+        try {
+            open().truncate(mark);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không cắt được log " + logPath, e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    // Bỏ phần record ghi dở để record sau không nối vào sau nó, rồi mở lại ở lần ghi tới
+    private void discardPartial(long length, IOException cause) {
+        try {
+            if (channel != null && length >= 0) {
+                channel.truncate(length);
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Phát lại các record theo thứ tự ghi. Record cuối bị ghi dở (thiếu '\n') được bỏ qua.
+    public synchronized void replay(Replayer replayer) throws IOException {
+        records = 0;
+        if (!Files.exists(logPath)) {
+            return;
+        }
+
+        String content = new String(Files.readAllBytes(logPath), StandardCharsets.UTF_8);
+        CsvQuotes quotes = new CsvQuotes();
+        int start = 0;
+        for (int end = 0; end < content.length(); end++) {
+            char c = content.charAt(end);
+            if (quotes.next(c) != CsvQuotes.ROW_END || c != '\n') {
+                continue;
+            }
+            if (end - start >= 2 && content.charAt(start + 1) == ',') {
+                char[] data = content.substring(start + 2, end).toCharArray();
+                CsvReader reader = new CsvReader(data, 0, data.length);
+                if (reader.next()) {
+                    replayer.replay(content.charAt(start), reader);
+                }
+                records++;
+            }
+            start = end + 1;
+            quotes.reset();
+        }
+    }
+
+    public int size() {
+        return records;
+    }
+
+    public boolean needsCompaction(int threshold) {
+        return records >= threshold;
+    }
+
+    // Gọi sau khi snapshot mới đã được ghi xong
+    public synchronized void reset() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        records = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public interface Replayer {
+        void replay(char op, CsvReader reader);
+    }
+}
@@ -0,0 +1,51 @@
+package repository;
+
+// Ghép dòng CSV cho snapshot và ChangeLog (dạng CsvReader đọc lại được):
+// field có dấu phẩy, dấu nháy kép hoặc xuống dòng được bọc trong "...", dấu nháy bên trong nhân đôi.
+// null ghi thành field rỗng.
+public final class Csv {
+    private Csv() {
+    }
+
+    public static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!needsQuotes(value)) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // Số, ngày, enum ghi bằng toString(); chuỗi qua quote()
+    public static String row(Object... fields) {
+        StringBuilder sb = new StringBuilder(fields.length * 16);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (fields[i] != null) {
+                sb.append(quote(fields[i].toString()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package repository;
+
+// Theo dõi dấu nháy kép khi quét CSV từng ký tự (hoặc từng byte UTF-8: các ký tự đặc biệt đều là ASCII).
+// Chỉ mở nháy khi " đứng đầu field; trong nháy "" là một dấu nháy thường,
+// còn " lạc giữa field không nháy (vd. Tivi 55") là ký tự bình thường.
+final class CsvQuotes {
+    static final int DATA = 0;      // ký tự thuộc giá trị field
+    static final int QUOTE = 1;     // dấu nháy mở/đóng field
+    static final int SEPARATOR = 2; // dấu phẩy ngoài nháy
+    static final int ROW_END = 3;   // '\n' hoặc '\r' ngoài nháy
+
+    private boolean quoted;
+    private boolean closing; // vừa đóng nháy: nếu ký tự tiếp theo là " thì đó là ""
+    private boolean fieldStart = true;
+
+    int next(int c) {
+        if (quoted) {
+            if (c == '"') {
+                quoted = false;
+                closing = true;
+                return QUOTE;
+            }
+            return DATA;
+        }
+        if (c == '"' && (fieldStart || closing)) {
+            boolean escaped = closing;
+            quoted = true;
+            fieldStart = false;
+            closing = false;
+            return escaped ? DATA : QUOTE;
+        }
+        closing = false;
+        if (c == ',') {
+            fieldStart = true;
+            return SEPARATOR;
+        }
+        if (c == '\n' || c == '\r') {
+            fieldStart = true;
+            return ROW_END;
+        }
+        fieldStart = false;
+        return DATA;
+    }
+
+    void reset() {
+        quoted = false;
+        closing = false;
+        fieldStart = true;
+    }
+}
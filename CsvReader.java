@@ -0,0 +1,306 @@
+package repository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Bộ đọc CSV dùng chung cho các repository.
+// Đọc thẳng từ buffer char, không dùng regex/split, số được parse tại chỗ trong buffer.
+// Hỗ trợ field trong dấu nháy kép ("Q1, TPHCM"), "" bên trong field và xuống dòng trong nháy;
+// dấu nháy chỉ có nghĩa khi đứng đầu field (xem CsvQuotes).
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader in; // null khi đọc từ một mảng char có sẵn
+    private final CsvQuotes quotes = new CsvQuotes();
+    private char[] buf;
+    private int pos;
+    private int limit;
+
+    // Vị trí [start, end) của từng field trong dòng hiện tại
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+        this.buf = new char[BUFFER_SIZE];
+    }
+
+    // Đọc từ một vùng char có sẵn; dữ liệu trong mảng có thể bị ghi đè khi bỏ dấu nháy
+    public CsvReader(char[] data, int offset, int length) {
+        this.in = null;
+        this.buf = data;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    // File CSV được đọc/ghi bằng UTF-8 (xem SnapshotWriter)
+    public static CsvReader open(String filePath) throws IOException {
+        return new CsvReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8));
+    }
+
+    // Chuyển sang dòng kế tiếp, bỏ qua dòng trống. Trả về false khi hết dữ liệu.
+    public boolean next() throws IOException {
+        while (true) {
+            int rowEnd = findRowEnd();
+            if (rowEnd < 0) {
+                fieldCount = 0;
+                return false;
+            }
+            int rowStart = pos;
+
+            pos = rowEnd;
+            if (pos < limit && buf[pos] == '\r') pos++;
+            if (pos < limit && buf[pos] == '\n') pos++;
+
+            if (isBlank(rowStart, rowEnd)) continue;
+
+            splitFields(rowStart, rowEnd);
+            return true;
+        }
+    }
+
+    public int size() {
+        return fieldCount;
+    }
+
+    public boolean isEmpty(int index) {
+        return starts[index] == ends[index];
+    }
+
+    public String getString(int index) {
+        return new String(buf, starts[index], ends[index] - starts[index]);
+    }
+
+    // Field ít giá trị: lấy String dùng chung từ pool thay vì tạo mới (pool null = getString)
+    public String getString(int index, StringPool pool) {
+        if (pool == null) {
+            return getString(index);
+        }
+        return pool.get(buf, starts[index], ends[index] - starts[index]);
+    }
+
+    public int getInt(int index) {
+        int p = starts[index];
+        int end = ends[index];
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+            negative = buf[p] == '-';
+            p++;
+        }
+        // Tối đa 9 chữ số thì không thể tràn int
+        if (p == end || end - p > 9) {
+            return Integer.parseInt(getString(index));
+        }
+
+        int value = 0;
+        for (; p < end; p++) {
+            char c = buf[p];
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(getString(index));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    public double getDouble(int index) {
+        int p = starts[index];
+        int end = ends[index];
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+            negative = buf[p] == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; p < end; p++) {
+            char c = buf[p];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0 && ++digits > 17) {
+                    return Double.parseDouble(getString(index));
+                }
+                if (seenDot) scale++;
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                // Số mũ, NaN, khoảng trắng... để Double.parseDouble xử lý
+                return Double.parseDouble(getString(index));
+            }
+        }
+
+        // Mantissa và 10^scale đều biểu diễn chính xác được bằng double
+        // nên một phép chia cho kết quả làm tròn đúng như Double.parseDouble
+        if (!seenDigit || mantissa > (1L << 53) || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(index));
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    // Số tiền theo đơn vị 1/Money.SCALE, parse thẳng từ buffer
+    public long getMoney(int index) {
+        return Money.parse(buf, starts[index], ends[index]);
+    }
+
+    // Như getMoney nhưng số lẻ hơn 1/SCALE được làm tròn (Money.parseRounded) thay vì ném lỗi
+    public long getMoneyRounded(int index) {
+        try {
+            return getMoney(index);
+        } catch (NumberFormatException e) {
+            return Money.parseRounded(getString(index));
+        }
+    }
+
+    // Ngày dạng yyyy-MM-dd
+    public LocalDate getDate(int index) {
+        int p = starts[index];
+        if (ends[index] - p != 10 || buf[p + 4] != '-' || buf[p + 7] != '-') {
+            return LocalDate.parse(getString(index));
+        }
+        int year = digits(p, 4);
+        int month = digits(p + 5, 2);
+        int day = digits(p + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return LocalDate.parse(getString(index));
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    private int digits(int p, int count) {
+        int value = 0;
+        for (int i = p; i < p + count; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Tìm vị trí kết thúc dòng (bỏ qua xuống dòng nằm trong dấu nháy), -1 nếu hết dữ liệu
+    private int findRowEnd() throws IOException {
+        int i = pos;
+        quotes.reset();
+        while (true) {
+            if (i == limit) {
+                int scanned = i - pos;
+                if (!fill()) {
+                    return pos == limit ? -1 : limit;
+                }
+                i = pos + scanned;
+                continue;
+            }
+            if (quotes.next(buf[i]) == CsvQuotes.ROW_END) {
+                return i;
+            }
+            i++;
+        }
+    }
+
+    // Dồn phần dòng đang đọc dở về đầu buffer rồi đọc thêm
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int remaining = limit - pos;
+        if (remaining == buf.length) {
+            char[] bigger = new char[buf.length * 2];
+            System.arraycopy(buf, pos, bigger, 0, remaining);
+            buf = bigger;
+        } else {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        limit = remaining;
+
+        int n;
+        do {
+            n = in.read(buf, limit, buf.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] > ' ') return false;
+        }
+        return true;
+    }
+
+    private void splitFields(int rowStart, int rowEnd) {
+        fieldCount = 0;
+        int i = rowStart;
+        while (true) {
+            int start;
+            int end;
+            if (i < rowEnd && buf[i] == '"') {
+                // Bỏ dấu nháy và gộp "" thành " ngay trong buffer
+                int read = i + 1;
+                int write = i + 1;
+                start = write;
+                while (read < rowEnd) {
+                    char c = buf[read];
+                    if (c == '"') {
+                        if (read + 1 < rowEnd && buf[read + 1] == '"') {
+                            buf[write++] = '"';
+                            read += 2;
+                            continue;
+                        }
+                        read++;
+                        break;
+                    }
+                    buf[write++] = c;
+                    read++;
+                }
+                end = write;
+                while (read < rowEnd && buf[read] != ',') read++;
+                i = read;
+            } else {
+                start = i;
+                while (i < rowEnd && buf[i] != ',') i++;
+                end = i;
+            }
+
+            addField(start, end);
+            if (i >= rowEnd) break;
+            i++; // Bỏ dấu phẩy
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            int[] newStarts = new int[fieldCount * 2];
+            int[] newEnds = new int[fieldCount * 2];
+            System.arraycopy(starts, 0, newStarts, 0, fieldCount);
+            System.arraycopy(ends, 0, newEnds, 0, fieldCount);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+}
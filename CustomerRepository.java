@@ -7,62 +7,182 @@ import interfaces.Searchable;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class CustomerRepository implements Persistable, Searchable<Customer> {
-    private List<Customer> customers;
+    private final EntityStore<Customer> customers; // id -> Customer, giữ thứ tự thêm vào
+    private final TrigramIndex<Customer> searchIndex; // trường 0 là name
+    private final BitmapIndex<Customer> typeIndex;     // chiều 0 là CustomerType
     private final String filePath;
+    private final RepositoryMetrics metrics;
+
+    private final ChangeLog changeLog;
+    private final Object compactLock; // compact() ghi cùng file .tmp nên chạy lần lượt
+    private boolean journaling;
+    private int compactThreshold = ChangeLog.DEFAULT_COMPACT_THRESHOLD;
 
     public CustomerRepository(String filePath) {
         this.filePath = filePath;
-        this.customers = new ArrayList<>();
+        this.customers = new EntityStore<>(Customer::getId);
+        this.searchIndex = new TrigramIndex<>(String::toLowerCase, Customer::getName, Customer::getPhone, Customer::getEmail);
+        this.customers.addListener(searchIndex);
+        this.typeIndex = new BitmapIndex<>(Customer::getType);
+        this.customers.addListener(typeIndex);
+        this.changeLog = new ChangeLog(filePath);
+        this.compactLock = new Object();
+        this.metrics = new RepositoryMetrics("customers");
+    }
+
+    // Số liệu thao tác (mặc định tắt), xem RepositoryMetrics
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Nhận thông báo khi customer được thêm/sửa/xóa/load lại (vd. để bỏ cache); gọi trong khóa ghi
+    public void addChangeListener(EntityStore.Listener<Customer> listener) {
+        customers.addListener(listener);
+    }
+
+    // Chế độ journal: add/update/delete ghi nối vào <file>.log,
+    // save() chỉ ghi lại toàn bộ file khi log vượt ngưỡng compactThreshold
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    public void setAccentInsensitive(boolean accentInsensitive) {
+        customers.lockWrite();
+        try {
+            searchIndex.setFolding(accentInsensitive ? TextFolding::fold : String::toLowerCase);
+        } finally {
+            customers.unlockWrite();
+        }
     }
 
     @Override
     public void save() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            // Header
-            writer.write("id,name,phone,email,address,type");
-            writer.newLine();
-
-            // Data
-            for (Customer customer : customers) {
-                writer.write(customer.toCSV());
+        long start = metrics.start();
+        try {
+            if (journaling && !changeLog.needsCompaction(compactThreshold)) {
+                return; // Các thay đổi đã nằm trong log
+            }
+            compact();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.SAVE, start);
+        }
+    }
+
+    // Ghi toàn bộ dữ liệu ra file snapshot rồi xóa log.
+    // Chỉ khóa lúc lấy snapshot (bất biến) và version của store; ghi file và fsync ngoài khóa nên đọc/ghi
+    // không bị chặn. Có ghi chen vào lúc đang ghi file thì giữ nguyên log: record mang cả dòng dữ liệu
+    // nên phát lại trên snapshot mới vẫn ra đúng, và log được xóa ở lần compact sau.
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<Customer> snapshot;
+            long version;
+            customers.lockRead();
+            try {
+                snapshot = customers.snapshot();
+                version = customers.version();
+            } finally {
+                customers.unlockRead();
+            }
+
+            try (SnapshotWriter writer = new SnapshotWriter(filePath)) {
+                // Header
+                writer.write("id,name,phone,email,address,type");
                 writer.newLine();
+
+                // Data
+                for (Customer customer : snapshot) {
+                    writer.write(toCsvRow(customer));
+                    writer.newLine();
+                }
+                writer.commit();
+                metrics.recordWrite(snapshot.size(), writer.bytesWritten());
+            }
+
+            customers.lockWrite();
+            try {
+                if (customers.version() == version) {
+                    changeLog.reset();
+                }
+            } finally {
+                customers.unlockWrite();
             }
         }
     }
 
     @Override
     public void load() throws IOException {
-        customers.clear();
+        long start = metrics.start();
+        try {
+            loadFile();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    private void loadFile() throws IOException {
+        Map<String, Customer> loaded = new LinkedHashMap<>();
+        StringPool pool = new StringPool();
 
         File file = new File(filePath);
-        if (!file.exists()) {
-            return;
+        if (file.exists()) {
+            long rows = 0;
+            try (CsvReader reader = CsvReader.open(filePath)) {
+                reader.next(); // Skip header
+
+                while (reader.next()) {
+                    rows++;
+                    Customer customer = parseCustomer(reader, pool);
+                    if (customer != null) {
+                        loaded.put(customer.getId(), customer);
+                    }
+                }
+            }
+            metrics.recordRead(rows, file.length());
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line = reader.readLine(); // Skip header
+        // Phát lại các thay đổi ghi sau snapshot
+        changeLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+                return;
+            }
+            Customer customer = parseCustomer(reader, pool);
+            if (customer != null) {
+                if (op == ChangeLog.UPDATE) {
+                    loaded.remove(customer.getId());
+                }
+                loaded.put(customer.getId(), customer);
+            }
+        });
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+        customers.reset(loaded.values());
+    }
 
-                String[] parts = line.split(",", -1);
-                if (parts.length < 6) continue;
+    private Customer parseCustomer(CsvReader reader, StringPool pool) {
+        if (reader.size() < 6) return null;
 
-                String id = parts[0];
-                String name = parts[1];
-                String phone = parts[2];
-                String email = parts[3];
-                String address = parts[4];
-                CustomerType type = CustomerType.valueOf(parts[5]);
+        String id = reader.getString(0);
+        String name = reader.getString(1);
+        String phone = reader.getString(2);
+        String email = reader.getString(3);
+        String address = reader.getString(4);
+        CustomerType type = CustomerType.valueOf(reader.getString(5, pool));
 
-                Customer customer = new Customer(id, name, phone, email, address, type);
-                customers.add(customer);
-            }
-        }
+        return new Customer(id, name, phone, email, address, type);
+    }
+
+    static String toCsvRow(Customer customer) {
+        return Csv.row(customer.getId(), customer.getName(), customer.getPhone(),
+                customer.getEmail(), customer.getAddress(), customer.getType());
     }
 
     @Override
@@ -72,57 +192,98 @@ public class CustomerRepository implements Persistable, Searchable<Customer> {
 
     @Override
     public void clear() {
-        customers.clear();
+        long start = metrics.start();
+        try {
+            customers.clear();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.CLEAR, start);
+        }
     }
 
     @Override
     public Customer findById(String id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = metrics.start();
+        try {
+            return customers.get(id);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
     }
 
     @Override
     public List<Customer> findByName(String name) {
-        String lowerName = name.toLowerCase();
-        return customers.stream()
-                .filter(c -> c.getName().toLowerCase().contains(lowerName))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        customers.lockRead();
+        try {
+            return searchIndex.search(name, 0);
+        } finally {
+            customers.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_NAME, start);
+        }
     }
 
     @Override
     public List<Customer> findAll() {
-        return new ArrayList<>(customers);
+        long start = metrics.start();
+        try {
+            return new ArrayList<>(customers.snapshot());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
     }
 
     @Override
     public List<Customer> search(String criteria) {
-        String lower = criteria.toLowerCase();
-        return customers.stream()
-                .filter(c -> c.getName().toLowerCase().contains(lower) ||
-                        c.getPhone().contains(lower) ||
-                        c.getEmail().toLowerCase().contains(lower))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        customers.lockRead();
+        try {
+            return searchIndex.search(criteria);
+        } finally {
+            customers.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.SEARCH, start);
+        }
     }
 
     // CRUD operations
     public void add(Customer customer) {
-        customers.add(customer);
+        customers.lockWrite();
+        try {
+            if (journaling) {
+                changeLog.append(ChangeLog.ADD, toCsvRow(customer));
+            }
+            customers.put(customer);
+        } finally {
+            customers.unlockWrite();
+        }
     }
 
     public void update(Customer customer) {
-        Customer existing = findById(customer.getId());
-        if (existing != null) {
-            customers.remove(existing);
-            customers.add(customer);
+        customers.lockWrite();
+        try {
+            if (customers.get(customer.getId()) == null) {
+                return;
+            }
+            if (journaling) {
+                changeLog.append(ChangeLog.UPDATE, toCsvRow(customer));
+            }
+            customers.replace(customer);
+        } finally {
+            customers.unlockWrite();
         }
     }
 
     public void delete(String id) {
-        Customer customer = findById(id);
-        if (customer != null) {
-            customers.remove(customer);
+        customers.lockWrite();
+        try {
+            if (customers.get(id) == null) {
+                return;
+            }
+            if (journaling) {
+                changeLog.append(ChangeLog.DELETE, Csv.quote(id));
+            }
+            customers.remove(id);
+        } finally {
+            customers.unlockWrite();
         }
     }
 
@@ -132,8 +293,20 @@ public class CustomerRepository implements Persistable, Searchable<Customer> {
 
     // Tìm theo loại khách hàng
     public List<Customer> findByType(CustomerType type) {
-        return customers.stream()
-                .filter(c -> c.getType() == type)
-                .collect(Collectors.toList());
+        customers.lockRead();
+        try {
+            return typeIndex.find(0, type);
+        } finally {
+            customers.unlockRead();
+        }
+    }
+
+    public int countByType(CustomerType type) {
+        customers.lockRead();
+        try {
+            return typeIndex.count(0, type);
+        } finally {
+            customers.unlockRead();
+        }
     }
 }
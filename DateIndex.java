@@ -0,0 +1,131 @@
+package repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+// Chỉ mục theo ngày (epoch day) cho các truy vấn khoảng thời gian: O(log n + k) thay vì quét toàn bộ.
+// Mỗi ngày giữ các entity theo thứ tự thêm vào cùng số lượng và tổng tiền (đơn vị Money) của ngày đó,
+// nên biểu đồ theo ngày không cần tạo danh sách order.
+// Không tự đồng bộ: listener chạy trong khóa ghi của store, truy vấn phải giữ khóa đọc.
+public class DateIndex<T> implements EntityStore.Listener<T> {
+    private final Function<T, String> idFunction;
+    private final Function<T, LocalDate> dateFunction;
+    private final ToDoubleFunction<T> amountFunction;
+    private final TreeMap<Long, Day<T>> days;
+
+    public DateIndex(Function<T, String> idFunction, Function<T, LocalDate> dateFunction,
+                     ToDoubleFunction<T> amountFunction) {
+        this.idFunction = idFunction;
+        this.dateFunction = dateFunction;
+        this.amountFunction = amountFunction;
+        this.days = new TreeMap<>();
+    }
+
+    // Entity có ngày trong [from, to], theo ngày rồi theo thứ tự thêm vào
+    public List<T> between(LocalDate from, LocalDate to) {
+        List<T> result = new ArrayList<>();
+        for (Day<T> day : range(from, to).values()) {
+            result.addAll(day.entities.values());
+        }
+        return result;
+    }
+
+    public int countBetween(LocalDate from, LocalDate to) {
+        int count = 0;
+        for (Day<T> day : range(from, to).values()) {
+            count += day.entities.size();
+        }
+        return count;
+    }
+
+    // Các nhóm cùng ngày trong [from, to], tăng dần theo ngày; chỉ dùng trong khóa đọc
+    public Stream<Collection<T>> groupsBetween(LocalDate from, LocalDate to) {
+        return range(from, to).values().stream().map(day -> day.entities.values());
+    }
+
+    // Số entity mỗi ngày trong [from, to], chỉ gồm các ngày có dữ liệu
+    public SortedMap<LocalDate, Integer> countsPerDay(LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Integer> result = new TreeMap<>();
+        for (Map.Entry<Long, Day<T>> entry : range(from, to).entrySet()) {
+            result.put(LocalDate.ofEpochDay(entry.getKey()), entry.getValue().entities.size());
+        }
+        return result;
+    }
+
+    // Tổng tiền mỗi ngày trong [from, to], chỉ gồm các ngày có dữ liệu
+    public SortedMap<LocalDate, Double> amountsPerDay(LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Double> result = new TreeMap<>();
+        for (Map.Entry<Long, Day<T>> entry : range(from, to).entrySet()) {
+            result.put(LocalDate.ofEpochDay(entry.getKey()), Money.toDouble(entry.getValue().amount));
+        }
+        return result;
+    }
+
+    @Override
+    public void added(T entity) {
+        LocalDate date = dateFunction.apply(entity);
+        if (date == null) {
+            return;
+        }
+        Day<T> day = days.computeIfAbsent(date.toEpochDay(), k -> new Day<>());
+        day.entities.put(idFunction.apply(entity), entity);
+        day.amount = Money.add(day.amount, Money.toMinor(amountFunction.applyAsDouble(entity)));
+    }
+
+    @Override
+    public void removed(T entity) {
+        LocalDate date = dateFunction.apply(entity);
+        if (date == null) {
+            return;
+        }
+        Day<T> day = days.get(date.toEpochDay());
+        if (day == null || day.entities.remove(idFunction.apply(entity)) == null) {
+            return;
+        }
+        day.amount = Money.subtract(day.amount, Money.toMinor(amountFunction.applyAsDouble(entity)));
+        if (day.entities.isEmpty()) {
+            days.remove(date.toEpochDay());
+        }
+    }
+
+    // Ngày và tổng tiền của order không đổi khi đổi status nên chỉ cần thay entity tại chỗ
+    @Override
+    public void replaced(T previous, T current) {
+        LocalDate date = dateFunction.apply(current);
+        Day<T> day = date == null ? null : days.get(date.toEpochDay());
+        if (previous == current && day != null) {
+            day.entities.put(idFunction.apply(current), current);
+            return;
+        }
+        removed(previous);
+        added(current);
+    }
+
+    @Override
+    public void cleared() {
+        days.clear();
+    }
+
+    private NavigableMap<Long, Day<T>> range(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return Collections.emptyNavigableMap();
+        }
+        return days.subMap(from.toEpochDay(), true, to.toEpochDay(), true);
+    }
+
+    private static class Day<T> {
+        private final Map<String, T> entities = new LinkedHashMap<>();
+        private long amount; // đơn vị 1/Money.SCALE
+    }
+}
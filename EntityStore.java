@@ -0,0 +1,220 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Kho entity theo id dùng chung cho các repository, an toàn khi nhiều thread cùng dùng:
+// - findById đọc ConcurrentHashMap, không khóa
+// - truy vấn duyệt toàn bộ dùng snapshot bất biến (copy-on-write), chỉ tạo lại khi đã có ghi
+// - ghi tuần tự theo từng store (mỗi repository / loại order một khóa riêng)
+// Listener được gọi trong khóa ghi, dùng để cập nhật các index phụ.
+public class EntityStore<T> {
+    private final Function<T, String> idFunction;
+    private final Map<String, T> entities; // giữ thứ tự thêm vào, chỉ truy cập trong khóa
+    private final ConcurrentHashMap<String, T> index;
+    private final ReentrantReadWriteLock lock;
+    private final List<Listener<T>> listeners;
+    private volatile List<T> snapshot; // null khi đã có thay đổi
+    private volatile long version;     // tăng sau mỗi lần ghi, dùng để biết cache dựng từ store đã cũ
+
+    public EntityStore(Function<T, String> idFunction) {
+        this.idFunction = idFunction;
+        this.entities = new LinkedHashMap<>();
+        this.index = new ConcurrentHashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.snapshot = Collections.emptyList();
+    }
+
+    public void addListener(Listener<T> listener) {
+        lockWrite();
+        try {
+            listeners.add(listener);
+            for (T entity : entities.values()) {
+                listener.added(entity);
+            }
+            listener.committed();
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    public T get(String id) {
+        return index.get(id);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long version() {
+        return version;
+    }
+
+    // Báo có thay đổi bên trong entity mà store không tự thấy (vd. gán items cho order sau khi load)
+    public void touch() {
+        lockWrite();
+        try {
+            version++;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Danh sách bất biến tại một thời điểm, theo thứ tự thêm vào
+    public List<T> snapshot() {
+        List<T> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        lock.readLock().lock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                current = Collections.unmodifiableList(new ArrayList<>(entities.values()));
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Thêm mới, hoặc thay thế tại chỗ nếu id đã tồn tại. Trả về entity cũ (nếu có).
+    public T put(T entity) {
+        String id = idFunction.apply(entity);
+        lockWrite();
+        try {
+            T previous = entities.put(id, entity);
+            index.put(id, entity);
+            changed(previous, entity, previous != null);
+            return previous;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Cập nhật: chỉ khi id đã tồn tại, entity mới được đưa xuống cuối. Trả về entity cũ hoặc null.
+    public T replace(T entity) {
+        String id = idFunction.apply(entity);
+        lockWrite();
+        try {
+            T previous = entities.remove(id);
+            if (previous == null) {
+                return null;
+            }
+            entities.put(id, entity);
+            index.put(id, entity);
+            changed(previous, entity, false);
+            return previous;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    public T remove(String id) {
+        lockWrite();
+        try {
+            T previous = entities.remove(id);
+            if (previous != null) {
+                index.remove(id);
+                changed(previous, null, false);
+            }
+            return previous;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    public void clear() {
+        reset(Collections.emptyList());
+    }
+
+    // Thay toàn bộ nội dung (dùng khi load). findById không bao giờ thấy một id đang tồn tại bị mất tạm thời.
+    public void reset(Collection<T> newEntities) {
+        Map<String, T> fresh = new LinkedHashMap<>();
+        for (T entity : newEntities) {
+            fresh.put(idFunction.apply(entity), entity);
+        }
+
+        lockWrite();
+        try {
+            index.putAll(fresh);
+            index.keySet().retainAll(fresh.keySet());
+            entities.clear();
+            entities.putAll(fresh);
+
+            for (Listener<T> listener : listeners) {
+                listener.cleared();
+                for (T entity : fresh.values()) {
+                    listener.added(entity);
+                }
+                listener.committed();
+            }
+            snapshot = null;
+            version++;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Khóa ghi cho các thao tác gồm nhiều bước (vd. ghi kèm change log); khóa reentrant
+    public void lockWrite() {
+        lock.writeLock().lock();
+    }
+
+    public void unlockWrite() {
+        lock.writeLock().unlock();
+    }
+
+    // Khóa đọc cho truy vấn trên các index phụ do listener duy trì
+    public void lockRead() {
+        lock.readLock().lock();
+    }
+
+    public void unlockRead() {
+        lock.readLock().unlock();
+    }
+
+    // inPlace: entity mới giữ nguyên vị trí của entity cũ (put đè id đã có)
+    private void changed(T previous, T current, boolean inPlace) {
+        for (Listener<T> listener : listeners) {
+            if (inPlace) {
+                listener.replaced(previous, current);
+            } else {
+                if (previous != null) {
+                    listener.removed(previous);
+                }
+                if (current != null) {
+                    listener.added(current);
+                }
+            }
+            listener.committed();
+        }
+        snapshot = null;
+        version++;
+    }
+
+    public interface Listener<T> {
+        void added(T entity);
+
+        void removed(T entity);
+
+        void replaced(T previous, T current);
+
+        void cleared();
+
+        // Gọi một lần sau mỗi lần ghi (kể cả reset gồm cleared + nhiều added), vẫn trong khóa ghi:
+        // listener cho đọc không khóa công bố trạng thái mới tại đây để không lộ trạng thái dở
+        default void committed() {
+        }
+    }
+}
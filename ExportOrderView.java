@@ -0,0 +1,61 @@
+package repository;
+
+import domain.Customer;
+import domain.ExportOrder;
+import domain.OrderItem;
+import domain.Product;
+
+import java.util.Collections;
+import java.util.List;
+
+// Chi tiết một đơn xuất đã ghép sẵn: order, customer và product hiện tại của từng dòng.
+// Bất biến; OrderViewCache bỏ view khi order/customer/product liên quan thay đổi.
+public class ExportOrderView {
+    private final ExportOrder order;
+    private final Customer customer;
+    private final List<Line> lines;
+
+    ExportOrderView(ExportOrder order, Customer customer, List<Line> lines) {
+        this.order = order;
+        this.customer = customer;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    public ExportOrder getOrder() {
+        return order;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public static class Line {
+        private final OrderItem item;
+        private final Product product;
+
+        Line(OrderItem item, Product product) {
+            this.item = item;
+            this.product = product;
+        }
+
+        public OrderItem getItem() {
+            return item;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public int getQuantity() {
+            return item.getQuantity();
+        }
+
+        public double getUnitPrice() {
+            return item.getUnitPrice();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package repository;
+
+import domain.Customer;
+import domain.ExportOrder;
+import domain.OrderItem;
+import domain.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// ExportOrder của chế độ lazy: items đọc từ LazyOrderItems khi cần.
+// Field items của order là một LazyItemList, nên method domain sửa items trực tiếp cũng chép items vào heap.
+// Sau setItems() order giữ danh sách riêng như ExportOrder thường.
+class LazyExportOrder extends ExportOrder {
+    private final LazyItemList lazyItems;
+    private volatile boolean detached;
+
+    LazyExportOrder(String orderId, LocalDate orderDate, double totalAmount, OrderStatus status,
+                    Customer customer, String deliveryAddress, LazyOrderItems source) {
+        super(orderId, orderDate, totalAmount, status, customer, deliveryAddress);
+        this.lazyItems = new LazyItemList(source, orderId);
+        super.setItems(lazyItems);
+    }
+
+    // Còn lazy thì trả danh sách chỉ đọc; sửa items qua getItems() cần detach() trước
+    @Override
+    public List<OrderItem> getItems() {
+        return detached ? super.getItems() : lazyItems.view();
+    }
+
+    // Đọc items vào heap, từ nay không phụ thuộc LazyOrderItems
+    void detach() {
+        if (!detached) {
+            setItems(lazyItems.detach());
+        }
+    }
+
+    @Override
+    public void setItems(List<OrderItem> items) {
+        super.setItems(items);
+        detached = true;
+    }
+}
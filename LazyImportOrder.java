@@ -0,0 +1,43 @@
+package repository;
+
+import domain.ImportOrder;
+import domain.OrderItem;
+import domain.OrderStatus;
+import domain.Supplier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// ImportOrder của chế độ lazy: items đọc từ LazyOrderItems khi cần.
+// Field items của order là một LazyItemList, nên method domain sửa items trực tiếp cũng chép items vào heap.
+// Sau setItems() order giữ danh sách riêng như ImportOrder thường.
+class LazyImportOrder extends ImportOrder {
+    private final LazyItemList lazyItems;
+    private volatile boolean detached;
+
+    LazyImportOrder(String orderId, LocalDate orderDate, double totalAmount, OrderStatus status,
+                    Supplier supplier, String warehouseLocation, LazyOrderItems source) {
+        super(orderId, orderDate, totalAmount, status, supplier, warehouseLocation);
+        this.lazyItems = new LazyItemList(source, orderId);
+        super.setItems(lazyItems);
+    }
+
+    // Còn lazy thì trả danh sách chỉ đọc; sửa items qua getItems() cần detach() trước
+    @Override
+    public List<OrderItem> getItems() {
+        return detached ? super.getItems() : lazyItems.view();
+    }
+
+    // Đọc items vào heap, từ nay không phụ thuộc LazyOrderItems
+    void detach() {
+        if (!detached) {
+            setItems(lazyItems.detach());
+        }
+    }
+
+    @Override
+    public void setItems(List<OrderItem> items) {
+        super.setItems(items);
+        detached = true;
+    }
+}
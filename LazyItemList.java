@@ -0,0 +1,96 @@
+package repository;
+
+import domain.OrderItem;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Danh sách items của order lazy, được gán vào chính field items của order
+// nên mọi method domain dùng field (addItem, removeItem, tính tổng...) cũng đi qua đây.
+// Đọc: lấy từ LazyOrderItems (qua LRU). Sửa lần đầu: chép items vào heap rồi sửa trên bản chép,
+// từ đó không phụ thuộc file nữa.
+class LazyItemList extends AbstractList<OrderItem> {
+    private final LazyOrderItems source;
+    private final String orderId;
+    private volatile List<OrderItem> own; // null khi còn đọc từ file
+
+    LazyItemList(LazyOrderItems source, String orderId) {
+        this.source = source;
+        this.orderId = orderId;
+    }
+
+    // Items hiện tại; còn lazy thì là danh sách chỉ đọc từ LazyOrderItems
+    List<OrderItem> view() {
+        List<OrderItem> items = own;
+        return items != null ? items : source.get(orderId);
+    }
+
+    synchronized List<OrderItem> detach() {
+        if (own == null) {
+            own = new ArrayList<>(source.get(orderId));
+        }
+        return own;
+    }
+
+    @Override
+    public OrderItem get(int index) {
+        return view().get(index);
+    }
+
+    @Override
+    public int size() {
+        return view().size();
+    }
+
+    @Override
+    public Iterator<OrderItem> iterator() {
+        List<OrderItem> items = own;
+        // Còn lazy: iterator chỉ đọc; remove(Object), removeIf, clear được override để chép trước
+        return items != null ? items.iterator() : source.get(orderId).iterator();
+    }
+
+    @Override
+    public OrderItem set(int index, OrderItem item) {
+        return detach().set(index, item);
+    }
+
+    @Override
+    public void add(int index, OrderItem item) {
+        modCount++;
+        detach().add(index, item);
+    }
+
+    @Override
+    public OrderItem remove(int index) {
+        modCount++;
+        return detach().remove(index);
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        modCount++;
+        return detach().remove(item);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends OrderItem> items) {
+        modCount++;
+        return detach().addAll(items);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super OrderItem> filter) {
+        modCount++;
+        return detach().removeIf(filter);
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        detach().clear();
+    }
+}
@@ -0,0 +1,618 @@
+package repository;
+
+import domain.OrderItem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Chế độ lazy cho order_items.csv: lúc load chỉ dựng index orderId -> vị trí các dòng của order
+// trong file (offset, độ dài tính theo byte), không tạo OrderItem hay String nào.
+// Items của một order được đọc khi getItems() lần đầu và giữ trong LRU giới hạn theo tổng số item,
+// nên order cũ không ai đụng tới chỉ tốn vài chục byte trong index.
+// File được mở một lần lúc index và giữ mở tới khi clear/close (đọc theo vị trí, nhiều thread đọc chung được);
+// save thay file thì mở lại file mới.
+// Khóa đọc khi đọc file; khóa ghi khi bỏ order và lúc save đổi sang file mới (chép dòng sang file mới thì không khóa).
+public class LazyOrderItems implements Closeable {
+    public static final int DEFAULT_CACHED_ITEMS = 100_000;
+
+    private static final int LENGTH_BITS = 24; // mỗi dòng: offset << 24 | độ dài
+    private static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String filePath;
+    private final RowParser parser;
+    private final ReentrantReadWriteLock lock;
+    private RowIndex index; // chỉ truy cập trong lock
+    private FileChannel channel; // null khi index rỗng; chỉ truy cập trong lock
+    // Giữ suốt một lần save (beginCopy..endCopy): index()/clear()/close() không đổi file hay channel giữa chừng
+    private final ReentrantLock fileLock;
+    private Set<String> forgottenDuringCopy; // khác null khi đang save; chỉ truy cập trong lock
+
+    private final LinkedHashMap<String, List<OrderItem>> cache; // thứ tự truy cập, khóa bằng chính nó
+    private int maxCachedItems = DEFAULT_CACHED_ITEMS;
+    private int cachedItems;
+
+    public LazyOrderItems(String filePath, RowParser parser) {
+        this.filePath = filePath;
+        this.parser = parser;
+        this.lock = new ReentrantReadWriteLock();
+        this.fileLock = new ReentrantLock();
+        this.index = new RowIndex(16);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public void setMaxCachedItems(int maxCachedItems) {
+        synchronized (cache) {
+            this.maxCachedItems = maxCachedItems;
+            evictIfNeeded();
+        }
+    }
+
+    // Quét file một lần theo byte, chỉ đọc field đầu (orderId) của mỗi dòng. Trả về số dòng dữ liệu.
+    public long index() throws IOException {
+        fileLock.lock();
+        try {
+            return buildIndex();
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private long buildIndex() throws IOException {
+        RowIndex built = new RowIndex(1024);
+        long count = 0;
+        FileChannel opened = null;
+
+        Path path = Paths.get(filePath);
+        if (Files.exists(path)) {
+            opened = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                CsvQuotes quotes = new CsvQuotes();
+                byte[] id = new byte[64];
+                int idLength = 0;
+                boolean header = true;
+                boolean inId = true;
+                boolean blank = true;
+                long lineStart = 0;
+                long position = 0;
+
+                while (opened.read(buffer) > 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        position++;
+                        int kind = quotes.next(b);
+                        if (kind == CsvQuotes.ROW_END && b == '\n') {
+                            if (!header && !blank) {
+                                built.addRow(id, idLength, pack(lineStart, position - lineStart));
+                                count++;
+                            }
+                            if (!blank) {
+                                header = false;
+                            }
+                            lineStart = position;
+                            idLength = 0;
+                            inId = true;
+                            blank = true;
+                            continue;
+                        } else if (kind == CsvQuotes.SEPARATOR) {
+                            inId = false;
+                        } else if (inId && kind == CsvQuotes.DATA) {
+                            if (idLength == id.length) {
+                                id = Arrays.copyOf(id, id.length * 2);
+                            }
+                            id[idLength++] = b;
+                        }
+                        if (b != '\r' && b != ' ') {
+                            blank = false;
+                        }
+                    }
+                    buffer.clear();
+                }
+                // Dòng cuối không có xuống dòng
+                if (!header && !blank) {
+                    built.addRow(id, idLength, pack(lineStart, position - lineStart));
+                    count++;
+                }
+            } catch (IOException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            closeChannel();
+            index = built;
+            channel = opened;
+            clearCache();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    // Items của order (danh sách không sửa được); rỗng nếu order không có dòng nào trong file
+    public List<OrderItem> get(String orderId) {
+        synchronized (cache) {
+            List<OrderItem> cached = cache.get(orderId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        byte[] key = orderId.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = index.find(key, key.length);
+            if (slot < 0) {
+                return Collections.emptyList();
+            }
+            List<OrderItem> items = Collections.unmodifiableList(read(orderId, index.rows(slot)));
+            // Còn giữ khóa đọc nên forget() (khóa ghi) không chen được vào giữa lúc đọc file và lúc đưa vào cache
+            synchronized (cache) {
+                if (cache.put(orderId, items) == null) {
+                    cachedItems += weight(items);
+                    evictIfNeeded();
+                }
+            }
+            return items;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đọc được items của order " + orderId, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Đọc items rồi bỏ order khỏi index (items từ nay do OrderRepository giữ)
+    public List<OrderItem> take(String orderId) {
+        byte[] key = orderId.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key, key.length);
+            if (slot < 0) {
+                return new ArrayList<>();
+            }
+            List<OrderItem> items = read(orderId, index.rows(slot));
+            remove(orderId, slot);
+            return items;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đọc được items của order " + orderId, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void forget(String orderId) {
+        byte[] key = orderId.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key, key.length);
+            if (slot >= 0) {
+                remove(orderId, slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String orderId) {
+        byte[] key = orderId.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return index.find(key, key.length) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Số order có items còn nằm trong file, chưa đọc hẳn vào heap
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int cachedItems() {
+        synchronized (cache) {
+            return cachedItems;
+        }
+    }
+
+    public void clear() {
+        fileLock.lock();
+        lock.writeLock().lock();
+        try {
+            index = new RowIndex(16);
+            clearCache();
+            closeChannel();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không đóng được file items " + filePath, e);
+        } finally {
+            lock.writeLock().unlock();
+            fileLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileLock.lock();
+        lock.writeLock().lock();
+        try {
+            index = new RowIndex(16);
+            clearCache();
+            closeChannel();
+        } finally {
+            lock.writeLock().unlock();
+            fileLock.unlock();
+        }
+    }
+
+    // Bắt đầu save: gọi cùng lúc lấy snapshot các order (trong khóa của store order), chụp lại
+    // các order còn nằm trong file. Sau đó copyAndCommit chép ngoài mọi khóa; luôn kết thúc bằng endCopy().
+    public Copy beginCopy() {
+        fileLock.lock();
+        lock.writeLock().lock();
+        try {
+            forgottenDuringCopy = new HashSet<>();
+            return new Copy(index.copy(), channel);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endCopy() {
+        lock.writeLock().lock();
+        try {
+            forgottenDuringCopy = null;
+        } finally {
+            lock.writeLock().unlock();
+            fileLock.unlock();
+        }
+    }
+
+    // Chép nguyên văn các dòng của order trong bản chụp sang file mới rồi commit, index trỏ sang vị trí mới.
+    // Gọi sau khi đã ghi các items đang nằm trong heap. get()/forget() vẫn chạy trong lúc chép (đọc file cũ);
+    // order bị bỏ khỏi index trong lúc đó cũng bị bỏ khỏi index mới. Trả về số dòng đã chép.
+    public long copyAndCommit(SnapshotWriter writer, Copy copy) throws IOException {
+        RowIndex captured = copy.index;
+        RowIndex moved = new RowIndex(captured.size());
+        long count = 0;
+        if (captured.size() > 0) {
+            byte[] key = new byte[RowIndex.MAX_KEY_LENGTH];
+            for (int slot = 0; slot < captured.capacity(); slot++) {
+                if (!captured.isLive(slot)) {
+                    continue;
+                }
+                int keyLength = captured.copyKey(slot, key);
+                for (long span : captured.rows(slot)) {
+                    String line = StandardCharsets.UTF_8.decode(readSpan(copy.channel, span)).toString();
+                    if (!line.endsWith("\n")) {
+                        line = line + System.lineSeparator(); // dòng cuối file cũ
+                    }
+                    long offset = writer.position();
+                    writer.write(line);
+                    moved.addRow(key, keyLength, pack(offset, writer.position() - offset));
+                    count++;
+                }
+            }
+        }
+        writer.commit();
+
+        lock.writeLock().lock();
+        try {
+            for (String orderId : forgottenDuringCopy) {
+                byte[] forgotten = orderId.getBytes(StandardCharsets.UTF_8);
+                int slot = moved.find(forgotten, forgotten.length);
+                if (slot >= 0) {
+                    moved.remove(slot);
+                }
+            }
+            // File cũ đã bị thay: channel đang mở vẫn trỏ vào nó, mở lại file mới
+            closeChannel();
+            index = moved;
+            if (moved.size() > 0) {
+                channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String orderId, int slot) {
+        index.remove(slot);
+        if (forgottenDuringCopy != null) {
+            forgottenDuringCopy.add(orderId);
+        }
+        synchronized (cache) {
+            List<OrderItem> cached = cache.remove(orderId);
+            if (cached != null) {
+                cachedItems -= weight(cached);
+            }
+        }
+    }
+
+    // Gọi trong lock; index còn order thì channel luôn mở
+    private List<OrderItem> read(String orderId, long[] spans) throws IOException {
+        Map<String, List<OrderItem>> target = new HashMap<>(2);
+        for (long span : spans) {
+            CharBuffer chars = StandardCharsets.UTF_8.decode(readSpan(channel, span));
+            CsvReader reader = new CsvReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+            if (reader.next()) {
+                parser.parse(reader, target);
+            }
+        }
+        List<OrderItem> items = target.get(orderId);
+        return items != null ? items : new ArrayList<>();
+    }
+
+    private static ByteBuffer readSpan(FileChannel channel, long span) throws IOException {
+        long offset = span >>> LENGTH_BITS;
+        ByteBuffer bytes = ByteBuffer.allocate((int) (span & MAX_LENGTH));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new IOException("File items đã bị thay đổi ngoài repository: " + channel);
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private static long pack(long offset, long length) throws IOException {
+        if (length > MAX_LENGTH) {
+            throw new IOException("Dòng order item dài quá " + MAX_LENGTH + " byte tại offset " + offset);
+        }
+        return offset << LENGTH_BITS | length;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            FileChannel closing = channel;
+            channel = null;
+            closing.close();
+        }
+    }
+
+    private void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cachedItems = 0;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<List<OrderItem>> eldest = cache.values().iterator();
+        while (cachedItems > maxCachedItems && eldest.hasNext()) {
+            cachedItems -= weight(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static int weight(List<OrderItem> items) {
+        return Math.max(1, items.size());
+    }
+
+    // Bản chụp index và file đang mở lúc beginCopy
+    public static class Copy {
+        private final RowIndex index;
+        private final FileChannel channel;
+
+        private Copy(RowIndex index, FileChannel channel) {
+            this.index = index;
+            this.channel = channel;
+        }
+    }
+
+    public interface RowParser {
+        void parse(CsvReader reader, Map<String, List<OrderItem>> target);
+    }
+
+    // Bảng băm open addressing theo orderId dạng byte UTF-8, không có object nào cho từng order.
+    // Mỗi ô: hash, vị trí key trong keyBytes ([độ dài][byte...]) và dòng mới nhất của order;
+    // các dòng cùng order nối ngược nhau bằng next. Dựng một lần, sau đó chỉ còn bỏ order
+    // (ô giữ lại key với head = REMOVED để dò tiếp không bị đứt).
+    private static class RowIndex {
+        static final int MAX_KEY_LENGTH = 255;
+        private static final int EMPTY = 0;
+        private static final int REMOVED = -1;
+
+        private int[] hashes;
+        private int[] keyStarts;
+        private int[] heads; // số thứ tự dòng + 1
+        private int orders;
+        private int usedSlots;
+
+        private byte[] keyBytes = new byte[1024];
+        private int keyBytesLength;
+
+        private long[] spans = new long[1024];
+        private int[] next = new int[1024]; // dòng trước của cùng order + 1, 0 = hết
+        private int rowCount;
+
+        RowIndex(int expectedOrders) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedOrders) * 2 - 1) << 1;
+            this.hashes = new int[capacity];
+            this.keyStarts = new int[capacity];
+            this.heads = new int[capacity];
+        }
+
+        int find(byte[] key, int length) {
+            int hash = hash(key, length);
+            int mask = heads.length - 1;
+            for (int slot = hash & mask; heads[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && keyEquals(slot, key, length)) {
+                    return heads[slot] == REMOVED ? -1 : slot;
+                }
+            }
+            return -1;
+        }
+
+        void addRow(byte[] key, int length, long span) throws IOException {
+            if (length > MAX_KEY_LENGTH) {
+                throw new IOException("orderId dài quá " + MAX_KEY_LENGTH + " byte");
+            }
+            int hash = hash(key, length);
+            int mask = heads.length - 1;
+            int slot = hash & mask;
+            while (heads[slot] != EMPTY && !(hashes[slot] == hash && keyEquals(slot, key, length))) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (rowCount == spans.length) {
+                spans = Arrays.copyOf(spans, rowCount * 2);
+                next = Arrays.copyOf(next, rowCount * 2);
+            }
+            spans[rowCount] = span;
+            if (heads[slot] > 0) {
+                next[rowCount] = heads[slot];
+            } else {
+                if (heads[slot] == EMPTY) {
+                    hashes[slot] = hash;
+                    keyStarts[slot] = storeKey(key, length);
+                    usedSlots++;
+                }
+                next[rowCount] = 0;
+                orders++;
+            }
+            heads[slot] = ++rowCount;
+
+            if (usedSlots * 2 > heads.length) {
+                rehash();
+            }
+        }
+
+        // Các dòng của order theo thứ tự trong file
+        long[] rows(int slot) {
+            int n = 0;
+            for (int row = heads[slot]; row != 0; row = next[row - 1]) {
+                n++;
+            }
+            long[] result = new long[n];
+            for (int row = heads[slot]; row != 0; row = next[row - 1]) {
+                result[--n] = spans[row - 1];
+            }
+            return result;
+        }
+
+        // Sau khi dựng xong chỉ còn remove() đổi heads/orders, nên chỉ cần chép hai phần đó
+        RowIndex copy() {
+            RowIndex copy = new RowIndex(16);
+            copy.hashes = hashes;
+            copy.keyStarts = keyStarts;
+            copy.heads = heads.clone();
+            copy.orders = orders;
+            copy.usedSlots = usedSlots;
+            copy.keyBytes = keyBytes;
+            copy.keyBytesLength = keyBytesLength;
+            copy.spans = spans;
+            copy.next = next;
+            copy.rowCount = rowCount;
+            return copy;
+        }
+
+        void remove(int slot) {
+            heads[slot] = REMOVED;
+            orders--;
+        }
+
+        boolean isLive(int slot) {
+            return heads[slot] > 0;
+        }
+
+        int capacity() {
+            return heads.length;
+        }
+
+        int size() {
+            return orders;
+        }
+
+        int copyKey(int slot, byte[] target) {
+            int start = keyStarts[slot];
+            int length = keyBytes[start] & 0xFF;
+            System.arraycopy(keyBytes, start + 1, target, 0, length);
+            return length;
+        }
+
+        private int storeKey(byte[] key, int length) {
+            if (keyBytesLength + length + 1 > keyBytes.length) {
+                keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyBytesLength + length + 1));
+            }
+            int start = keyBytesLength;
+            keyBytes[start] = (byte) length;
+            System.arraycopy(key, 0, keyBytes, start + 1, length);
+            keyBytesLength += length + 1;
+            return start;
+        }
+
+        private boolean keyEquals(int slot, byte[] key, int length) {
+            int start = keyStarts[slot];
+            if ((keyBytes[start] & 0xFF) != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (keyBytes[start + 1 + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Chỉ gọi lúc đang dựng index (chưa có ô REMOVED)
+        private void rehash() {
+            int[] oldHashes = hashes;
+            int[] oldKeyStarts = keyStarts;
+            int[] oldHeads = heads;
+            hashes = new int[oldHeads.length * 2];
+            keyStarts = new int[oldHeads.length * 2];
+            heads = new int[oldHeads.length * 2];
+            int mask = heads.length - 1;
+            for (int i = 0; i < oldHeads.length; i++) {
+                if (oldHeads[i] == EMPTY) {
+                    continue;
+                }
+                int slot = oldHashes[i] & mask;
+                while (heads[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                keyStarts[slot] = oldKeyStarts[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+
+        private static int hash(byte[] key, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + (key[i] & 0xFF);
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
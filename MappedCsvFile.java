@@ -0,0 +1,139 @@
+package repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Đọc file CSV lớn bằng FileChannel.map, giải mã UTF-8.
+// File được chia thành các chunk kết thúc đúng ranh giới dòng nên mỗi chunk parse độc lập được
+// ('\n' trong field "..." nhiều dòng không phải ranh giới).
+// Ranh giới tìm dần theo từng chunk (nextChunk), nên chunk đầu parse được ngay trong khi phần sau còn đang quét.
+// Mỗi chunk giải mã qua buffer cỡ cố định của CsvReader, bộ nhớ heap không tăng theo cỡ chunk hay file.
+public class MappedCsvFile implements Closeable {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int SCAN_WINDOW = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final CsvQuotes quotes = new CsvQuotes();
+    private long next; // đầu chunk kế tiếp, mọi byte trước đó đã qua quotes
+
+    private MappedCsvFile(FileChannel channel, int chunkSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    public static MappedCsvFile open(String filePath) throws IOException {
+        return open(filePath, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static MappedCsvFile open(String filePath, int chunkSize) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            return new MappedCsvFile(channel, chunkSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Chunk kế tiếp (khoảng chunkSize byte, kết thúc sau một '\n' ngoài dấu nháy), null khi hết file.
+    // Trạng thái nháy phụ thuộc mọi byte trước nó nên các lần gọi phải tuần tự; chunk trả về thì mở song song được.
+    public Chunk nextChunk() throws IOException {
+        if (next >= size) {
+            return null;
+        }
+        long start = next;
+        next = size - start > chunkSize ? scanRowEnd(start + chunkSize) : size;
+        return new Chunk(start, next);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Quét tiếp từ next (chỉ so byte, không giải mã) tới '\n' ngoài nháy đầu tiên ở vị trí >= from;
+    // trả về vị trí ngay sau nó, hoặc size nếu không còn
+    private long scanRowEnd(long from) throws IOException {
+        long position = next;
+        while (position < size) {
+            int length = (int) Math.min(SCAN_WINDOW, size - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                byte b = window.get(i);
+                if (quotes.next(b) == CsvQuotes.ROW_END && b == '\n' && position + i >= from) {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    public final class Chunk {
+        private final long start;
+        private final long end;
+
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean isFirst() {
+            return start == 0;
+        }
+
+        // Map chunk và trả về CsvReader giải mã dần theo buffer của nó; gọi được từ luồng khác
+        public CsvReader open() throws IOException {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            return new CsvReader(Channels.newReader(new BufferChannel(bytes), decoder, -1));
+        }
+    }
+
+    // ReadableByteChannel trên vùng đã map, để Channels.newReader giải mã từng đoạn nhỏ
+    private static final class BufferChannel implements ReadableByteChannel {
+        private final ByteBuffer bytes;
+
+        BufferChannel(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), bytes.remaining());
+            ByteBuffer slice = bytes.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            bytes.position(bytes.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
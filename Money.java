@@ -0,0 +1,130 @@
+package repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Số tiền lưu dạng long theo đơn vị 1/SCALE để lưu trữ và cộng dồn không sai số.
+// VND không có đơn vị lẻ, nhưng giá/tổng tiền trong domain là double và CSV có thể có phần lẻ
+// (vd. đơn giá 12.5 sau chiết khấu): SCALE = 100 giữ chính xác đến 2 chữ số thập phân.
+// Cần lẻ hơn thì đổi FRACTION_DIGITS và SCALE cùng nhau; số lẻ hơn 1/SCALE bị từ chối, không làm tròn.
+public final class Money {
+    public static final int SCALE = 100;
+
+    private static final int FRACTION_DIGITS = 2; // SCALE = 10^FRACTION_DIGITS
+    private static final long MAX_BEFORE_DIGIT = (Long.MAX_VALUE - 9) / 10;
+    private static final double LONG_RANGE = 0x1p63;
+    private static final double ROUNDING_ERROR = 1e-3; // tính theo 1/SCALE: sai số của double (vd. 0.1 + 0.2)
+
+    private Money() {
+    }
+
+    public static long toMinor(double amount) {
+        double scaled = amount * SCALE;
+        if (Math.abs(scaled) >= LONG_RANGE) {
+            throw new ArithmeticException("Số tiền vượt giới hạn: " + amount);
+        }
+        return Math.round(scaled);
+    }
+
+    // Như toMinor nhưng từ chối số lẻ hơn 1/SCALE (vd. 12.345), chỉ bỏ qua sai số làm tròn của double
+    public static long toMinorExact(double amount) {
+        long minor = toMinor(amount);
+        double scaled = amount * SCALE;
+        if (Math.abs(scaled - minor) > Math.max(ROUNDING_ERROR, 4 * Math.ulp(scaled))) {
+            throw new ArithmeticException("Số tiền lẻ hơn " + FRACTION_DIGITS + " chữ số thập phân: " + amount);
+        }
+        return minor;
+    }
+
+    // Dạng thập phân thường, không số mũ, bỏ số 0 cuối: 14800000000 -> "148000000", 1250 -> "12.5".
+    // parse() đọc lại đúng giá trị này.
+    public static String format(long minor) {
+        StringBuilder sb = new StringBuilder(24);
+        if (minor < 0) {
+            sb.append('-');
+        }
+        sb.append(Math.abs(minor / SCALE));
+        long fraction = Math.abs(minor % SCALE);
+        if (fraction != 0) {
+            sb.append('.');
+            for (long unit = SCALE / 10; fraction != 0; unit /= 10) {
+                sb.append((char) ('0' + fraction / unit));
+                fraction %= unit;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static double toDouble(long minor) {
+        return (double) minor / SCALE;
+    }
+
+    // Cộng/nhân có kiểm tra tràn (ArithmeticException) cho các tổng cộng dồn
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long times(long minor, long quantity) {
+        return Math.multiplyExact(minor, quantity);
+    }
+
+    // Parse số thập phân trong buf[start, end) thẳng sang đơn vị 1/SCALE, không qua double.
+    // Dạng thường ("148000000", "-12.5") đọc tại chỗ; còn lại (số mũ, số 0 thừa cuối) qua BigDecimal.
+    // Số lẻ hơn 1/SCALE (vd. "12.345") ném NumberFormatException thay vì làm tròn.
+    public static long parse(char[] buf, int start, int end) {
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+            negative = buf[p] == '-';
+            p++;
+        }
+
+        long minor = 0;
+        int fraction = -1; // số chữ số sau dấu chấm, -1 khi chưa gặp dấu chấm
+        boolean seenDigit = false;
+        for (; p < end; p++) {
+            char c = buf[p];
+            if (c >= '0' && c <= '9') {
+                if (fraction >= FRACTION_DIGITS || minor > MAX_BEFORE_DIGIT) {
+                    return parse(new String(buf, start, end - start));
+                }
+                minor = minor * 10 + (c - '0');
+                seenDigit = true;
+                if (fraction >= 0) fraction++;
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return parse(new String(buf, start, end - start));
+            }
+        }
+        if (!seenDigit) {
+            return parse(new String(buf, start, end - start));
+        }
+
+        for (int i = Math.max(fraction, 0); i < FRACTION_DIGITS; i++) {
+            minor = Math.multiplyExact(minor, 10);
+        }
+        return negative ? -minor : minor;
+    }
+
+    // Như parse(String) nhưng làm tròn HALF_UP về 1/SCALE thay vì từ chối: chỉ dùng khi load file CSV
+    // ghi trước khi có Money (Double.toString có thể ra 3 chữ số lẻ trở lên)
+    public static long parseRounded(String text) {
+        return new BigDecimal(text.trim()).setScale(FRACTION_DIGITS, RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+    }
+
+    public static long parse(String text) {
+        BigDecimal value = new BigDecimal(text.trim());
+        try {
+            value = value.setScale(FRACTION_DIGITS, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Số tiền lẻ hơn " + FRACTION_DIGITS + " chữ số thập phân: " + text);
+        }
+        return value.unscaledValue().longValueExact();
+    }
+}
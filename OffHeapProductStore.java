@@ -0,0 +1,819 @@
+package repository;
+
+import domain.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Kho sản phẩm ngoài heap cho catalog rất lớn (hàng chục triệu SKU), thay cho ProductRepository
+// khi GC là vấn đề: mỗi sản phẩm là một record cố định trong direct ByteBuffer,
+// chuỗi (id, name, category, size...) nằm trong bảng chuỗi off-heap đã khử trùng lặp.
+// Trên heap chỉ còn vài mảng int/long; Product chỉ được dựng ra khi đọc (findById, findAll...).
+// Cùng định dạng file CSV với ProductRepository.
+// Record đã xóa và chuỗi không còn ai dùng (đếm tham chiếu) được dọn bằng compaction khi chiếm quá nửa.
+public class OffHeapProductStore implements ProductStore {
+    private static final byte ELECTRONICS = 0;
+    private static final byte CLOTHING = 1;
+    private static final byte FOOD = 2;
+    private static final byte FURNITURE = 3;
+    private static final byte DELETED = -1;
+
+    // Bố cục record
+    private static final int TYPE = 0;
+    private static final int ID = 4;
+    private static final int NAME = 8;
+    private static final int CATEGORY = 12;
+    private static final int IMPORT_PRICE = 16; // double, giữ nguyên giá trị như trên heap
+    private static final int SALE_PRICE = 24;
+    private static final int STOCK = 32;
+    private static final int EXTRA_INT = 36;    // warrantyMonths / expiry epoch day
+    private static final int EXTRA_STRING1 = 40; // size / dimensions
+    private static final int EXTRA_STRING2 = 44; // material
+    private static final int WEIGHT = 48;
+    private static final int RECORD_SIZE = 56;
+
+    private static final int RECORDS_PER_PAGE = 1 << 16;
+    private static final int STRING_PAGE_SIZE = 16 * 1024 * 1024;
+    private static final int NO_STRING = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+    private static final long MIN_DEAD_BYTES_TO_COMPACT = 1 << 20;
+
+    private final String filePath;
+    private final ReentrantReadWriteLock lock;
+    private final RepositoryMetrics metrics;
+    private final List<EntityStore.Listener<Product>> listeners;
+    private volatile long version;
+
+    private final List<ByteBuffer> recordPages;
+    private int recordCount; // kể cả record đã xóa
+    private int liveCount;
+    private int deletedCount;
+    private int[] recordOfString; // số thứ tự chuỗi id -> record, -1 nếu không có
+
+    // Bảng chuỗi: chuỗi thứ n nằm ở stringOffsets[n] dạng [int độ dài][UTF-8]
+    private List<ByteBuffer> stringPages;
+    private long[] stringOffsets;
+    private int[] stringHashes;
+    private int[] lowerOf;     // chuỗi -> bản toLowerCase (chính nó nếu toàn ASCII hoặc đã thường), để search so byte
+    private int[] refCounts;   // số field record (và bản gốc, với chuỗi lowercase) đang trỏ tới; 0 = rác
+    private int stringCount;
+    private long stringBytes;  // tổng byte đã ghi vào bảng chuỗi
+    private long deadBytes;    // phần trong đó thuộc chuỗi có refCount = 0
+    private int[] stringTable; // open addressing: số thứ tự chuỗi + 1, 0 = trống
+
+    public OffHeapProductStore(String filePath) {
+        this.filePath = filePath;
+        this.lock = new ReentrantReadWriteLock();
+        this.metrics = new RepositoryMetrics("products-offheap");
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.recordPages = new ArrayList<>();
+        reset();
+    }
+
+    // Số liệu thao tác (mặc định tắt), xem RepositoryMetrics
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Listener nhận Product dựng từ record; chỉ dựng khi có listener
+    @Override
+    public void addChangeListener(EntityStore.Listener<Product> listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            for (int record = 0; record < recordCount; record++) {
+                if (isLive(record)) {
+                    listener.added(materialize(record));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void save() throws IOException {
+        long start = metrics.start();
+        lock.readLock().lock();
+        try (SnapshotWriter writer = new SnapshotWriter(filePath)) {
+            // Header
+            writer.write("id,productType,name,category,importPrice,salePrice,stockQuantity,extra1,extra2");
+            writer.newLine();
+
+            // Data
+            for (int record = 0; record < recordCount; record++) {
+                if (isLive(record)) {
+                    writer.write(ProductRepository.toCsvRow(materialize(record)));
+                    writer.newLine();
+                }
+            }
+            writer.commit();
+            metrics.recordWrite(liveCount, writer.bytesWritten());
+        } finally {
+            lock.readLock().unlock();
+            metrics.record(RepositoryMetrics.Operation.SAVE, start);
+        }
+    }
+
+    // Không có change log nên compact chính là save
+    @Override
+    public void compact() throws IOException {
+        save();
+    }
+
+    @Override
+    public void load() throws IOException {
+        long start = metrics.start();
+        lock.writeLock().lock();
+        try {
+            reset();
+            File file = new File(filePath);
+            if (!file.exists()) {
+                return;
+            }
+            long rows = 0;
+            try (CsvReader reader = CsvReader.open(filePath)) {
+                StringPool pool = new StringPool();
+                reader.next(); // Skip header
+
+                // Product tạm chỉ sống đến khi được chép vào record
+                while (reader.next()) {
+                    rows++;
+                    Product product = ProductRepository.parseProduct(reader, pool);
+                    if (product != null) {
+                        put(product);
+                    }
+                }
+            }
+            compactIfNeeded(); // id trùng trong file để lại chuỗi cũ
+            metrics.recordRead(rows, file.length());
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    @Override
+    public void replaceAll(Collection<Product> products) {
+        long start = metrics.start();
+        lock.writeLock().lock();
+        try {
+            reset();
+            for (Product product : products) {
+                put(product);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    @Override
+    public String getFilePath() {
+        return filePath;
+    }
+
+    @Override
+    public void clear() {
+        long start = metrics.start();
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+            metrics.record(RepositoryMetrics.Operation.CLEAR, start);
+        }
+    }
+
+    @Override
+    public Product findById(String id) {
+        long start = metrics.start();
+        lock.readLock().lock();
+        try {
+            int record = recordOf(id);
+            return record < 0 ? null : materialize(record);
+        } finally {
+            lock.readLock().unlock();
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
+    }
+
+    @Override
+    public List<Product> findByName(String name) {
+        long start = metrics.start();
+        try {
+            return scan(name.toLowerCase(), true);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_NAME, start);
+        }
+    }
+
+    @Override
+    public List<Product> findAll() {
+        long start = metrics.start();
+        try {
+            List<Product> result = new ArrayList<>(liveCount);
+            forEach(result::add);
+            return result;
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Product> search(String criteria) {
+        long start = metrics.start();
+        try {
+            return scan(criteria.toLowerCase(), false);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.SEARCH, start);
+        }
+    }
+
+    // Dựng lần lượt từng Product, không giữ lại danh sách
+    public void forEach(Consumer<Product> action) {
+        lock.readLock().lock();
+        try {
+            for (int record = 0; record < recordCount; record++) {
+                if (isLive(record)) {
+                    action.accept(materialize(record));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Thêm mới, hoặc ghi đè tại chỗ nếu id đã có
+    @Override
+    public void add(Product product) {
+        lock.writeLock().lock();
+        try {
+            put(product);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean delete(String id) {
+        lock.writeLock().lock();
+        try {
+            int record = recordOf(id);
+            if (record < 0) {
+                return false;
+            }
+            Product previous = listeners.isEmpty() ? null : materialize(record);
+            ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+            int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+            recordOfString[page.getInt(base + ID)] = -1;
+            releaseStrings(page, base, true);
+            page.put(base + TYPE, DELETED);
+            liveCount--;
+            deletedCount++;
+            version++;
+            for (EntityStore.Listener<Product> listener : listeners) {
+                listener.removed(previous);
+            }
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Đọc/ghi tồn kho trực tiếp trên record, không dựng Product
+    public int getStockQuantity(String id) {
+        lock.readLock().lock();
+        try {
+            int record = recordOf(id);
+            return record < 0 ? -1 : recordPages.get(record / RECORDS_PER_PAGE)
+                    .getInt((record % RECORDS_PER_PAGE) * RECORD_SIZE + STOCK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean updateStock(String id, int quantity) {
+        lock.writeLock().lock();
+        try {
+            int record = recordOf(id);
+            if (record < 0) {
+                return false;
+            }
+            Product previous = listeners.isEmpty() ? null : materialize(record);
+            recordPages.get(record / RECORDS_PER_PAGE).putInt((record % RECORDS_PER_PAGE) * RECORD_SIZE + STOCK, quantity);
+            version++;
+            if (previous != null) {
+                Product current = materialize(record);
+                for (EntityStore.Listener<Product> listener : listeners) {
+                    listener.replaced(previous, current);
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Chỉ dựng Product cho các record thỏa điều kiện
+    @Override
+    public List<Product> getLowStockProducts(int threshold) {
+        lock.readLock().lock();
+        try {
+            List<Product> result = new ArrayList<>();
+            for (int record = 0; record < recordCount; record++) {
+                ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+                int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+                if (page.get(base + TYPE) != DELETED && page.getInt(base + STOCK) < threshold) {
+                    result.add(materialize(record));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        return liveCount;
+    }
+
+    // Dung lượng direct buffer đã cấp
+    public long offHeapBytes() {
+        return (long) recordPages.size() * RECORDS_PER_PAGE * RECORD_SIZE
+                + (long) stringPages.size() * STRING_PAGE_SIZE;
+    }
+
+    private void reset() {
+        recordPages.clear();
+        stringPages = new ArrayList<>();
+        recordCount = 0;
+        liveCount = 0;
+        deletedCount = 0;
+        recordOfString = new int[1024];
+        Arrays.fill(recordOfString, -1);
+        stringOffsets = new long[1024];
+        stringHashes = new int[1024];
+        lowerOf = new int[1024];
+        refCounts = new int[1024];
+        stringCount = 0;
+        stringBytes = 0;
+        deadBytes = 0;
+        stringTable = new int[2048];
+        version++;
+        for (EntityStore.Listener<Product> listener : listeners) {
+            listener.cleared();
+        }
+    }
+
+    private void put(Product product) {
+        int idRef = lookupOrAdd(product.getId());
+        int record = idRef < recordOfString.length ? recordOfString[idRef] : -1;
+        boolean existing = record >= 0;
+        Product previous = existing && !listeners.isEmpty() ? materialize(record) : null;
+        if (!existing) {
+            record = recordCount++;
+            if (record / RECORDS_PER_PAGE == recordPages.size()) {
+                recordPages.add(ByteBuffer.allocateDirect(RECORDS_PER_PAGE * RECORD_SIZE));
+            }
+            if (idRef >= recordOfString.length) {
+                int oldLength = recordOfString.length;
+                recordOfString = Arrays.copyOf(recordOfString, Math.max(idRef + 1, oldLength * 2));
+                Arrays.fill(recordOfString, oldLength, recordOfString.length, -1);
+            }
+            recordOfString[idRef] = record;
+            acquire(idRef);
+            liveCount++;
+        }
+
+        ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+        int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+        // Chuỗi mới được giữ trước khi nhả chuỗi cũ để chuỗi không đổi không bị tính là rác
+        int name = intern(product.getName());
+        int category = intern(product.getCategory());
+        int extra1 = NO_STRING;
+        int extra2 = NO_STRING;
+        if (product instanceof Clothing) {
+            extra1 = intern(((Clothing) product).getSize());
+            extra2 = intern(((Clothing) product).getMaterial());
+        } else if (product instanceof Furniture) {
+            extra1 = intern(((Furniture) product).getDimensions());
+        }
+        if (existing) {
+            releaseStrings(page, base, false);
+        }
+
+        page.putInt(base + ID, idRef);
+        page.putInt(base + NAME, name);
+        page.putInt(base + CATEGORY, category);
+        page.putDouble(base + IMPORT_PRICE, product.getImportPrice());
+        page.putDouble(base + SALE_PRICE, product.getSalePrice());
+        page.putInt(base + STOCK, product.getStockQuantity());
+        page.putInt(base + EXTRA_INT, 0);
+        page.putInt(base + EXTRA_STRING1, extra1);
+        page.putInt(base + EXTRA_STRING2, extra2);
+        page.putDouble(base + WEIGHT, 0);
+
+        if (product instanceof Electronics) {
+            page.put(base + TYPE, ELECTRONICS);
+            page.putInt(base + EXTRA_INT, ((Electronics) product).getWarrantyMonths());
+        } else if (product instanceof Clothing) {
+            page.put(base + TYPE, CLOTHING);
+        } else if (product instanceof Food) {
+            LocalDate expiryDate = ((Food) product).getExpiryDate();
+            page.put(base + TYPE, FOOD);
+            page.putInt(base + EXTRA_INT, expiryDate == null ? NO_DATE : (int) expiryDate.toEpochDay());
+        } else if (product instanceof Furniture) {
+            page.put(base + TYPE, FURNITURE);
+            page.putDouble(base + WEIGHT, ((Furniture) product).getWeight());
+        } else {
+            throw new IllegalArgumentException("Loại sản phẩm không hỗ trợ: " + product.getProductType());
+        }
+
+        version++;
+        for (EntityStore.Listener<Product> listener : listeners) {
+            if (existing) {
+                listener.replaced(previous, product);
+            } else {
+                listener.added(product);
+            }
+        }
+    }
+
+    private Product materialize(int record) {
+        ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+        int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+
+        String id = string(page.getInt(base + ID));
+        String name = string(page.getInt(base + NAME));
+        String category = string(page.getInt(base + CATEGORY));
+        double importPrice = page.getDouble(base + IMPORT_PRICE);
+        double salePrice = page.getDouble(base + SALE_PRICE);
+        int stock = page.getInt(base + STOCK);
+
+        switch (page.get(base + TYPE)) {
+            case ELECTRONICS:
+                return new Electronics(id, name, category, importPrice, salePrice, stock,
+                        page.getInt(base + EXTRA_INT));
+            case CLOTHING:
+                return new Clothing(id, name, category, importPrice, salePrice, stock,
+                        string(page.getInt(base + EXTRA_STRING1)), string(page.getInt(base + EXTRA_STRING2)));
+            case FOOD:
+                int expiry = page.getInt(base + EXTRA_INT);
+                return new Food(id, name, category, importPrice, salePrice, stock,
+                        expiry == NO_DATE ? null : LocalDate.ofEpochDay(expiry));
+            default:
+                return new Furniture(id, name, category, importPrice, salePrice, stock,
+                        string(page.getInt(base + EXTRA_STRING1)), page.getDouble(base + WEIGHT));
+        }
+    }
+
+    private boolean isLive(int record) {
+        return recordPages.get(record / RECORDS_PER_PAGE).get((record % RECORDS_PER_PAGE) * RECORD_SIZE + TYPE) != DELETED;
+    }
+
+    // byName: chỉ so name; ngược lại so name, category và id như ProductRepository.search.
+    // So byte UTF-8 của bản lowercase đã lưu sẵn, không dựng String cho record không khớp.
+    private List<Product> scan(String lower, boolean byName) {
+        byte[] needle = lower.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            List<Product> result = new ArrayList<>();
+            for (int record = 0; record < recordCount; record++) {
+                ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+                int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+                if (page.get(base + TYPE) == DELETED) {
+                    continue;
+                }
+                boolean match = contains(page.getInt(base + NAME), needle)
+                        || !byName && (contains(page.getInt(base + CATEGORY), needle)
+                        || contains(page.getInt(base + ID), needle));
+                if (match) {
+                    result.add(materialize(record));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bản lowercase của chuỗi ref có chứa needle (đã lowercase) không. UTF-8 tự đồng bộ nên so byte = so ký tự;
+    // chữ hoa ASCII được hạ ngay khi so nên chuỗi ASCII không cần lưu thêm bản lowercase.
+    private boolean contains(int ref, byte[] needle) {
+        if (ref == NO_STRING) {
+            return false;
+        }
+        int lower = lowerOf[ref];
+        ByteBuffer page = stringPages.get((int) (stringOffsets[lower] / STRING_PAGE_SIZE));
+        int offset = (int) (stringOffsets[lower] % STRING_PAGE_SIZE) + 4;
+        int last = offset + page.getInt(offset - 4) - needle.length;
+        candidates:
+        for (int i = offset; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                byte b = page.get(i + j);
+                if ((b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b) != needle[j]) {
+                    continue candidates;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int recordOf(String id) {
+        int idRef = find(id.getBytes(StandardCharsets.UTF_8));
+        return idRef < 0 || idRef >= recordOfString.length ? -1 : recordOfString[idRef];
+    }
+
+    // ---- bảng chuỗi ----
+
+    // Số thứ tự của chuỗi (thêm mới nếu chưa có) và tăng refCount
+    private int intern(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        int ref = lookupOrAdd(value);
+        acquire(ref);
+        return ref;
+    }
+
+    // Nhả các chuỗi của record; withId khi xóa record
+    private void releaseStrings(ByteBuffer page, int base, boolean withId) {
+        if (withId) {
+            release(page.getInt(base + ID));
+        }
+        release(page.getInt(base + NAME));
+        release(page.getInt(base + CATEGORY));
+        release(page.getInt(base + EXTRA_STRING1));
+        release(page.getInt(base + EXTRA_STRING2));
+    }
+
+    // Chuỗi mới thêm có refCount = 0 (đã tính vào deadBytes) cho tới khi được acquire
+    private void acquire(int ref) {
+        if (refCounts[ref]++ == 0) {
+            deadBytes -= 4 + length(ref);
+            if (lowerOf[ref] != ref) {
+                acquire(lowerOf[ref]);
+            }
+        }
+    }
+
+    private void release(int ref) {
+        if (ref == NO_STRING) {
+            return;
+        }
+        if (--refCounts[ref] == 0) {
+            deadBytes += 4 + length(ref);
+            if (lowerOf[ref] != ref) {
+                release(lowerOf[ref]);
+            }
+        }
+    }
+
+    private int lookupOrAdd(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int existing = find(bytes);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        int lowerRef = NO_STRING;
+        if (bytes.length != value.length()) { // có ký tự ngoài ASCII
+            String lower = value.toLowerCase();
+            if (!lower.equals(value)) {
+                lowerRef = lookupOrAdd(lower);
+            }
+        }
+
+        int ref = stringCount++;
+        if (ref == stringOffsets.length) {
+            stringOffsets = Arrays.copyOf(stringOffsets, ref * 2);
+            stringHashes = Arrays.copyOf(stringHashes, ref * 2);
+            lowerOf = Arrays.copyOf(lowerOf, ref * 2);
+            refCounts = Arrays.copyOf(refCounts, ref * 2);
+        }
+        stringOffsets[ref] = append(stringPages, bytes);
+        stringHashes[ref] = Arrays.hashCode(bytes);
+        lowerOf[ref] = lowerRef == NO_STRING ? ref : lowerRef;
+        refCounts[ref] = 0;
+        stringBytes += 4 + bytes.length;
+        deadBytes += 4 + bytes.length;
+
+        if (stringCount * 2 > stringTable.length) {
+            rehash(stringTable.length * 2);
+        }
+        insert(ref);
+        return ref;
+    }
+
+    // Ghi [độ dài][bytes] vào trang cuối (cấp trang mới nếu không đủ chỗ), trả về vị trí tuyệt đối
+    private static long append(List<ByteBuffer> pages, byte[] bytes) {
+        int length = 4 + bytes.length;
+        if (length > STRING_PAGE_SIZE) {
+            throw new IllegalArgumentException("Chuỗi quá dài: " + bytes.length + " byte");
+        }
+        ByteBuffer page = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        if (page == null || page.remaining() < length) {
+            page = ByteBuffer.allocateDirect(STRING_PAGE_SIZE);
+            pages.add(page);
+        }
+        long offset = (long) (pages.size() - 1) * STRING_PAGE_SIZE + page.position();
+        page.putInt(bytes.length);
+        page.put(bytes);
+        return offset;
+    }
+
+    private int find(byte[] bytes) {
+        int hash = Arrays.hashCode(bytes);
+        int mask = stringTable.length - 1;
+        for (int slot = mix(hash) & mask; stringTable[slot] != 0; slot = (slot + 1) & mask) {
+            int ref = stringTable[slot] - 1;
+            if (stringHashes[ref] == hash && bytesEqual(ref, bytes)) {
+                return ref;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int ref) {
+        int mask = stringTable.length - 1;
+        int slot = mix(stringHashes[ref]) & mask;
+        while (stringTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        stringTable[slot] = ref + 1;
+    }
+
+    private void rehash(int capacity) {
+        stringTable = new int[capacity];
+        for (int ref = 0; ref < stringCount; ref++) {
+            insert(ref);
+        }
+    }
+
+    private boolean bytesEqual(int ref, byte[] bytes) {
+        ByteBuffer page = stringPages.get((int) (stringOffsets[ref] / STRING_PAGE_SIZE));
+        int offset = (int) (stringOffsets[ref] % STRING_PAGE_SIZE);
+        if (page.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (page.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int length(int ref) {
+        return stringPages.get((int) (stringOffsets[ref] / STRING_PAGE_SIZE))
+                .getInt((int) (stringOffsets[ref] % STRING_PAGE_SIZE));
+    }
+
+    private String string(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        return new String(bytes(ref), StandardCharsets.UTF_8);
+    }
+
+    private byte[] bytes(int ref) {
+        ByteBuffer page = stringPages.get((int) (stringOffsets[ref] / STRING_PAGE_SIZE));
+        int offset = (int) (stringOffsets[ref] % STRING_PAGE_SIZE);
+        byte[] bytes = new byte[page.getInt(offset)];
+        ByteBuffer view = page.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return bytes;
+    }
+
+    // ---- compaction ----
+
+    private void compactIfNeeded() {
+        if (deletedCount >= MIN_DELETED_TO_COMPACT && deletedCount > liveCount) {
+            compactRecords();
+        }
+        if (deadBytes >= MIN_DEAD_BYTES_TO_COMPACT && deadBytes * 2 > stringBytes) {
+            compactStrings();
+        }
+    }
+
+    // Dồn record còn sống về đầu, giữ nguyên thứ tự, rồi bỏ các trang thừa
+    private void compactRecords() {
+        int write = 0;
+        for (int read = 0; read < recordCount; read++) {
+            ByteBuffer from = recordPages.get(read / RECORDS_PER_PAGE);
+            int fromBase = (read % RECORDS_PER_PAGE) * RECORD_SIZE;
+            if (from.get(fromBase + TYPE) == DELETED) {
+                continue;
+            }
+            if (read != write) {
+                ByteBuffer to = recordPages.get(write / RECORDS_PER_PAGE);
+                int toBase = (write % RECORDS_PER_PAGE) * RECORD_SIZE;
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    to.putLong(toBase + i, from.getLong(fromBase + i));
+                }
+                recordOfString[from.getInt(fromBase + ID)] = write;
+            }
+            write++;
+        }
+        recordCount = write;
+        deletedCount = 0;
+        int pages = (write + RECORDS_PER_PAGE - 1) / RECORDS_PER_PAGE;
+        while (recordPages.size() > pages) {
+            recordPages.remove(recordPages.size() - 1);
+        }
+    }
+
+    // Chép các chuỗi còn được dùng sang trang mới, đánh số lại và sửa các ref trong record
+    private void compactStrings() {
+        int[] remap = new int[stringCount];
+        List<ByteBuffer> pages = new ArrayList<>();
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, stringCount - countDead())) * 2);
+        long[] offsets = new long[capacity];
+        int[] hashes = new int[capacity];
+        int[] counts = new int[capacity];
+        int count = 0;
+        long bytes = 0;
+        for (int ref = 0; ref < stringCount; ref++) {
+            if (refCounts[ref] == 0) {
+                remap[ref] = NO_STRING;
+                continue;
+            }
+            byte[] value = bytes(ref);
+            offsets[count] = append(pages, value);
+            hashes[count] = stringHashes[ref];
+            counts[count] = refCounts[ref];
+            bytes += 4 + value.length;
+            remap[ref] = count++;
+        }
+        int[] lowers = new int[capacity];
+        for (int ref = 0; ref < stringCount; ref++) {
+            if (remap[ref] != NO_STRING) {
+                lowers[remap[ref]] = remap[lowerOf[ref]]; // bản lowercase được giữ bởi chuỗi gốc nên vẫn sống
+            }
+        }
+
+        recordOfString = new int[Math.max(1024, count)];
+        Arrays.fill(recordOfString, -1);
+        for (int record = 0; record < recordCount; record++) {
+            ByteBuffer page = recordPages.get(record / RECORDS_PER_PAGE);
+            int base = (record % RECORDS_PER_PAGE) * RECORD_SIZE;
+            if (page.get(base + TYPE) == DELETED) {
+                continue;
+            }
+            for (int field : new int[]{ID, NAME, CATEGORY, EXTRA_STRING1, EXTRA_STRING2}) {
+                int ref = page.getInt(base + field);
+                if (ref != NO_STRING) {
+                    page.putInt(base + field, remap[ref]);
+                }
+            }
+            recordOfString[page.getInt(base + ID)] = record;
+        }
+
+        stringPages = pages;
+        stringOffsets = offsets;
+        stringHashes = hashes;
+        lowerOf = lowers;
+        refCounts = counts;
+        stringCount = count;
+        stringBytes = bytes;
+        deadBytes = 0;
+        rehash(Math.max(2048, Integer.highestOneBit(Math.max(1, count)) * 4));
+    }
+
+    private int countDead() {
+        int dead = 0;
+        for (int ref = 0; ref < stringCount; ref++) {
+            if (refCounts[ref] == 0) {
+                dead++;
+            }
+        }
+        return dead;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,424 @@
+package repository;
+
+import domain.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+// Bảng cột chỉ đọc chiếu từ order + items để chạy báo cáo ad-hoc mà không duyệt object graph:
+// khóa là id từ điển (int), ngày là epoch day (int), tiền là long đơn vị Money.
+// Group-by/sum chạy trên mảng nguyên thủy, chia đoạn bằng fork-join; mỗi đoạn cộng vào mảng riêng
+// rồi gộp lại. Cộng long nên kết quả tuần tự hay song song đều giống hệt nhau; tràn long thì ném ArithmeticException.
+public class OrderAnalytics {
+    private static final int MIN_SPLIT = 1 << 15;
+
+    // PARTNER: supplier (nhập) / customer (xuất); LOCATION: warehouseLocation / deliveryAddress
+    public enum Dimension { PARTNER, LOCATION, MONTH, STATUS, PRODUCT, CATEGORY }
+
+    // ORDER_*: theo dòng order; còn lại theo dòng item. Tiền tính theo đơn vị Money.
+    // MARGIN = quantity * (salePrice - importPrice) của sản phẩm.
+    public enum Measure { ORDER_COUNT, ORDER_AMOUNT, QUANTITY, ITEM_AMOUNT, MARGIN }
+
+    private final String[][] dictionaries; // Dimension -> id -> giá trị
+
+    // Cột theo order
+    private final int orderCount;
+    private final int[] orderPartner;
+    private final int[] orderLocation;
+    private final int[] orderMonth;
+    private final int[] orderStatus;
+    private final int[] orderDay;
+    private final long[] orderAmount;
+
+    // Cột theo item
+    private final int itemCount;
+    private final int[] itemOrder; // dòng order chứa item
+    private final int[] itemProduct;
+    private final int[] itemCategory;
+    private final long[] itemQuantity;
+    private final long[] itemAmount;
+    private final long[] itemMargin;
+
+    long version;        // version của store order lúc dựng, do OrderRepository quản lý
+    long productVersion; // version của ProductRepository lúc dựng (category, giá trong MARGIN)
+
+    private OrderAnalytics(Builder builder) {
+        this.dictionaries = new String[Dimension.values().length][];
+        for (Dimension dimension : Dimension.values()) {
+            dictionaries[dimension.ordinal()] = builder.dictionaries.get(dimension.ordinal()).toArray();
+        }
+        this.orderCount = builder.orderCount;
+        this.orderPartner = builder.orderPartner;
+        this.orderLocation = builder.orderLocation;
+        this.orderMonth = builder.orderMonth;
+        this.orderStatus = builder.orderStatus;
+        this.orderDay = builder.orderDay;
+        this.orderAmount = builder.orderAmount;
+        this.itemCount = builder.itemCount;
+        this.itemOrder = builder.itemOrder;
+        this.itemProduct = builder.itemProduct;
+        this.itemCategory = builder.itemCategory;
+        this.itemQuantity = builder.itemQuantity;
+        this.itemAmount = builder.itemAmount;
+        this.itemMargin = builder.itemMargin;
+    }
+
+    // products: sản phẩm hiện tại theo id (category, giá cho MARGIN), để sửa sản phẩm sau khi nạp order vẫn thấy;
+    // null hoặc không tìm thấy thì dùng sản phẩm gắn trong item
+    public static OrderAnalytics ofImports(Collection<ImportOrder> orders, Function<String, Product> products) {
+        List<List<OrderItem>> items = itemsOf(orders, ImportOrder::getItems);
+        Builder builder = new Builder(orders.size(), countItems(items), products);
+        int row = 0;
+        for (ImportOrder order : orders) {
+            Supplier supplier = order.getSupplier();
+            builder.addOrder(supplier == null ? "" : supplier.getId(), order.getWarehouseLocation(),
+                    order.getOrderDate(), order.getStatus(), order.getTotalAmount(), items.get(row++));
+        }
+        return new OrderAnalytics(builder);
+    }
+
+    public static OrderAnalytics ofExports(Collection<ExportOrder> orders, Function<String, Product> products) {
+        List<List<OrderItem>> items = itemsOf(orders, ExportOrder::getItems);
+        Builder builder = new Builder(orders.size(), countItems(items), products);
+        int row = 0;
+        for (ExportOrder order : orders) {
+            Customer customer = order.getCustomer();
+            builder.addOrder(customer == null ? "" : customer.getId(), order.getDeliveryAddress(),
+                    order.getOrderDate(), order.getStatus(), order.getTotalAmount(), items.get(row++));
+        }
+        return new OrderAnalytics(builder);
+    }
+
+    public int orderCount() {
+        return orderCount;
+    }
+
+    public int itemCount() {
+        return itemCount;
+    }
+
+    // Nhãn của id từ điển (id khách/supplier/sản phẩm, category, "2025-11", tên status...)
+    public String label(Dimension dimension, int key) {
+        return dictionaries[dimension.ordinal()][key];
+    }
+
+    // Tổng measure theo từng nhóm, chỉ gồm nhóm có dữ liệu, theo thứ tự gặp lần đầu.
+    // status null = mọi status. Chạy song song trên ForkJoinPool.commonPool().
+    public Map<String, Long> groupSum(Dimension dimension, Measure measure, OrderStatus status) {
+        return groupSum(dimension, measure, status, null, null);
+    }
+
+    // Chỉ tính order có ngày trong [from, to] (null = không giới hạn)
+    public Map<String, Long> groupSum(Dimension dimension, Measure measure, OrderStatus status,
+                                      LocalDate from, LocalDate to) {
+        return groupSum(dimension, measure, status, from, to, ForkJoinPool.commonPool());
+    }
+
+    // pool null = tuần tự; kết quả giống hệt khi chạy song song
+    public Map<String, Long> groupSum(Dimension dimension, Measure measure, OrderStatus status,
+                                      LocalDate from, LocalDate to, ForkJoinPool pool) {
+        return toMap(dimension, sum(dimension, measure, status, from, to, pool));
+    }
+
+    // k nhóm có tổng lớn nhất, giảm dần
+    public List<Map.Entry<String, Long>> topK(Dimension dimension, Measure measure, OrderStatus status, int k) {
+        long[] totals = sum(dimension, measure, status, null, null, ForkJoinPool.commonPool());
+        int groups = totals.length / 2;
+
+        // Min-heap k phần tử, hòa thì giữ nhóm gặp trước
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, k),
+                (a, b) -> totals[a] != totals[b] ? Long.compare(totals[a], totals[b]) : Integer.compare(b, a));
+        for (int key = 0; key < groups && k > 0; key++) {
+            if (totals[groups + key] == 0) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(key);
+            } else if (heap.comparator().compare(key, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(key);
+            }
+        }
+
+        List<Map.Entry<String, Long>> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int key = heap.poll();
+            result.add(0, new AbstractMap.SimpleImmutableEntry<>(label(dimension, key), totals[key]));
+        }
+        return result;
+    }
+
+    // Kết quả thô: [0, n) là tổng, [n, 2n) là số dòng của mỗi id từ điển.
+    // pool null thì chạy tuần tự trên thread hiện tại.
+    public long[] sum(Dimension dimension, Measure measure, OrderStatus status,
+                      LocalDate from, LocalDate to, ForkJoinPool pool) {
+        Scan scan = new Scan(dimension, measure, status, from, to);
+        if (pool == null || scan.rows <= MIN_SPLIT) {
+            long[] acc = new long[2 * scan.groups];
+            scan.accumulate(0, scan.rows, acc);
+            return acc;
+        }
+        // Chia tối đa ~4 đoạn mỗi thread để chi phí gộp mảng nhóm không lớn hơn chi phí quét
+        int split = Math.max(MIN_SPLIT, scan.rows / (pool.getParallelism() * 4) + 1);
+        return pool.invoke(new SumTask(scan, 0, scan.rows, split));
+    }
+
+    private Map<String, Long> toMap(Dimension dimension, long[] totals) {
+        int groups = totals.length / 2;
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int key = 0; key < groups; key++) {
+            if (totals[groups + key] > 0) {
+                result.put(label(dimension, key), totals[key]);
+            }
+        }
+        return result;
+    }
+
+    // getItems() mỗi order chỉ gọi một lần: với order lazy mỗi lần gọi là một lần đọc file items
+    private static <T> List<List<OrderItem>> itemsOf(Collection<T> orders, Function<T, List<OrderItem>> items) {
+        List<List<OrderItem>> result = new ArrayList<>(orders.size());
+        for (T order : orders) {
+            result.add(items.apply(order));
+        }
+        return result;
+    }
+
+    private static int countItems(List<List<OrderItem>> items) {
+        int count = 0;
+        for (List<OrderItem> list : items) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    // Cột khóa/giá trị/lọc đã chọn sẵn cho một truy vấn
+    private final class Scan {
+        private final int rows;
+        private final int groups;
+        private final int[] keys;
+        private final boolean keysByOrder; // keys là cột order trong khi quét dòng item
+        private final int[] via;           // dòng item -> dòng order, null nếu quét dòng order
+        private final long[] values;       // null = đếm
+        private final int status;          // -1 = mọi status
+        private final int fromDay;
+        private final int toDay;
+
+        Scan(Dimension dimension, Measure measure, OrderStatus filter, LocalDate from, LocalDate to) {
+            boolean byItem = measure != Measure.ORDER_COUNT && measure != Measure.ORDER_AMOUNT;
+            this.rows = byItem ? itemCount : orderCount;
+            this.groups = dictionaries[dimension.ordinal()].length;
+            this.via = byItem ? itemOrder : null;
+            this.status = filter == null ? -1 : filter.ordinal();
+            this.fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+            this.toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+
+            switch (dimension) {
+                case PRODUCT:
+                case CATEGORY:
+                    if (!byItem) {
+                        throw new IllegalArgumentException(dimension + " chỉ dùng với measure theo item");
+                    }
+                    this.keys = dimension == Dimension.PRODUCT ? itemProduct : itemCategory;
+                    this.keysByOrder = false;
+                    break;
+                case PARTNER:
+                    this.keys = orderPartner;
+                    this.keysByOrder = byItem;
+                    break;
+                case LOCATION:
+                    this.keys = orderLocation;
+                    this.keysByOrder = byItem;
+                    break;
+                case MONTH:
+                    this.keys = orderMonth;
+                    this.keysByOrder = byItem;
+                    break;
+                default:
+                    this.keys = orderStatus;
+                    this.keysByOrder = byItem;
+                    break;
+            }
+
+            switch (measure) {
+                case ORDER_COUNT:
+                    this.values = null;
+                    break;
+                case ORDER_AMOUNT:
+                    this.values = orderAmount;
+                    break;
+                case QUANTITY:
+                    this.values = itemQuantity;
+                    break;
+                case ITEM_AMOUNT:
+                    this.values = itemAmount;
+                    break;
+                default:
+                    this.values = itemMargin;
+                    break;
+            }
+        }
+
+        void accumulate(int from, int to, long[] acc) {
+            for (int i = from; i < to; i++) {
+                int row = via == null ? i : via[i];
+                if (status >= 0 && orderStatus[row] != status
+                        || orderDay[row] < fromDay || orderDay[row] > toDay) {
+                    continue;
+                }
+                int key = keysByOrder ? keys[row] : keys[i];
+                acc[key] = Money.add(acc[key], values == null ? 1 : values[i]);
+                acc[groups + key]++;
+            }
+        }
+    }
+
+    private static class SumTask extends RecursiveTask<long[]> {
+        private final Scan scan;
+        private final int from;
+        private final int to;
+        private final int split;
+
+        SumTask(Scan scan, int from, int to, int split) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= split) {
+                long[] acc = new long[2 * scan.groups];
+                scan.accumulate(from, to, acc);
+                return acc;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(scan, from, mid, split);
+            left.fork();
+            long[] right = new SumTask(scan, mid, to, split).compute();
+            long[] result = left.join();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Money.add(result[i], right[i]);
+            }
+            return result;
+        }
+    }
+
+    private static class Builder {
+        private final List<Dictionary> dictionaries = new ArrayList<>();
+        private final Map<Integer, Integer> months = new HashMap<>(); // năm*12 + tháng -> id
+        private final Function<String, Product> products;
+
+        private int orderCount;
+        private final int[] orderPartner;
+        private final int[] orderLocation;
+        private final int[] orderMonth;
+        private final int[] orderStatus;
+        private final int[] orderDay;
+        private final long[] orderAmount;
+
+        private int itemCount;
+        private final int[] itemOrder;
+        private final int[] itemProduct;
+        private final int[] itemCategory;
+        private final long[] itemQuantity;
+        private final long[] itemAmount;
+        private final long[] itemMargin;
+
+        Builder(int orders, int items, Function<String, Product> products) {
+            this.products = products;
+            for (int i = 0; i < Dimension.values().length; i++) {
+                dictionaries.add(new Dictionary());
+            }
+            // id status = ordinal để so trực tiếp khi lọc
+            for (OrderStatus status : OrderStatus.values()) {
+                dictionary(Dimension.STATUS).id(status.name());
+            }
+            orderPartner = new int[orders];
+            orderLocation = new int[orders];
+            orderMonth = new int[orders];
+            orderStatus = new int[orders];
+            orderDay = new int[orders];
+            orderAmount = new long[orders];
+            itemOrder = new int[items];
+            itemProduct = new int[items];
+            itemCategory = new int[items];
+            itemQuantity = new long[items];
+            itemAmount = new long[items];
+            itemMargin = new long[items];
+        }
+
+        void addOrder(String partner, String location, LocalDate date, OrderStatus status,
+                      double totalAmount, List<OrderItem> items) {
+            int row = orderCount++;
+            orderPartner[row] = dictionary(Dimension.PARTNER).id(partner);
+            orderLocation[row] = dictionary(Dimension.LOCATION).id(location == null ? "" : location);
+            orderMonth[row] = month(date);
+            orderStatus[row] = status.ordinal();
+            orderDay[row] = (int) date.toEpochDay();
+            orderAmount[row] = Money.toMinor(totalAmount);
+
+            for (OrderItem item : items) {
+                int i = itemCount++;
+                Product product = current(item.getProduct());
+                long quantity = item.getQuantity();
+                itemOrder[i] = row;
+                itemProduct[i] = dictionary(Dimension.PRODUCT).id(product.getId());
+                itemCategory[i] = dictionary(Dimension.CATEGORY).id(product.getCategory());
+                itemQuantity[i] = quantity;
+                itemAmount[i] = Money.times(Money.toMinor(item.getUnitPrice()), quantity);
+                itemMargin[i] = Money.times(Money.subtract(Money.toMinor(product.getSalePrice()),
+                        Money.toMinor(product.getImportPrice())), quantity);
+            }
+        }
+
+        private Product current(Product product) {
+            Product current = products != null ? products.apply(product.getId()) : null;
+            return current != null ? current : product;
+        }
+
+        private int month(LocalDate date) {
+            int key = date.getYear() * 12 + date.getMonthValue() - 1;
+            Integer id = months.get(key);
+            if (id == null) {
+                id = dictionary(Dimension.MONTH).id(YearMonth.from(date).toString());
+                months.put(key, id);
+            }
+            return id;
+        }
+
+        private Dictionary dictionary(Dimension dimension) {
+            return dictionaries.get(dimension.ordinal());
+        }
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package repository;
+
+import domain.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Truy vấn đơn nhập/xuất nhiều điều kiện (AND), vd.
+//     new OrderQuery().status(OrderStatus.COMPLETED).between(from, to)
+//             .orderByDescending(OrderQuery.Sort.TOTAL_AMOUNT).limit(10)
+// Chạy bằng OrderRepository.queryImportOrders()/queryExportOrders() hoặc các bản stream...();
+// cùng giá trị sắp xếp thì xếp theo id. Không orderBy thì thứ tự kết quả tùy index được chọn.
+public class OrderQuery {
+    public enum Sort {
+        DATE, TOTAL_AMOUNT
+    }
+
+    private Set<OrderStatus> statuses; // null = không lọc
+    private LocalDate from;            // null = không giới hạn
+    private LocalDate to;
+    private double minTotal = Double.NEGATIVE_INFINITY;
+    private double maxTotal = Double.POSITIVE_INFINITY;
+    private Sort sort;
+    private boolean descending;
+    private int limit = QueryPlan.NO_LIMIT;
+
+    public OrderQuery status(OrderStatus... statuses) {
+        this.statuses = statuses.length == 0 ? EnumSet.noneOf(OrderStatus.class) : EnumSet.copyOf(Arrays.asList(statuses));
+        return this;
+    }
+
+    // Ngày đặt trong [from, to]; một đầu null là không giới hạn phía đó. Order không có ngày không khớp.
+    public OrderQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    // min <= totalAmount <= max
+    public OrderQuery totalBetween(double min, double max) {
+        this.minTotal = min;
+        this.maxTotal = max;
+        return this;
+    }
+
+    public OrderQuery orderBy(Sort sort) {
+        this.sort = sort;
+        this.descending = false;
+        return this;
+    }
+
+    public OrderQuery orderByDescending(Sort sort) {
+        this.sort = sort;
+        this.descending = true;
+        return this;
+    }
+
+    public OrderQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit phải >= 0: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    Set<OrderStatus> getStatuses() {
+        return statuses;
+    }
+
+    boolean hasDateRange() {
+        return from != null || to != null;
+    }
+
+    LocalDate getFrom() {
+        return from != null ? from : LocalDate.MIN;
+    }
+
+    LocalDate getTo() {
+        return to != null ? to : LocalDate.MAX;
+    }
+
+    Sort getSort() {
+        return sort;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    <T> Predicate<T> predicate(Function<T, OrderStatus> status, Function<T, LocalDate> date, ToDoubleFunction<T> total) {
+        return order -> {
+            if (statuses != null && !statuses.contains(status.apply(order))) {
+                return false;
+            }
+            if (hasDateRange()) {
+                LocalDate orderDate = date.apply(order);
+                if (orderDate == null || orderDate.isBefore(getFrom()) || orderDate.isAfter(getTo())) {
+                    return false;
+                }
+            }
+            double amount = total.applyAsDouble(order);
+            return amount >= minTotal && amount <= maxTotal;
+        };
+    }
+
+    // null nếu không sắp xếp
+    <T> Comparator<T> comparator(Function<T, String> id, Function<T, LocalDate> date, ToDoubleFunction<T> total) {
+        if (sort == null) {
+            return null;
+        }
+        Comparator<T> order = sort == Sort.DATE
+                ? Comparator.comparing(date, Comparator.nullsFirst(Comparator.naturalOrder()))
+                : Comparator.comparingDouble(total);
+        if (descending) {
+            order = order.reversed();
+        }
+        return order.thenComparing(id);
+    }
+}
@@ -0,0 +1,115 @@
+package repository;
+
+import domain.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+// Chạy OrderQuery trên một loại order (nhập hoặc xuất) bằng các index sẵn có của OrderRepository:
+// - status: BitmapIndex, số dòng lấy từ OrderTotals (O(1))
+// - khoảng ngày: DateIndex; sắp theo ngày tăng dần có limit thì duyệt theo ngày và dừng khi đủ
+// - không có index phù hợp: quét snapshot bất biến của store ngoài khóa
+public class OrderQueryPlanner<T> {
+    private final EntityStore<T> store;
+    private final BitmapIndex<T> statusIndex; // chiều 0 là OrderStatus
+    private final DateIndex<T> dateIndex;
+    private final OrderTotals<T> totals;
+    private final Function<T, String> idFunction;
+    private final Function<T, OrderStatus> statusFunction;
+    private final Function<T, LocalDate> dateFunction;
+    private final ToDoubleFunction<T> totalFunction;
+
+    public OrderQueryPlanner(EntityStore<T> store, BitmapIndex<T> statusIndex, DateIndex<T> dateIndex,
+                             OrderTotals<T> totals, Function<T, String> idFunction,
+                             Function<T, OrderStatus> statusFunction, Function<T, LocalDate> dateFunction,
+                             ToDoubleFunction<T> totalFunction) {
+        this.store = store;
+        this.statusIndex = statusIndex;
+        this.dateIndex = dateIndex;
+        this.totals = totals;
+        this.idFunction = idFunction;
+        this.statusFunction = statusFunction;
+        this.dateFunction = dateFunction;
+        this.totalFunction = totalFunction;
+    }
+
+    public QueryPlan explain(OrderQuery query) {
+        store.lockRead();
+        try {
+            return plan(query);
+        } finally {
+            store.unlockRead();
+        }
+    }
+
+    public Stream<T> stream(OrderQuery query) {
+        Predicate<T> filter = query.predicate(statusFunction, dateFunction, totalFunction);
+        Comparator<T> order = query.comparator(idFunction, dateFunction, totalFunction);
+        int limit = query.getLimit();
+        List<T> all;
+
+        store.lockRead();
+        try {
+            QueryPlan plan = plan(query);
+            switch (plan.getAccess()) {
+                case STATUS_INDEX:
+                    BitSet bits = statusIndex.matchingAny(0, query.getStatuses());
+                    return QueryPlan.collect(statusIndex.stream(bits), filter, order, limit).stream();
+                case DATE_INDEX:
+                    Stream<Collection<T>> days = dateIndex.groupsBetween(query.getFrom(), query.getTo());
+                    if (plan.isLimitPushedDown() && order != null) {
+                        return QueryPlan.collectGroups(days, filter, order, limit).stream();
+                    }
+                    return QueryPlan.collect(days.flatMap(Collection::stream), filter, order, limit).stream();
+                default:
+                    all = store.snapshot();
+            }
+        } finally {
+            store.unlockRead();
+        }
+
+        // Quét toàn bộ ngoài khóa: snapshot không đổi dù có ghi sau đó
+        if (order == null) {
+            return all.stream().filter(filter).limit(limit);
+        }
+        return QueryPlan.collect(all.stream(), filter, order, limit).stream();
+    }
+
+    // Chọn cách lấy ứng viên phải duyệt ít dòng nhất (như ProductRepository).
+    // DateIndex bỏ qua order không có ngày nên chỉ dùng khi truy vấn có lọc theo ngày.
+    private QueryPlan plan(OrderQuery query) {
+        int limit = query.getLimit();
+        boolean unordered = query.getSort() == null;
+        long total = store.size();
+        long matches = total;
+        QueryPlan best = new QueryPlan(QueryPlan.Access.FULL_SCAN, total, limit, unordered);
+
+        if (query.getStatuses() != null) {
+            long statusRows = 0;
+            for (OrderStatus status : query.getStatuses()) {
+                statusRows += totals.count(status);
+            }
+            matches = Math.min(matches, statusRows);
+            best = QueryPlan.cheaper(best, new QueryPlan(QueryPlan.Access.STATUS_INDEX, statusRows, limit, unordered));
+        }
+
+        if (query.hasDateRange()) {
+            long dateRows = dateIndex.countBetween(query.getFrom(), query.getTo());
+            matches = Math.min(matches, dateRows);
+            boolean dateOrder = query.getSort() == OrderQuery.Sort.DATE && !query.isDescending()
+                    && limit != QueryPlan.NO_LIMIT;
+            QueryPlan byDate = dateOrder
+                    ? new QueryPlan(QueryPlan.Access.DATE_INDEX, QueryPlan.orderedCost(dateRows, matches, limit), limit, true)
+                    : new QueryPlan(QueryPlan.Access.DATE_INDEX, dateRows, limit, unordered);
+            best = QueryPlan.cheaper(best, byDate);
+        }
+        return best;
+    }
+}
@@ -6,32 +6,92 @@ import interfaces.Persistable;
 
 import java.io.*;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class OrderRepository implements Persistable {
-    private List<ImportOrder> importOrders;
-    private List<ExportOrder> exportOrders;
-    private Map<String, List<OrderItem>> orderItems; // orderId -> List<OrderItem>
+    // Load mapped: số chunk parse trước tối đa, chunk xong được gộp theo thứ tự file
+    private static final int MAX_PENDING_CHUNKS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final EntityStore<ImportOrder> importOrders; // orderId -> ImportOrder
+    private final EntityStore<ExportOrder> exportOrders; // orderId -> ExportOrder
+    private final Map<String, List<OrderItem>> orderItems; // orderId -> List<OrderItem>
+    private final LazyOrderItems lazyItems; // chế độ lazy: items chưa đọc của các order đã load
+    private final BitmapIndex<ImportOrder> importStatusIndex; // chiều 0 là OrderStatus
+    private final BitmapIndex<ExportOrder> exportStatusIndex;
+    private final DateIndex<ImportOrder> importDateIndex;
+    private final DateIndex<ExportOrder> exportDateIndex;
+    private final OrderTotals<ImportOrder> importTotals;
+    private final OrderTotals<ExportOrder> exportTotals;
+    private final OrderQueryPlanner<ImportOrder> importQueries;
+    private final OrderQueryPlanner<ExportOrder> exportQueries;
+    private volatile OrderAnalytics importAnalytics; // dựng lại khi version của store đổi
+    private volatile OrderAnalytics exportAnalytics;
+    private ForkJoinPool reportPool = ForkJoinPool.commonPool();
 
     private final String importFilePath;
     private final String exportFilePath;
     private final String itemsFilePath;
+    private final RepositoryMetrics metrics;
 
     private CustomerRepository customerRepository;
     private SupplierRepository supplierRepository;
-    private ProductRepository productRepository;
+    private ProductStore productRepository;
+
+    private boolean mappedLoad;
+    private boolean lazyLoad;
+    private boolean parallelSave;
+
+    private final ChangeLog importLog;
+    private final ChangeLog exportLog;
+    private final ChangeLog itemsLog;
+    private final Object compactLock; // compact() ghi cùng các file .tmp nên chạy lần lượt
+    private boolean journaling;
+    private int compactThreshold = ChangeLog.DEFAULT_COMPACT_THRESHOLD;
 
     public OrderRepository(String importFilePath, String exportFilePath, String itemsFilePath) {
         this.importFilePath = importFilePath;
         this.exportFilePath = exportFilePath;
         this.itemsFilePath = itemsFilePath;
-        this.importOrders = new ArrayList<>();
-        this.exportOrders = new ArrayList<>();
-        this.orderItems = new HashMap<>();
+        this.importOrders = new EntityStore<>(ImportOrder::getId);
+        this.exportOrders = new EntityStore<>(ExportOrder::getId);
+        this.orderItems = new ConcurrentHashMap<>();
+        this.lazyItems = new LazyOrderItems(itemsFilePath, this::parseOrderItem);
+        this.importStatusIndex = new BitmapIndex<>(ImportOrder::getStatus);
+        this.importOrders.addListener(importStatusIndex);
+        this.exportStatusIndex = new BitmapIndex<>(ExportOrder::getStatus);
+        this.exportOrders.addListener(exportStatusIndex);
+        this.importDateIndex = new DateIndex<>(ImportOrder::getId, ImportOrder::getOrderDate, ImportOrder::getTotalAmount);
+        this.importOrders.addListener(importDateIndex);
+        this.exportDateIndex = new DateIndex<>(ExportOrder::getId, ExportOrder::getOrderDate, ExportOrder::getTotalAmount);
+        this.exportOrders.addListener(exportDateIndex);
+        this.importTotals = new OrderTotals<>(ImportOrder::getStatus, ImportOrder::getTotalAmount);
+        this.importOrders.addListener(importTotals);
+        this.exportTotals = new OrderTotals<>(ExportOrder::getStatus, ExportOrder::getTotalAmount);
+        this.exportOrders.addListener(exportTotals);
+        this.importQueries = new OrderQueryPlanner<>(importOrders, importStatusIndex, importDateIndex, importTotals,
+                ImportOrder::getId, ImportOrder::getStatus, ImportOrder::getOrderDate, ImportOrder::getTotalAmount);
+        this.exportQueries = new OrderQueryPlanner<>(exportOrders, exportStatusIndex, exportDateIndex, exportTotals,
+                ExportOrder::getId, ExportOrder::getStatus, ExportOrder::getOrderDate, ExportOrder::getTotalAmount);
+        this.importLog = new ChangeLog(importFilePath);
+        this.exportLog = new ChangeLog(exportFilePath);
+        this.itemsLog = new ChangeLog(itemsFilePath);
+        this.compactLock = new Object();
+        this.metrics = new RepositoryMetrics("orders");
     }
 
     // Inject dependencies
@@ -43,179 +103,590 @@ public class OrderRepository implements Persistable {
         this.supplierRepository = supplierRepository;
     }
 
-    public void setProductRepository(ProductRepository productRepository) {
+    public void setProductRepository(ProductStore productRepository) {
         this.productRepository = productRepository;
     }
 
+    // Số liệu thao tác (mặc định tắt), xem RepositoryMetrics.
+    // findImport/ExportOrderById tính vào FIND_BY_ID, findAllImport/ExportOrders vào FIND_ALL
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Nhận thông báo khi đơn xuất được thêm/xóa/đổi status/load lại (vd. OrderViewCache); gọi trong khóa ghi
+    public void addExportOrderListener(EntityStore.Listener<ExportOrder> listener) {
+        exportOrders.addListener(listener);
+    }
+
+    // Đọc 3 file order bằng FileChannel.map (UTF-8) thay vì FileReader, dùng cho file lớn
+    public void setMappedLoad(boolean mappedLoad) {
+        this.mappedLoad = mappedLoad;
+    }
+
+    // Chế độ lazy (đặt trước load): load chỉ dựng index vị trí các dòng của order_items.csv,
+    // items của order được đọc khi getItems() lần đầu và giữ trong LRU tối đa maxCachedItems item.
+    // Order có thay đổi items (thêm mới, change log) giữ items trong heap như chế độ thường.
+    public void setLazyItems(boolean lazyLoad) {
+        this.lazyLoad = lazyLoad;
+    }
+
+    public void setLazyItemsCacheSize(int maxCachedItems) {
+        lazyItems.setMaxCachedItems(maxCachedItems);
+    }
+
+    // Ghi 3 file order song song trên 3 thread
+    public void setParallelSave(boolean parallelSave) {
+        this.parallelSave = parallelSave;
+    }
+
+    // Pool chạy các báo cáo group-by; null = chạy tuần tự (kết quả giống hệt)
+    public void setReportPool(ForkJoinPool reportPool) {
+        this.reportPool = reportPool;
+    }
+
+    // Chế độ journal: thêm/xóa order ghi nối vào <file>.log,
+    // save() chỉ ghi lại toàn bộ 3 file khi một trong các log vượt ngưỡng compactThreshold
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
     @Override
     public void save() throws IOException {
-        saveImportOrders();
-        saveExportOrders();
-        saveOrderItems();
+        long start = metrics.start();
+        try {
+            if (journaling
+                    && !importLog.needsCompaction(compactThreshold)
+                    && !exportLog.needsCompaction(compactThreshold)
+                    && !itemsLog.needsCompaction(compactThreshold)) {
+                return; // Các thay đổi đã nằm trong log
+            }
+            compact();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.SAVE, start);
+        }
     }
 
-    private void saveImportOrders() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(importFilePath))) {
+    // Ghi toàn bộ dữ liệu ra 3 file snapshot rồi xóa log.
+    // Chỉ khóa (import trước export) lúc lấy snapshot order, items và version của hai store; ghi 3 file
+    // ngoài khóa nên đọc/ghi không bị chặn. Store nào có ghi chen vào lúc đang ghi file thì giữ log của nó
+    // (và log items): record mang cả dòng dữ liệu nên phát lại trên snapshot mới vẫn ra đúng.
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<ImportOrder> imports;
+            List<ExportOrder> exports;
+            Map<String, List<OrderItem>> items;
+            long importVersion;
+            long exportVersion;
+            LazyOrderItems.Copy lazyCopy;
+            importOrders.lockRead();
+            exportOrders.lockRead();
+            try {
+                imports = importOrders.snapshot();
+                exports = exportOrders.snapshot();
+                items = new LinkedHashMap<>(orderItems);
+                importVersion = importOrders.version();
+                exportVersion = exportOrders.version();
+                lazyCopy = lazyItems.beginCopy();
+            } finally {
+                exportOrders.unlockRead();
+                importOrders.unlockRead();
+            }
+
+            try {
+                if (parallelSave) {
+                    saveInParallel(imports, exports, items, lazyCopy);
+                } else {
+                    saveImportOrders(imports);
+                    saveExportOrders(exports);
+                    saveOrderItems(items, lazyCopy);
+                }
+            } finally {
+                lazyItems.endCopy();
+            }
+
+            importOrders.lockWrite();
+            exportOrders.lockWrite();
+            try {
+                boolean importUnchanged = importOrders.version() == importVersion;
+                boolean exportUnchanged = exportOrders.version() == exportVersion;
+                if (importUnchanged) {
+                    importLog.reset();
+                }
+                if (exportUnchanged) {
+                    exportLog.reset();
+                }
+                if (importUnchanged && exportUnchanged) {
+                    itemsLog.reset();
+                }
+            } finally {
+                exportOrders.unlockWrite();
+                importOrders.unlockWrite();
+            }
+        }
+    }
+
+    private void saveInParallel(List<ImportOrder> imports, List<ExportOrder> exports,
+                                Map<String, List<OrderItem>> items, LazyOrderItems.Copy lazyCopy) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Void>> futures = executor.invokeAll(Arrays.asList(
+                    () -> {
+                        saveImportOrders(imports);
+                        return null;
+                    },
+                    () -> {
+                        saveExportOrders(exports);
+                        return null;
+                    },
+                    () -> {
+                        saveOrderItems(items, lazyCopy);
+                        return null;
+                    }));
+            for (Future<Void> future : futures) {
+                RepositoryBootstrap.await(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi đang ghi file order");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void saveImportOrders(List<ImportOrder> imports) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(importFilePath)) {
             // Header
             writer.write("orderId,supplierId,orderDate,totalAmount,status,warehouseLocation");
             writer.newLine();
 
             // Data
-            for (ImportOrder order : importOrders) {
-                writer.write(order.toCSV());
+            for (ImportOrder order : imports) {
+                writer.write(toCsvRow(order));
                 writer.newLine();
             }
+            writer.commit();
+            metrics.recordWrite(imports.size(), writer.bytesWritten());
         }
     }
 
-    private void saveExportOrders() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(exportFilePath))) {
+    private void saveExportOrders(List<ExportOrder> exports) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(exportFilePath)) {
             // Header
             writer.write("orderId,customerId,orderDate,totalAmount,status,deliveryAddress");
             writer.newLine();
 
             // Data
-            for (ExportOrder order : exportOrders) {
-                writer.write(order.toCSV());
+            for (ExportOrder order : exports) {
+                writer.write(toCsvRow(order));
                 writer.newLine();
             }
+            writer.commit();
+            metrics.recordWrite(exports.size(), writer.bytesWritten());
         }
     }
 
-    private void saveOrderItems() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(itemsFilePath))) {
+    private void saveOrderItems(Map<String, List<OrderItem>> items, LazyOrderItems.Copy lazyCopy) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(itemsFilePath)) {
             // Header
             writer.write("orderId,productId,quantity,unitPrice");
             writer.newLine();
 
             // Data
-            for (Map.Entry<String, List<OrderItem>> entry : orderItems.entrySet()) {
+            long rows = 0;
+            for (Map.Entry<String, List<OrderItem>> entry : items.entrySet()) {
                 String orderId = entry.getKey();
                 for (OrderItem item : entry.getValue()) {
-                    writer.write(item.toCSV(orderId));
+                    writer.write(toCsvRow(orderId, item));
                     writer.newLine();
+                    rows++;
                 }
             }
+            // Dòng của order chưa đọc được chép nguyên văn, không tạo OrderItem
+            rows += lazyItems.copyAndCommit(writer, lazyCopy);
+            metrics.recordWrite(rows, writer.bytesWritten());
         }
     }
 
     @Override
     public void load() throws IOException {
-        loadImportOrders();
-        loadExportOrders();
-        loadOrderItems();
+        load(null);
     }
 
+    // executor khác null thì 3 file nạp song song trên executor (RepositoryBootstrap).
+    // Trả về thời gian (ms) của từng file và của bước gắn items, theo thứ tự nạp.
+    Map<String, Long> load(ExecutorService executor) throws IOException {
+        long start = metrics.start();
+        try {
+            RepositoryBootstrap.LoadTask[] tasks = {this::loadImportOrders, this::loadExportOrders, this::loadOrderItems};
+            long[] millis;
+            if (executor != null) {
+                millis = RepositoryBootstrap.runParallel(executor, tasks);
+            } else {
+                millis = new long[tasks.length];
+                for (int i = 0; i < tasks.length; i++) {
+                    millis[i] = RepositoryBootstrap.timed(tasks[i]);
+                }
+            }
+
+            Map<String, Long> times = new LinkedHashMap<>();
+            times.put(importFilePath, millis[0]);
+            times.put(exportFilePath, millis[1]);
+            times.put(itemsFilePath, millis[2]);
+            times.put("attachOrderItems", RepositoryBootstrap.timed(this::attachOrderItems));
+            return times;
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    // 3 hàm load dưới đây ghi vào 3 map riêng nên load(executor) chạy song song được.
+    // Mỗi hàm đọc vào map cục bộ rồi mới thay nội dung store, reader khác không thấy dữ liệu dở dang.
     private void loadImportOrders() throws IOException {
-        importOrders.clear();
+        Map<String, ImportOrder> loaded = new LinkedHashMap<>();
+        StringPool pool = new StringPool();
 
-        File file = new File(importFilePath);
-        if (!file.exists()) {
+        readRows(importFilePath, importRows(loaded, pool), () -> {
+            Map<String, ImportOrder> part = new LinkedHashMap<>();
+            return new ChunkPart(importRows(part, new StringPool()), () -> loaded.putAll(part));
+        });
+
+        importLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+                return;
+            }
+            ImportOrder order = parseImportOrder(reader, pool);
+            if (order != null) {
+                loaded.put(order.getId(), order);
+            }
+        });
+
+        importOrders.reset(loaded.values());
+    }
+
+    private void loadExportOrders() throws IOException {
+        Map<String, ExportOrder> loaded = new LinkedHashMap<>();
+        StringPool pool = new StringPool();
+
+        readRows(exportFilePath, exportRows(loaded, pool), () -> {
+            Map<String, ExportOrder> part = new LinkedHashMap<>();
+            return new ChunkPart(exportRows(part, new StringPool()), () -> loaded.putAll(part));
+        });
+
+        exportLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+                return;
+            }
+            ExportOrder order = parseExportOrder(reader, pool);
+            if (order != null) {
+                loaded.put(order.getId(), order);
+            }
+        });
+
+        exportOrders.reset(loaded.values());
+    }
+
+    private void loadOrderItems() throws IOException {
+        if (lazyLoad) {
+            indexOrderItems();
             return;
         }
+        lazyItems.clear();
+        Map<String, List<OrderItem>> loaded = new LinkedHashMap<>();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(importFilePath))) {
-            String line = reader.readLine(); // Skip header
+        readRows(itemsFilePath, reader -> parseOrderItem(reader, loaded), () -> {
+            Map<String, List<OrderItem>> part = new LinkedHashMap<>();
+            return new ChunkPart(reader -> parseOrderItem(reader, part), () -> mergeItems(loaded, part));
+        });
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+        // Record D xóa toàn bộ items của order, A thêm một item
+        itemsLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+            } else {
+                parseOrderItem(reader, loaded);
+            }
+        });
+
+        orderItems.putAll(loaded);
+        orderItems.keySet().retainAll(loaded.keySet());
+    }
 
-                String[] parts = line.split(",", -1);
-                if (parts.length < 6) continue;
+    // Chế độ lazy: chỉ index file; order có record trong change log được đọc ngay vào heap
+    private void indexOrderItems() throws IOException {
+        long rows = lazyItems.index();
+        metrics.recordRead(rows, new File(itemsFilePath).length());
 
-                String orderId = parts[0];
-                String supplierId = parts[1];
-                LocalDate orderDate = LocalDate.parse(parts[2]);
-                double totalAmount = Double.parseDouble(parts[3]);
-                OrderStatus status = OrderStatus.valueOf(parts[4]);
-                String warehouseLocation = parts[5];
+        Map<String, List<OrderItem>> loaded = new LinkedHashMap<>();
+        try {
+            itemsLog.replay((op, reader) -> {
+                String orderId = reader.getString(0);
+                if (op == ChangeLog.DELETE) {
+                    lazyItems.forget(orderId);
+                    loaded.remove(orderId);
+                    return;
+                }
+                if (!loaded.containsKey(orderId) && lazyItems.contains(orderId)) {
+                    loaded.put(orderId, lazyItems.take(orderId));
+                }
+                parseOrderItem(reader, loaded);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-                Supplier supplier = supplierRepository != null ?
-                        supplierRepository.findById(supplierId) : null;
+        orderItems.putAll(loaded);
+        orderItems.keySet().retainAll(loaded.keySet());
+    }
 
-                ImportOrder order = new ImportOrder(orderId, orderDate, totalAmount,
-                        status, supplier, warehouseLocation);
-                importOrders.add(order);
-            }
+    private ImportOrder parseImportOrder(CsvReader reader, StringPool pool) {
+        if (reader.size() < 6) return null;
+
+        String orderId = reader.getString(0);
+        String supplierId = reader.getString(1);
+        LocalDate orderDate = reader.getDate(2);
+        double totalAmount = Money.toDouble(reader.getMoneyRounded(3));
+        OrderStatus status = OrderStatus.valueOf(reader.getString(4, pool));
+        String warehouseLocation = reader.getString(5, pool);
+
+        Supplier supplier = supplierRepository != null ?
+                supplierRepository.findById(supplierId) : null;
+
+        if (lazyLoad) {
+            return new LazyImportOrder(orderId, orderDate, totalAmount,
+                    status, supplier, warehouseLocation, lazyItems);
         }
+        return new ImportOrder(orderId, orderDate, totalAmount,
+                status, supplier, warehouseLocation);
     }
 
-    private void loadExportOrders() throws IOException {
-        exportOrders.clear();
+    private ExportOrder parseExportOrder(CsvReader reader, StringPool pool) {
+        if (reader.size() < 6) return null;
 
-        File file = new File(exportFilePath);
-        if (!file.exists()) {
-            return;
+        String orderId = reader.getString(0);
+        String customerId = reader.getString(1);
+        LocalDate orderDate = reader.getDate(2);
+        double totalAmount = Money.toDouble(reader.getMoneyRounded(3));
+        OrderStatus status = OrderStatus.valueOf(reader.getString(4, pool));
+        String deliveryAddress = reader.getString(5, pool);
+
+        Customer customer = customerRepository != null ?
+                customerRepository.findById(customerId) : null;
+
+        if (lazyLoad) {
+            return new LazyExportOrder(orderId, orderDate, totalAmount,
+                    status, customer, deliveryAddress, lazyItems);
         }
+        return new ExportOrder(orderId, orderDate, totalAmount,
+                status, customer, deliveryAddress);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(exportFilePath))) {
-            String line = reader.readLine(); // Skip header
+    // Ngược với các hàm parse ở trên; field chuỗi được quote khi cần
+    static String toCsvRow(ImportOrder order) {
+        return Csv.row(order.getId(), order.getSupplier() != null ? order.getSupplier().getId() : null,
+                order.getOrderDate(), money(order.getTotalAmount()), order.getStatus(), order.getWarehouseLocation());
+    }
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+    static String toCsvRow(ExportOrder order) {
+        return Csv.row(order.getId(), order.getCustomer() != null ? order.getCustomer().getId() : null,
+                order.getOrderDate(), money(order.getTotalAmount()), order.getStatus(), order.getDeliveryAddress());
+    }
 
-                String[] parts = line.split(",", -1);
-                if (parts.length < 6) continue;
+    static String toCsvRow(String orderId, OrderItem item) {
+        return Csv.row(orderId, item.getProduct().getId(), item.getQuantity(), money(item.getUnitPrice()));
+    }
 
-                String orderId = parts[0];
-                String customerId = parts[1];
-                LocalDate orderDate = LocalDate.parse(parts[2]);
-                double totalAmount = Double.parseDouble(parts[3]);
-                OrderStatus status = OrderStatus.valueOf(parts[4]);
-                String deliveryAddress = parts[5];
+    // Cột tiền ghi đúng dạng Money.parse nhận. Số lẻ hơn 1/SCALE đã bị checkAmounts chặn khi thêm/đổi order;
+    // file CSV cũ có số lẻ hơn được làm tròn khi load (getMoneyRounded) và save sau đó ghi giá trị đã làm tròn.
+    private static String money(double amount) {
+        return Money.format(Money.toMinorExact(amount));
+    }
 
-                Customer customer = customerRepository != null ?
-                        customerRepository.findById(customerId) : null;
+    // Từ chối (ArithmeticException) order có số tiền lẻ hơn 1/SCALE trước khi vào store và các index,
+    // để một order sai không làm mọi lần save() sau đó thất bại
+    private static void checkAmounts(double totalAmount, List<OrderItem> items) {
+        Money.toMinorExact(totalAmount);
+        for (OrderItem item : items) {
+            Money.toMinorExact(item.getUnitPrice());
+        }
+    }
 
-                ExportOrder order = new ExportOrder(orderId, orderDate, totalAmount,
-                        status, customer, deliveryAddress);
-                exportOrders.add(order);
-            }
+    private void parseOrderItem(CsvReader reader, Map<String, List<OrderItem>> target) {
+        if (reader.size() < 4) return;
+
+        String orderId = reader.getString(0);
+        String productId = reader.getString(1);
+        int quantity = reader.getInt(2);
+        double unitPrice = Money.toDouble(reader.getMoneyRounded(3));
+
+        Product product = productRepository != null ?
+                productRepository.findById(productId) : null;
+
+        if (product != null) {
+            OrderItem item = new OrderItem(product, quantity, unitPrice);
+            target.computeIfAbsent(orderId, k -> new ArrayList<>()).add(item);
         }
     }
 
-    private void loadOrderItems() throws IOException {
-        orderItems.clear();
+    private RowHandler importRows(Map<String, ImportOrder> target, StringPool pool) {
+        return reader -> {
+            ImportOrder order = parseImportOrder(reader, pool);
+            if (order != null) {
+                target.put(order.getId(), order);
+            }
+        };
+    }
 
-        File file = new File(itemsFilePath);
+    private RowHandler exportRows(Map<String, ExportOrder> target, StringPool pool) {
+        return reader -> {
+            ExportOrder order = parseExportOrder(reader, pool);
+            if (order != null) {
+                target.put(order.getId(), order);
+            }
+        };
+    }
+
+    // Items của một order có thể nằm ở hai chunk liền nhau: nối tiếp vào list đã có
+    private static void mergeItems(Map<String, List<OrderItem>> target, Map<String, List<OrderItem>> part) {
+        for (Map.Entry<String, List<OrderItem>> entry : part.entrySet()) {
+            List<OrderItem> items = target.putIfAbsent(entry.getKey(), entry.getValue());
+            if (items != null) {
+                items.addAll(entry.getValue());
+            }
+        }
+    }
+
+    // Đọc các dòng dữ liệu (bỏ header) bằng CsvReader thường vào handler, hoặc memory-mapped tùy chế độ:
+    // mỗi chunk parse song song trên ForkJoinPool.commonPool() vào một ChunkPart riêng, rồi gộp theo thứ tự file.
+    // Không dùng executor của RepositoryBootstrap: 3 file order đang chạy trên chính các luồng đó và chờ chunk.
+    private void readRows(String filePath, RowHandler handler,
+                          java.util.function.Supplier<ChunkPart> chunkParts) throws IOException {
+        File file = new File(filePath);
         if (!file.exists()) {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(itemsFilePath))) {
-            String line = reader.readLine(); // Skip header
+        long rows = 0;
+        if (!mappedLoad) {
+            try (CsvReader reader = CsvReader.open(filePath)) {
+                reader.next(); // Skip header
+                while (reader.next()) {
+                    handler.handle(reader);
+                    rows++;
+                }
+            }
+            metrics.recordRead(rows, file.length());
+            return;
+        }
+
+        ArrayDeque<ChunkPart> parts = new ArrayDeque<>();
+        ArrayDeque<Future<Long>> parsing = new ArrayDeque<>();
+        try (MappedCsvFile mapped = MappedCsvFile.open(filePath)) {
+            // Tìm ranh giới chunk kế tiếp trong khi các chunk trước đang parse
+            for (MappedCsvFile.Chunk chunk; (chunk = mapped.nextChunk()) != null; ) {
+                ChunkPart part = chunkParts.get();
+                MappedCsvFile.Chunk next = chunk;
+                parsing.add(ForkJoinPool.commonPool().submit(() -> parseChunk(next, part.rows)));
+                parts.add(part);
+                if (parsing.size() > MAX_PENDING_CHUNKS) {
+                    rows += RepositoryBootstrap.await(parsing.remove());
+                    parts.remove().merge.run();
+                }
+            }
+            while (!parsing.isEmpty()) {
+                rows += RepositoryBootstrap.await(parsing.remove());
+                parts.remove().merge.run();
+            }
+        } finally {
+            for (Future<Long> future : parsing) {
+                future.cancel(false);
+            }
+        }
+        metrics.recordRead(rows, file.length());
+    }
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+    private static long parseChunk(MappedCsvFile.Chunk chunk, RowHandler handler) throws IOException {
+        long rows = 0;
+        try (CsvReader reader = chunk.open()) {
+            if (chunk.isFirst()) {
+                reader.next(); // Skip header
+            }
+            while (reader.next()) {
+                handler.handle(reader);
+                rows++;
+            }
+        }
+        return rows;
+    }
 
-                String[] parts = line.split(",", -1);
-                if (parts.length < 4) continue;
+    private interface RowHandler {
+        void handle(CsvReader reader);
+    }
 
-                String orderId = parts[0];
-                String productId = parts[1];
-                int quantity = Integer.parseInt(parts[2]);
-                double unitPrice = Double.parseDouble(parts[3]);
+    // Kết quả riêng của một chunk khi load mapped: rows chạy trên luồng parse,
+    // merge gộp vào kết quả chung trên luồng gọi readRows, theo thứ tự chunk
+    private static final class ChunkPart {
+        final RowHandler rows;
+        final Runnable merge;
 
-                Product product = productRepository != null ?
-                        productRepository.findById(productId) : null;
+        ChunkPart(RowHandler rows, Runnable merge) {
+            this.rows = rows;
+            this.merge = merge;
+        }
+    }
 
-                if (product != null) {
-                    OrderItem item = new OrderItem(product, quantity, unitPrice);
+    // Gán items vào order tương ứng, mỗi order một lần sau khi đã đọc hết file
+    private void attachOrderItems() {
+        attachItems();
+        importOrders.touch();
+        exportOrders.touch();
+    }
 
-                    orderItems.computeIfAbsent(orderId, k -> new ArrayList<>()).add(item);
+    private void attachItems() {
+        for (Map.Entry<String, List<OrderItem>> entry : orderItems.entrySet()) {
+            ImportOrder importOrder = importOrders.get(entry.getKey());
+            if (importOrder != null) {
+                importOrder.setItems(entry.getValue());
+            }
 
-                    // Gán items vào order tương ứng
-                    ImportOrder importOrder = findImportOrderById(orderId);
-                    if (importOrder != null) {
-                        importOrder.setItems(orderItems.get(orderId));
-                    }
+            ExportOrder exportOrder = exportOrders.get(entry.getKey());
+            if (exportOrder != null) {
+                exportOrder.setItems(entry.getValue());
+            }
+        }
+    }
 
-                    ExportOrder exportOrder = findExportOrderById(orderId);
-                    if (exportOrder != null) {
-                        exportOrder.setItems(orderItems.get(orderId));
-                    }
+    // Thay toàn bộ orders bằng dữ liệu đã dựng sẵn (BinarySnapshot), items đã gắn trong từng order:
+    // mỗi store thay một lần bằng reset(), không ghi change log
+    void replaceAll(Collection<ImportOrder> imports, Collection<ExportOrder> exports) {
+        long start = metrics.start();
+        try {
+            Map<String, List<OrderItem>> items = new LinkedHashMap<>();
+            for (ImportOrder order : imports) {
+                checkAmounts(order.getTotalAmount(), order.getItems());
+                if (!order.getItems().isEmpty()) {
+                    items.put(order.getId(), order.getItems());
                 }
             }
+            for (ExportOrder order : exports) {
+                checkAmounts(order.getTotalAmount(), order.getItems());
+                if (!order.getItems().isEmpty()) {
+                    items.put(order.getId(), order.getItems());
+                }
+            }
+
+            lazyItems.clear();
+            importOrders.reset(imports);
+            exportOrders.reset(exports);
+            orderItems.putAll(items);
+            orderItems.keySet().retainAll(items.keySet());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
         }
     }
 
@@ -224,80 +695,371 @@ public class OrderRepository implements Persistable {
         return importFilePath + "," + exportFilePath + "," + itemsFilePath;
     }
 
+    String getImportFilePath() {
+        return importFilePath;
+    }
+
+    String getExportFilePath() {
+        return exportFilePath;
+    }
+
+    String getItemsFilePath() {
+        return itemsFilePath;
+    }
+
     @Override
     public void clear() {
-        importOrders.clear();
-        exportOrders.clear();
-        orderItems.clear();
+        long start = metrics.start();
+        try {
+            importOrders.clear();
+            exportOrders.clear();
+            orderItems.clear();
+            lazyItems.clear();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.CLEAR, start);
+        }
     }
 
     // Import Order operations
     public void addImportOrder(ImportOrder order) {
-        importOrders.add(order);
-        if (!order.getItems().isEmpty()) {
-            orderItems.put(order.getId(), order.getItems());
+        importOrders.lockWrite();
+        try {
+            if (order instanceof LazyImportOrder) {
+                ((LazyImportOrder) order).detach(); // thêm lại order đã load: items chuyển vào heap
+            }
+            checkAmounts(order.getTotalAmount(), order.getItems());
+            if (journaling) {
+                log(importLog, ChangeLog.record(ChangeLog.ADD, toCsvRow(order)), itemRecords(order.getId(), order.getItems()));
+            }
+            importOrders.put(order);
+            lazyItems.forget(order.getId()); // items của order này từ nay nằm trong orderItems
+            if (!order.getItems().isEmpty()) {
+                orderItems.put(order.getId(), order.getItems());
+            }
+        } finally {
+            importOrders.unlockWrite();
         }
     }
 
     public ImportOrder findImportOrderById(String id) {
-        return importOrders.stream()
-                .filter(o -> o.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = metrics.start();
+        try {
+            return importOrders.get(id);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
+    }
+
+    public List<ImportOrder> findImportOrdersByStatus(OrderStatus status) {
+        importOrders.lockRead();
+        try {
+            return importStatusIndex.find(0, status);
+        } finally {
+            importOrders.unlockRead();
+        }
+    }
+
+    // Đổi status qua repository để index theo status được cập nhật (không gọi order.setStatus trực tiếp)
+    public void updateImportOrderStatus(String id, OrderStatus status) throws OrderNotFoundException {
+        importOrders.lockWrite();
+        try {
+            ImportOrder order = importOrders.get(id);
+            if (order == null) {
+                throw new OrderNotFoundException(id, "IMPORT");
+            }
+            Money.toMinorExact(order.getTotalAmount()); // tổng tiền có thể đã bị sửa trực tiếp trên order
+            OrderStatus previous = order.getStatus();
+            order.setStatus(status);
+            if (journaling) {
+                try {
+                    importLog.append(ChangeLog.UPDATE, toCsvRow(order));
+                } catch (UncheckedIOException e) {
+                    order.setStatus(previous);
+                    throw e;
+                }
+            }
+            importOrders.put(order);
+        } finally {
+            importOrders.unlockWrite();
+        }
     }
 
     public List<ImportOrder> findAllImportOrders() {
-        return new ArrayList<>(importOrders);
+        long start = metrics.start();
+        try {
+            return new ArrayList<>(importOrders.snapshot());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
     }
 
     public void deleteImportOrder(String id) throws OrderNotFoundException {
-        ImportOrder order = findImportOrderById(id);
-        if (order == null) {
-            throw new OrderNotFoundException(id, "IMPORT");
+        importOrders.lockWrite();
+        try {
+            if (importOrders.get(id) == null) {
+                throw new OrderNotFoundException(id, "IMPORT");
+            }
+            if (journaling) {
+                String delete = ChangeLog.record(ChangeLog.DELETE, Csv.quote(id));
+                log(importLog, delete, Collections.singletonList(delete));
+            }
+            importOrders.remove(id);
+            orderItems.remove(id);
+            lazyItems.forget(id);
+        } finally {
+            importOrders.unlockWrite();
         }
-        importOrders.remove(order);
-        orderItems.remove(id);
     }
 
     // Export Order operations
     public void addExportOrder(ExportOrder order) {
-        exportOrders.add(order);
-        if (!order.getItems().isEmpty()) {
-            orderItems.put(order.getId(), order.getItems());
+        exportOrders.lockWrite();
+        try {
+            if (order instanceof LazyExportOrder) {
+                ((LazyExportOrder) order).detach(); // thêm lại order đã load: items chuyển vào heap
+            }
+            checkAmounts(order.getTotalAmount(), order.getItems());
+            if (journaling) {
+                log(exportLog, ChangeLog.record(ChangeLog.ADD, toCsvRow(order)), itemRecords(order.getId(), order.getItems()));
+            }
+            exportOrders.put(order);
+            lazyItems.forget(order.getId()); // items của order này từ nay nằm trong orderItems
+            if (!order.getItems().isEmpty()) {
+                orderItems.put(order.getId(), order.getItems());
+            }
+        } finally {
+            exportOrders.unlockWrite();
         }
     }
 
     public ExportOrder findExportOrderById(String id) {
-        return exportOrders.stream()
-                .filter(o -> o.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = metrics.start();
+        try {
+            return exportOrders.get(id);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
+    }
+
+    public List<ExportOrder> findExportOrdersByStatus(OrderStatus status) {
+        exportOrders.lockRead();
+        try {
+            return exportStatusIndex.find(0, status);
+        } finally {
+            exportOrders.unlockRead();
+        }
+    }
+
+    public void updateExportOrderStatus(String id, OrderStatus status) throws OrderNotFoundException {
+        exportOrders.lockWrite();
+        try {
+            ExportOrder order = exportOrders.get(id);
+            if (order == null) {
+                throw new OrderNotFoundException(id, "EXPORT");
+            }
+            Money.toMinorExact(order.getTotalAmount()); // tổng tiền có thể đã bị sửa trực tiếp trên order
+            OrderStatus previous = order.getStatus();
+            order.setStatus(status);
+            if (journaling) {
+                try {
+                    exportLog.append(ChangeLog.UPDATE, toCsvRow(order));
+                } catch (UncheckedIOException e) {
+                    order.setStatus(previous);
+                    throw e;
+                }
+            }
+            exportOrders.put(order);
+        } finally {
+            exportOrders.unlockWrite();
+        }
     }
 
     public List<ExportOrder> findAllExportOrders() {
-        return new ArrayList<>(exportOrders);
+        long start = metrics.start();
+        try {
+            return new ArrayList<>(exportOrders.snapshot());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
     }
 
     public void deleteExportOrder(String id) throws OrderNotFoundException {
-        ExportOrder order = findExportOrderById(id);
-        if (order == null) {
-            throw new OrderNotFoundException(id, "EXPORT");
+        exportOrders.lockWrite();
+        try {
+            if (exportOrders.get(id) == null) {
+                throw new OrderNotFoundException(id, "EXPORT");
+            }
+            if (journaling) {
+                String delete = ChangeLog.record(ChangeLog.DELETE, Csv.quote(id));
+                log(exportLog, delete, Collections.singletonList(delete));
+            }
+            exportOrders.remove(id);
+            orderItems.remove(id);
+            lazyItems.forget(id);
+        } finally {
+            exportOrders.unlockWrite();
+        }
+    }
+
+    // Ghi record của order rồi các record items (file log khác) trước khi đổi dữ liệu trong bộ nhớ;
+    // items ghi lỗi thì cắt bỏ record order vừa ghi để hai log không lệch nhau
+    private void log(ChangeLog orderLog, String orderRecord, List<String> itemRecords) {
+        long mark = orderLog.mark();
+        orderLog.appendAll(Collections.singletonList(orderRecord));
+        if (itemRecords.isEmpty()) {
+            return;
+        }
+        try {
+            itemsLog.appendAll(itemRecords);
+        } catch (RuntimeException e) {
+            orderLog.rollback(mark);
+            throw e;
+        }
+    }
+
+    // Items mới thay thế toàn bộ items cũ của order, giống orderItems.put ở trên
+    private static List<String> itemRecords(String orderId, List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> records = new ArrayList<>(items.size() + 1);
+        records.add(ChangeLog.record(ChangeLog.DELETE, Csv.quote(orderId)));
+        for (OrderItem item : items) {
+            records.add(ChangeLog.record(ChangeLog.ADD, toCsvRow(orderId, item)));
         }
-        exportOrders.remove(order);
-        orderItems.remove(id);
+        return records;
     }
 
     // Statistics
+    // Kết quả sắp theo ngày (cùng ngày thì theo thứ tự thêm vào)
     public List<ImportOrder> getImportOrdersByDateRange(LocalDate from, LocalDate to) {
-        return importOrders.stream()
-                .filter(o -> !o.getOrderDate().isBefore(from) && !o.getOrderDate().isAfter(to))
-                .collect(Collectors.toList());
+        importOrders.lockRead();
+        try {
+            return importDateIndex.between(from, to);
+        } finally {
+            importOrders.unlockRead();
+        }
     }
 
     public List<ExportOrder> getExportOrdersByDateRange(LocalDate from, LocalDate to) {
-        return exportOrders.stream()
-                .filter(o -> !o.getOrderDate().isBefore(from) && !o.getOrderDate().isAfter(to))
-                .collect(Collectors.toList());
+        exportOrders.lockRead();
+        try {
+            return exportDateIndex.between(from, to);
+        } finally {
+            exportOrders.unlockRead();
+        }
+    }
+
+    // Số order / tổng tiền (mọi status) theo từng ngày có order, dùng cho biểu đồ
+    public SortedMap<LocalDate, Integer> countImportOrdersPerDay(LocalDate from, LocalDate to) {
+        importOrders.lockRead();
+        try {
+            return importDateIndex.countsPerDay(from, to);
+        } finally {
+            importOrders.unlockRead();
+        }
+    }
+
+    public SortedMap<LocalDate, Double> getImportAmountPerDay(LocalDate from, LocalDate to) {
+        importOrders.lockRead();
+        try {
+            return importDateIndex.amountsPerDay(from, to);
+        } finally {
+            importOrders.unlockRead();
+        }
+    }
+
+    public SortedMap<LocalDate, Integer> countExportOrdersPerDay(LocalDate from, LocalDate to) {
+        exportOrders.lockRead();
+        try {
+            return exportDateIndex.countsPerDay(from, to);
+        } finally {
+            exportOrders.unlockRead();
+        }
+    }
+
+    public SortedMap<LocalDate, Double> getExportAmountPerDay(LocalDate from, LocalDate to) {
+        exportOrders.lockRead();
+        try {
+            return exportDateIndex.amountsPerDay(from, to);
+        } finally {
+            exportOrders.unlockRead();
+        }
+    }
+
+    // Bảng cột cho báo cáo ad-hoc (xem OrderAnalytics), cache đến lần ghi order hoặc sản phẩm tiếp theo
+    public OrderAnalytics getImportAnalytics() {
+        importOrders.lockRead();
+        try {
+            OrderAnalytics current = importAnalytics;
+            long productVersion = productVersion(); // đọc trước khi dựng: sản phẩm đổi trong lúc dựng thì lần sau dựng lại
+            if (current == null || current.version != importOrders.version()
+                    || current.productVersion != productVersion) {
+                current = OrderAnalytics.ofImports(importOrders.snapshot(), this::currentProduct);
+                current.version = importOrders.version();
+                current.productVersion = productVersion;
+                importAnalytics = current;
+            }
+            return current;
+        } finally {
+            importOrders.unlockRead();
+        }
+    }
+
+    public OrderAnalytics getExportAnalytics() {
+        exportOrders.lockRead();
+        try {
+            OrderAnalytics current = exportAnalytics;
+            long productVersion = productVersion();
+            if (current == null || current.version != exportOrders.version()
+                    || current.productVersion != productVersion) {
+                current = OrderAnalytics.ofExports(exportOrders.snapshot(), this::currentProduct);
+                current.version = exportOrders.version();
+                current.productVersion = productVersion;
+                exportAnalytics = current;
+            }
+            return current;
+        } finally {
+            exportOrders.unlockRead();
+        }
+    }
+
+    private long productVersion() {
+        return productRepository != null ? productRepository.version() : 0;
+    }
+
+    private Product currentProduct(String id) {
+        return productRepository != null ? productRepository.findById(id) : null;
+    }
+
+    // Reports: chỉ tính order COMPLETED, khóa là id (customer/product/supplier) hoặc tên kho,
+    // theo thứ tự gặp lần đầu. Cộng trên long đơn vị Money nên tuần tự hay song song đều cho cùng kết quả.
+    public Map<String, Double> getRevenueByCustomer() {
+        return toAmounts(getExportAnalytics().groupSum(OrderAnalytics.Dimension.PARTNER,
+                OrderAnalytics.Measure.ORDER_AMOUNT, OrderStatus.COMPLETED, null, null, reportPool));
+    }
+
+    public Map<String, Long> getQuantitySoldByProduct() {
+        return getExportAnalytics().groupSum(OrderAnalytics.Dimension.PRODUCT,
+                OrderAnalytics.Measure.QUANTITY, OrderStatus.COMPLETED, null, null, reportPool);
+    }
+
+    public Map<String, Double> getImportSpendBySupplier() {
+        return toAmounts(getImportAnalytics().groupSum(OrderAnalytics.Dimension.PARTNER,
+                OrderAnalytics.Measure.ORDER_AMOUNT, OrderStatus.COMPLETED, null, null, reportPool));
+    }
+
+    public Map<String, Double> getImportSpendByWarehouse() {
+        return toAmounts(getImportAnalytics().groupSum(OrderAnalytics.Dimension.LOCATION,
+                OrderAnalytics.Measure.ORDER_AMOUNT, OrderStatus.COMPLETED, null, null, reportPool));
+    }
+
+    private static Map<String, Double> toAmounts(Map<String, Long> minor) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : minor.entrySet()) {
+            result.put(entry.getKey(), Money.toDouble(entry.getValue()));
+        }
+        return result;
     }
 
     public int countImportOrders() {
@@ -308,17 +1070,99 @@ public class OrderRepository implements Persistable {
         return exportOrders.size();
     }
 
+    // Tổng tiền các order COMPLETED, lấy từ bộ đếm cập nhật dần (O(1))
     public double getTotalImportAmount() {
-        return importOrders.stream()
-                .filter(o -> o.getStatus() == OrderStatus.COMPLETED)
-                .mapToDouble(ImportOrder::getTotalAmount)
-                .sum();
+        return importTotals.amount(OrderStatus.COMPLETED);
     }
 
     public double getTotalExportAmount() {
-        return exportOrders.stream()
-                .filter(o -> o.getStatus() == OrderStatus.COMPLETED)
-                .mapToDouble(ExportOrder::getTotalAmount)
-                .sum();
+        return exportTotals.amount(OrderStatus.COMPLETED);
+    }
+
+    // Như trên nhưng theo đơn vị 1/Money.SCALE, chính xác tuyệt đối
+    public long getTotalImportAmountMinor() {
+        return importTotals.amountMinor(OrderStatus.COMPLETED);
+    }
+
+    public long getTotalExportAmountMinor() {
+        return exportTotals.amountMinor(OrderStatus.COMPLETED);
+    }
+
+    public double getImportAmountByStatus(OrderStatus status) {
+        return importTotals.amount(status);
+    }
+
+    public double getExportAmountByStatus(OrderStatus status) {
+        return exportTotals.amount(status);
+    }
+
+    public long countImportOrdersByStatus(OrderStatus status) {
+        return importTotals.count(status);
+    }
+
+    public long countExportOrdersByStatus(OrderStatus status) {
+        return exportTotals.count(status);
+    }
+
+    // Số order và tổng tiền theo mọi status tại cùng một thời điểm (các getter trên đọc từng giá trị riêng)
+    public OrderTotals.Snapshot getImportTotals() {
+        return importTotals.snapshot();
+    }
+
+    public OrderTotals.Snapshot getExportTotals() {
+        return exportTotals.snapshot();
+    }
+
+    // Truy vấn nhiều điều kiện (xem OrderQuery): đã lọc, sắp xếp và cắt theo limit
+    public List<ImportOrder> queryImportOrders(OrderQuery query) {
+        long start = metrics.start();
+        try {
+            return importQueries.stream(query).collect(Collectors.toList());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    public List<ExportOrder> queryExportOrders(OrderQuery query) {
+        long start = metrics.start();
+        try {
+            return exportQueries.stream(query).collect(Collectors.toList());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    // Như query...() nhưng trả về Stream; không có index phù hợp và không sắp xếp thì lọc dần
+    // trên snapshot của store, không copy danh sách. Metric QUERY được ghi khi stream được close.
+    public Stream<ImportOrder> streamImportOrders(OrderQuery query) {
+        long start = metrics.start();
+        Stream<ImportOrder> result;
+        try {
+            result = importQueries.stream(query);
+        } catch (RuntimeException e) {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+            throw e;
+        }
+        return metrics.recordOnClose(RepositoryMetrics.Operation.QUERY, start, result);
+    }
+
+    public Stream<ExportOrder> streamExportOrders(OrderQuery query) {
+        long start = metrics.start();
+        Stream<ExportOrder> result;
+        try {
+            result = exportQueries.stream(query);
+        } catch (RuntimeException e) {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+            throw e;
+        }
+        return metrics.recordOnClose(RepositoryMetrics.Operation.QUERY, start, result);
+    }
+
+    public QueryPlan explainImportOrders(OrderQuery query) {
+        return importQueries.explain(query);
+    }
+
+    public QueryPlan explainExportOrders(OrderQuery query) {
+        return exportQueries.explain(query);
     }
 }
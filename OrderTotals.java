@@ -0,0 +1,119 @@
+package repository;
+
+import domain.OrderStatus;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+// Số order và tổng tiền theo từng OrderStatus, cập nhật dần khi thêm/xóa/đổi status
+// nên getTotal...Amount() là O(1). Tiền cộng theo đơn vị Money (long) nên luôn khớp với tính lại từ đầu.
+// Ghi chạy trong khóa ghi của store, trên mảng riêng; xong mỗi lần ghi (committed) mới công bố
+// một Snapshot bất biến qua một biến volatile. Đọc không cần khóa và không bao giờ thấy trạng thái dở
+// (order đã trừ khỏi status cũ mà chưa cộng vào status mới, count lệch amount, reset mới xóa một nửa).
+public class OrderTotals<T> implements EntityStore.Listener<T> {
+    private final Function<T, OrderStatus> statusFunction;
+    private final ToDoubleFunction<T> amountFunction;
+    private final long[] counts;  // chỉ truy cập trong khóa ghi
+    private final long[] amounts; // đơn vị 1/Money.SCALE
+    private final Map<T, Counted> counted; // status/tiền lúc được cộng, để trừ đúng khi đổi status
+    private volatile Snapshot published;
+
+    public OrderTotals(Function<T, OrderStatus> statusFunction, ToDoubleFunction<T> amountFunction) {
+        this.statusFunction = statusFunction;
+        this.amountFunction = amountFunction;
+        this.counts = new long[OrderStatus.values().length];
+        this.amounts = new long[OrderStatus.values().length];
+        this.counted = new IdentityHashMap<>();
+        this.published = new Snapshot(counts.clone(), amounts.clone());
+    }
+
+    // Số order và tổng tiền mọi status tại cùng một thời điểm
+    public Snapshot snapshot() {
+        return published;
+    }
+
+    public long count(OrderStatus status) {
+        return published.count(status);
+    }
+
+    public long amountMinor(OrderStatus status) {
+        return published.amountMinor(status);
+    }
+
+    public double amount(OrderStatus status) {
+        return published.amount(status);
+    }
+
+    @Override
+    public void added(T order) {
+        OrderStatus status = statusFunction.apply(order);
+        long amount = Money.toMinor(amountFunction.applyAsDouble(order));
+        counted.put(order, new Counted(status, amount));
+        counts[status.ordinal()]++;
+        amounts[status.ordinal()] = Money.add(amounts[status.ordinal()], amount);
+    }
+
+    @Override
+    public void removed(T order) {
+        Counted previous = counted.remove(order);
+        if (previous == null) {
+            return;
+        }
+        counts[previous.status.ordinal()]--;
+        amounts[previous.status.ordinal()] = Money.subtract(amounts[previous.status.ordinal()], previous.amount);
+    }
+
+    @Override
+    public void replaced(T previous, T current) {
+        removed(previous);
+        added(current);
+    }
+
+    @Override
+    public void cleared() {
+        counted.clear();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+            amounts[i] = 0;
+        }
+    }
+
+    @Override
+    public void committed() {
+        published = new Snapshot(counts.clone(), amounts.clone());
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long[] amounts;
+
+        Snapshot(long[] counts, long[] amounts) {
+            this.counts = counts;
+            this.amounts = amounts;
+        }
+
+        public long count(OrderStatus status) {
+            return counts[status.ordinal()];
+        }
+
+        public long amountMinor(OrderStatus status) {
+            return amounts[status.ordinal()];
+        }
+
+        public double amount(OrderStatus status) {
+            return Money.toDouble(amountMinor(status));
+        }
+    }
+
+    private static class Counted {
+        private final OrderStatus status;
+        private final long amount;
+
+        Counted(OrderStatus status, long amount) {
+            this.status = status;
+            this.amount = amount;
+        }
+    }
+}
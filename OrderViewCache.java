@@ -0,0 +1,476 @@
+package repository;
+
+import domain.Customer;
+import domain.ExportOrder;
+import domain.OrderItem;
+import domain.Product;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Cache read-through cho chi tiết đơn xuất (ExportOrderView) theo orderId.
+// - Giới hạn theo trọng số: mỗi view nặng 1 + số dòng item
+// - Loại bỏ kiểu segmented LRU: view mới vào đoạn probation, được đọc lại thì lên protected
+//   (80% sức chứa); view chỉ đọc một lần bị đẩy ra trước view hay dùng
+// - Chia SHARDS phần theo hash của orderId, mỗi phần một khóa riêng
+// - Tự bỏ view khi đơn xuất được thêm/xóa/đổi status, khi customer hoặc product của view thay đổi,
+//   và bỏ hết khi load lại
+public class OrderViewCache {
+    private static final int SHARDS = 16;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final OrderRepository orderRepository;
+    private final CustomerRepository customerRepository;
+    private final ProductStore productRepository;
+    private final Shard[] shards;
+
+    // productId/customerId -> các orderId đang có view dùng product/customer đó, kèm version riêng.
+    // Thêm/bớt orderId luôn làm trong khóa shard của orderId đó.
+    private final Map<String, Dependents> productDependents;
+    private final Map<String, Dependents> customerDependents;
+    // orderId đang được dựng view -> version riêng (không có orderIds)
+    private final Map<String, Dependents> orderVersions;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LongAdder invalidations;
+
+    public OrderViewCache(OrderRepository orderRepository, CustomerRepository customerRepository,
+                          ProductStore productRepository, long maximumWeight) {
+        this.orderRepository = orderRepository;
+        this.customerRepository = customerRepository;
+        this.productRepository = productRepository;
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard(Math.max(1, maximumWeight / SHARDS));
+        }
+        this.productDependents = new ConcurrentHashMap<>();
+        this.customerDependents = new ConcurrentHashMap<>();
+        this.orderVersions = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+
+        orderRepository.addExportOrderListener(new EntityStore.Listener<ExportOrder>() {
+            @Override
+            public void added(ExportOrder order) {
+                invalidate(order.getId());
+            }
+
+            @Override
+            public void removed(ExportOrder order) {
+                invalidate(order.getId());
+            }
+
+            @Override
+            public void replaced(ExportOrder previous, ExportOrder current) {
+                invalidate(current.getId());
+            }
+
+            @Override
+            public void cleared() {
+                invalidateAll();
+            }
+        });
+        productRepository.addChangeListener(new DependentListener<>(productDependents, Product::getId));
+        customerRepository.addChangeListener(new DependentListener<>(customerDependents, Customer::getId));
+    }
+
+    // null nếu không có đơn xuất với id này (không cache kết quả null)
+    public ExportOrderView get(String orderId) {
+        Shard shard = shardFor(orderId);
+        ExportOrderView view = shard.get(orderId);
+        if (view != null) {
+            hits.increment();
+            return view;
+        }
+        misses.increment();
+
+        List<Pin> pins = new ArrayList<>();
+        try {
+            view = build(orderId, pins);
+            if (view != null) {
+                shard.put(orderId, view, pins);
+            }
+        } finally {
+            for (Pin pin : pins) {
+                unpin(pin);
+            }
+        }
+        return view;
+    }
+
+    public void invalidate(String orderId) {
+        bump(orderVersions, orderId);
+        if (shardFor(orderId).remove(orderId)) {
+            invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        bumpAll(orderVersions);
+        bumpAll(productDependents);
+        bumpAll(customerDependents);
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size = 0;
+        long weight = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.probation.size() + shard.protectedEntries.size();
+                weight += shard.probationWeight + shard.protectedWeight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size, weight);
+    }
+
+    // Dựng view từ các repository, ngoài mọi khóa của cache.
+    // Ghim order/customer/product trước khi đọc để biết nếu chúng đổi trong lúc dựng.
+    private ExportOrderView build(String orderId, List<Pin> pins) {
+        pins.add(pin(orderVersions, orderId));
+        ExportOrder order = orderRepository.findExportOrderById(orderId);
+        if (order == null) {
+            return null;
+        }
+
+        Customer customer = order.getCustomer();
+        if (customer != null) {
+            pins.add(pin(customerDependents, customer.getId()));
+            Customer current = customerRepository.findById(customer.getId());
+            if (current != null) {
+                customer = current;
+            }
+        }
+
+        List<ExportOrderView.Line> lines = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            pins.add(pin(productDependents, item.getProduct().getId()));
+            Product product = productRepository.findById(item.getProduct().getId());
+            lines.add(new ExportOrderView.Line(item, product != null ? product : item.getProduct()));
+        }
+        return new ExportOrderView(order, customer, lines);
+    }
+
+    private Shard shardFor(String orderId) {
+        int hash = orderId.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    // Mọi thay đổi trên một Dependents đều làm trong compute của map, nên nguyên tử theo key
+    private static void addDependent(Map<String, Dependents> dependents, String key, String orderId) {
+        dependents.compute(key, (k, entry) -> {
+            if (entry == null) {
+                entry = new Dependents();
+            }
+            entry.orderIds.add(orderId);
+            return entry;
+        });
+    }
+
+    private static void removeDependent(Map<String, Dependents> dependents, String key, String orderId) {
+        dependents.computeIfPresent(key, (k, entry) -> {
+            entry.orderIds.remove(orderId);
+            return entry.isUnused() ? null : entry;
+        });
+    }
+
+    // Giữ entry trong map (và version của nó) cho tới khi unpin
+    private static Pin pin(Map<String, Dependents> dependents, String key) {
+        Dependents entry = dependents.compute(key, (k, current) -> {
+            if (current == null) {
+                current = new Dependents();
+            }
+            current.pins++;
+            return current;
+        });
+        return new Pin(dependents, key, entry, entry.version);
+    }
+
+    private static void unpin(Pin pin) {
+        pin.dependents.computeIfPresent(pin.key, (k, entry) -> {
+            entry.pins--;
+            return entry.isUnused() ? null : entry;
+        });
+    }
+
+    // Key không có entry thì không có view nào dùng nó và cũng không có ai đang dựng
+    private static Dependents bump(Map<String, Dependents> dependents, String key) {
+        return dependents.computeIfPresent(key, (k, entry) -> {
+            entry.version++;
+            return entry;
+        });
+    }
+
+    private static void bumpAll(Map<String, Dependents> dependents) {
+        dependents.replaceAll((k, entry) -> {
+            entry.version++;
+            return entry;
+        });
+    }
+
+    private void invalidateDependents(Map<String, Dependents> dependents, String key) {
+        Dependents entry = bump(dependents, key);
+        if (entry == null) {
+            return;
+        }
+        for (String orderId : entry.orderIds.toArray(new String[0])) {
+            if (shardFor(orderId).remove(orderId)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    // Bỏ view của các order đang dùng product/customer vừa đổi
+    private class DependentListener<T> implements EntityStore.Listener<T> {
+        private final Map<String, Dependents> dependents;
+        private final Function<T, String> idFunction;
+
+        DependentListener(Map<String, Dependents> dependents, Function<T, String> idFunction) {
+            this.dependents = dependents;
+            this.idFunction = idFunction;
+        }
+
+        @Override
+        public void added(T entity) {
+            // Có thể đã có view dựng lúc entity chưa tồn tại (dùng bản trong order)
+            invalidateDependents(dependents, idFunction.apply(entity));
+        }
+
+        @Override
+        public void removed(T entity) {
+            invalidateDependents(dependents, idFunction.apply(entity));
+        }
+
+        @Override
+        public void replaced(T previous, T current) {
+            invalidateDependents(dependents, idFunction.apply(current));
+        }
+
+        @Override
+        public void cleared() {
+            invalidateAll();
+        }
+    }
+
+    // Một productId/customerId/orderId đang được dùng: các order có view phụ thuộc,
+    // số lần dựng view đang ghim nó, và version tăng mỗi lần nó đổi
+    private static class Dependents {
+        private final Set<String> orderIds = ConcurrentHashMap.newKeySet();
+        private int pins;
+        private volatile long version;
+
+        boolean isUnused() {
+            return orderIds.isEmpty() && pins == 0;
+        }
+    }
+
+    // Key đã ghim khi dựng view, cùng version lúc ghim
+    private static class Pin {
+        private final Map<String, Dependents> dependents;
+        private final String key;
+        private final Dependents entry;
+        private final long version;
+
+        Pin(Map<String, Dependents> dependents, String key, Dependents entry, long version) {
+            this.dependents = dependents;
+            this.key = key;
+            this.entry = entry;
+            this.version = version;
+        }
+
+        boolean changed() {
+            return entry.version != version;
+        }
+    }
+
+    private static class Entry {
+        private final ExportOrderView view;
+        private final long weight;
+
+        Entry(ExportOrderView view) {
+            this.view = view;
+            this.weight = 1 + view.getLines().size();
+        }
+    }
+
+    // Một phần của cache: hai LinkedHashMap theo thứ tự truy cập (đầu = lâu chưa dùng nhất)
+    private class Shard {
+        private final long maximumWeight;
+        private final long protectedMaximum;
+        private final LinkedHashMap<String, Entry> probation;
+        private final LinkedHashMap<String, Entry> protectedEntries;
+        private long probationWeight;
+        private long protectedWeight;
+
+        Shard(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            this.protectedMaximum = (long) (maximumWeight * PROTECTED_RATIO);
+            this.probation = new LinkedHashMap<>(16, 0.75f, true);
+            this.protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        synchronized ExportOrderView get(String orderId) {
+            Entry entry = protectedEntries.get(orderId);
+            if (entry != null) {
+                return entry.view;
+            }
+            entry = probation.remove(orderId);
+            if (entry == null) {
+                return null;
+            }
+            // Đọc lần thứ hai: lên protected, protected đầy thì trả view cũ nhất về probation
+            probationWeight -= entry.weight;
+            protectedEntries.put(orderId, entry);
+            protectedWeight += entry.weight;
+            while (protectedWeight > protectedMaximum && protectedEntries.size() > 1) {
+                Iterator<Map.Entry<String, Entry>> eldest = protectedEntries.entrySet().iterator();
+                Map.Entry<String, Entry> demoted = eldest.next();
+                eldest.remove();
+                protectedWeight -= demoted.getValue().weight;
+                probation.put(demoted.getKey(), demoted.getValue());
+                probationWeight += demoted.getValue().weight;
+            }
+            return entry.view;
+        }
+
+        synchronized void put(String orderId, ExportOrderView view, List<Pin> pins) {
+            removeEntry(orderId);
+            Entry entry = new Entry(view);
+            addDependents(orderId, view);
+            probation.put(orderId, entry);
+            probationWeight += entry.weight;
+
+            // Kiểm tra sau khi đã đăng ký dependents: nếu order/customer/product của view đổi lúc dựng
+            // thì version của nó đã tăng; còn nếu đổi sau đó thì invalidate thấy dependents và xóa view này.
+            // Thay đổi ở key khác không làm mất view đang dựng.
+            for (Pin pin : pins) {
+                if (pin.changed()) {
+                    removeEntry(orderId);
+                    return;
+                }
+            }
+            evictIfNeeded();
+        }
+
+        synchronized boolean remove(String orderId) {
+            return removeEntry(orderId);
+        }
+
+        synchronized void clear() {
+            for (String orderId : new ArrayList<>(probation.keySet())) {
+                removeEntry(orderId);
+            }
+            for (String orderId : new ArrayList<>(protectedEntries.keySet())) {
+                removeEntry(orderId);
+            }
+        }
+
+        private boolean removeEntry(String orderId) {
+            Entry entry = probation.remove(orderId);
+            if (entry != null) {
+                probationWeight -= entry.weight;
+            } else {
+                entry = protectedEntries.remove(orderId);
+                if (entry == null) {
+                    return false;
+                }
+                protectedWeight -= entry.weight;
+            }
+            removeDependents(orderId, entry.view);
+            return true;
+        }
+
+        private void evictIfNeeded() {
+            while (probationWeight + protectedWeight > maximumWeight) {
+                LinkedHashMap<String, Entry> victims = probation.isEmpty() ? protectedEntries : probation;
+                String orderId = victims.keySet().iterator().next();
+                removeEntry(orderId);
+                evictions.increment();
+            }
+        }
+
+        private void addDependents(String orderId, ExportOrderView view) {
+            if (view.getCustomer() != null) {
+                addDependent(customerDependents, view.getCustomer().getId(), orderId);
+            }
+            for (ExportOrderView.Line line : view.getLines()) {
+                addDependent(productDependents, line.getProduct().getId(), orderId);
+            }
+        }
+
+        private void removeDependents(String orderId, ExportOrderView view) {
+            if (view.getCustomer() != null) {
+                removeDependent(customerDependents, view.getCustomer().getId(), orderId);
+            }
+            for (ExportOrderView.Line line : view.getLines()) {
+                removeDependent(productDependents, line.getProduct().getId(), orderId);
+            }
+        }
+    }
+
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d size=%d weight=%d",
+                    hits, misses, getHitRate(), evictions, invalidations, size, weight);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package repository;
+
+import domain.Food;
+import domain.Product;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Truy vấn sản phẩm nhiều điều kiện (AND giữa các điều kiện, OR giữa các giá trị của cùng một điều kiện), vd.
+//     new ProductQuery().type("FOOD").stockBelow(10).expiryBefore(date)
+//             .orderBy(ProductQuery.Sort.SALE_PRICE).limit(20)
+// Chạy bằng ProductRepository.query()/stream(); explain() cho biết index được chọn.
+// Khi sắp xếp, các sản phẩm cùng giá trị xếp theo id nên kết quả không phụ thuộc index được chọn;
+// không orderBy thì thứ tự (và các phần tử được lấy khi có limit) tùy index.
+public class ProductQuery {
+    public enum Sort {
+        SALE_PRICE, STOCK, NAME
+    }
+
+    private Set<String> types;      // null = không lọc
+    private Set<String> categories;
+    private String nameContains;
+    private Integer stockBelow;
+    private LocalDate expiryBefore;
+    private double minSalePrice = Double.NEGATIVE_INFINITY;
+    private double maxSalePrice = Double.POSITIVE_INFINITY;
+    private Sort sort;
+    private boolean descending;
+    private int limit = QueryPlan.NO_LIMIT;
+
+    public ProductQuery type(String... types) {
+        this.types = new LinkedHashSet<>(Arrays.asList(types));
+        return this;
+    }
+
+    public ProductQuery category(String... categories) {
+        this.categories = new LinkedHashSet<>(Arrays.asList(categories));
+        return this;
+    }
+
+    // Giống findByName: tên chứa chuỗi, theo cách fold của repository (vd. không dấu)
+    public ProductQuery nameContains(String name) {
+        this.nameContains = name;
+        return this;
+    }
+
+    // stock < threshold
+    public ProductQuery stockBelow(int threshold) {
+        this.stockBelow = threshold;
+        return this;
+    }
+
+    // Hạn dùng trước date; chỉ Food có hạn dùng nên sản phẩm loại khác không khớp
+    public ProductQuery expiryBefore(LocalDate date) {
+        this.expiryBefore = date;
+        return this;
+    }
+
+    // min <= salePrice <= max
+    public ProductQuery salePriceBetween(double min, double max) {
+        this.minSalePrice = min;
+        this.maxSalePrice = max;
+        return this;
+    }
+
+    public ProductQuery orderBy(Sort sort) {
+        this.sort = sort;
+        this.descending = false;
+        return this;
+    }
+
+    public ProductQuery orderByDescending(Sort sort) {
+        this.sort = sort;
+        this.descending = true;
+        return this;
+    }
+
+    public ProductQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit phải >= 0: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    Set<String> getTypes() {
+        return types;
+    }
+
+    Set<String> getCategories() {
+        return categories;
+    }
+
+    String getNameContains() {
+        return nameContains;
+    }
+
+    Integer getStockBelow() {
+        return stockBelow;
+    }
+
+    Sort getSort() {
+        return sort;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    // Mọi điều kiện trừ nameContains (cần TrigramIndex của repository)
+    boolean matches(Product product) {
+        if (types != null && !types.contains(product.getProductType())) {
+            return false;
+        }
+        if (categories != null && !categories.contains(product.getCategory())) {
+            return false;
+        }
+        if (stockBelow != null && product.getStockQuantity() >= stockBelow) {
+            return false;
+        }
+        if (product.getSalePrice() < minSalePrice || product.getSalePrice() > maxSalePrice) {
+            return false;
+        }
+        if (expiryBefore != null) {
+            if (!(product instanceof Food)) {
+                return false;
+            }
+            LocalDate expiry = ((Food) product).getExpiryDate();
+            return expiry != null && expiry.isBefore(expiryBefore);
+        }
+        return true;
+    }
+
+    // null nếu không sắp xếp
+    Comparator<Product> comparator() {
+        if (sort == null) {
+            return null;
+        }
+        Comparator<Product> order;
+        switch (sort) {
+            case SALE_PRICE:
+                order = Comparator.comparingDouble(Product::getSalePrice);
+                break;
+            case STOCK:
+                order = Comparator.comparingInt(Product::getStockQuantity);
+                break;
+            default:
+                order = Comparator.comparing(Product::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
+                break;
+        }
+        if (descending) {
+            order = order.reversed();
+        }
+        return order.thenComparing(Product::getId);
+    }
+}
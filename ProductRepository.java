@@ -2,100 +2,252 @@ package repository;
 
 import domain.*;
 import exception.ProductNotFoundException;
-import interfaces.Persistable;
-import interfaces.Searchable;
 
 import java.io.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class ProductRepository implements Persistable, Searchable<Product> {
-    private List<Product> products;
+public class ProductRepository implements ProductStore {
+    private static final int TYPE = 0;
+    private static final int CATEGORY = 1;
+
+    private final EntityStore<Product> products; // id -> Product, giữ thứ tự thêm vào
+    private final TrigramIndex<Product> searchIndex; // trường 0 là name
+    private final BitmapIndex<Product> typeIndex;     // chiều TYPE và CATEGORY
+    private final StockIndex stockIndex;
+    private final List<StockAlert> stockAlerts;
     private final String filePath;
+    private final RepositoryMetrics metrics;
+
+    private final ChangeLog changeLog;
+    private final Object compactLock; // compact() ghi cùng file .tmp nên chạy lần lượt
+    private boolean journaling;
+    private int compactThreshold = ChangeLog.DEFAULT_COMPACT_THRESHOLD;
 
     public ProductRepository(String filePath) {
         this.filePath = filePath;
-        this.products = new ArrayList<>();
+        this.products = new EntityStore<>(Product::getId);
+        this.searchIndex = new TrigramIndex<>(String::toLowerCase, Product::getName, Product::getCategory, Product::getId);
+        this.products.addListener(searchIndex);
+        this.typeIndex = new BitmapIndex<>(Product::getProductType, Product::getCategory);
+        this.products.addListener(typeIndex);
+        this.stockIndex = new StockIndex();
+        this.products.addListener(stockIndex);
+        this.stockAlerts = new CopyOnWriteArrayList<>();
+        this.changeLog = new ChangeLog(filePath);
+        this.compactLock = new Object();
+        this.metrics = new RepositoryMetrics("products");
+    }
+
+    // Số liệu thao tác (mặc định tắt), xem RepositoryMetrics
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void addChangeListener(EntityStore.Listener<Product> listener) {
+        products.addListener(listener);
+    }
+
+    // Chế độ journal: add/update/delete ghi nối vào <file>.log,
+    // save() chỉ ghi lại toàn bộ file khi log vượt ngưỡng compactThreshold
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    public void setAccentInsensitive(boolean accentInsensitive) {
+        products.lockWrite();
+        try {
+            searchIndex.setFolding(accentInsensitive ? TextFolding::fold : String::toLowerCase);
+        } finally {
+            products.unlockWrite();
+        }
     }
 
     @Override
     public void save() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            // Header
-            writer.write("id,productType,name,category,importPrice,salePrice,stockQuantity,extra1,extra2");
-            writer.newLine();
-
-            // Data
-            for (Product product : products) {
-                writer.write(product.toCSV());
+        long start = metrics.start();
+        try {
+            if (journaling && !changeLog.needsCompaction(compactThreshold)) {
+                return; // Các thay đổi đã nằm trong log
+            }
+            compact();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.SAVE, start);
+        }
+    }
+
+    // Ghi toàn bộ dữ liệu ra file snapshot rồi xóa log.
+    // Chỉ khóa lúc lấy snapshot (bất biến) và version của store; ghi file và fsync ngoài khóa nên đọc/ghi
+    // không bị chặn. Có ghi chen vào lúc đang ghi file thì giữ nguyên log: record mang cả dòng dữ liệu
+    // nên phát lại trên snapshot mới vẫn ra đúng, và log được xóa ở lần compact sau.
+    @Override
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<Product> snapshot;
+            long version;
+            products.lockRead();
+            try {
+                snapshot = products.snapshot();
+                version = products.version();
+            } finally {
+                products.unlockRead();
+            }
+
+            try (SnapshotWriter writer = new SnapshotWriter(filePath)) {
+                // Header
+                writer.write("id,productType,name,category,importPrice,salePrice,stockQuantity,extra1,extra2");
                 writer.newLine();
+
+                // Data
+                for (Product product : snapshot) {
+                    writer.write(toCsvRow(product));
+                    writer.newLine();
+                }
+                writer.commit();
+                metrics.recordWrite(snapshot.size(), writer.bytesWritten());
+            }
+
+            products.lockWrite();
+            try {
+                if (products.version() == version) {
+                    changeLog.reset();
+                }
+            } finally {
+                products.unlockWrite();
             }
         }
     }
 
     @Override
     public void load() throws IOException {
-        products.clear();
+        long start = metrics.start();
+        try {
+            loadFile();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    private void loadFile() throws IOException {
+        Map<String, Product> loaded = new LinkedHashMap<>();
+        StringPool pool = new StringPool();
 
         File file = new File(filePath);
-        if (!file.exists()) {
-            return; // File chưa tồn tại, return empty list
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line = reader.readLine(); // Skip header
-
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-
-                String[] parts = line.split(",", -1); // -1 để giữ empty strings
-                if (parts.length < 9) continue;
-
-                String id = parts[0];
-                String productType = parts[1];
-                String name = parts[2];
-                String category = parts[3];
-                double importPrice = Double.parseDouble(parts[4]);
-                double salePrice = Double.parseDouble(parts[5]);
-                int stockQuantity = Integer.parseInt(parts[6]);
-
-                Product product = null;
-
-                switch (productType) {
-                    case "ELECTRONICS":
-                        int warrantyMonths = Integer.parseInt(parts[7]);
-                        product = new Electronics(id, name, category, importPrice,
-                                salePrice, stockQuantity, warrantyMonths);
-                        break;
-
-                    case "CLOTHING":
-                        String size = parts[7];
-                        String material = parts[8];
-                        product = new Clothing(id, name, category, importPrice,
-                                salePrice, stockQuantity, size, material);
-                        break;
-
-                    case "FOOD":
-                        LocalDate expiryDate = LocalDate.parse(parts[7]);
-                        product = new Food(id, name, category, importPrice,
-                                salePrice, stockQuantity, expiryDate);
-                        break;
-
-                    case "FURNITURE":
-                        String dimensions = parts[7];
-                        double weight = Double.parseDouble(parts[8]);
-                        product = new Furniture(id, name, category, importPrice,
-                                salePrice, stockQuantity, dimensions, weight);
-                        break;
+        if (file.exists()) {
+            long rows = 0;
+            try (CsvReader reader = CsvReader.open(filePath)) {
+                reader.next(); // Skip header
+
+                while (reader.next()) {
+                    rows++;
+                    Product product = parseProduct(reader, pool);
+                    if (product != null) {
+                        loaded.put(product.getId(), product);
+                    }
                 }
+            }
+            metrics.recordRead(rows, file.length());
+        }
 
-                if (product != null) {
-                    products.add(product);
+        // Phát lại các thay đổi ghi sau snapshot
+        changeLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+                return;
+            }
+            Product product = parseProduct(reader, pool);
+            if (product != null) {
+                if (op == ChangeLog.UPDATE) {
+                    loaded.remove(product.getId());
                 }
+                loaded.put(product.getId(), product);
             }
+        });
+
+        resetProducts(loaded.values());
+    }
+
+    // Dùng chung với OffHeapProductStore (cùng định dạng file)
+    static Product parseProduct(CsvReader reader, StringPool pool) {
+        if (reader.size() < 9) return null;
+
+        String id = reader.getString(0);
+        String productType = reader.getString(1, pool);
+        String name = reader.getString(2);
+        String category = reader.getString(3, pool);
+        double importPrice = reader.getDouble(4);
+        double salePrice = reader.getDouble(5);
+        int stockQuantity = reader.getInt(6);
+
+        Product product = null;
+
+        switch (productType) {
+            case "ELECTRONICS":
+                int warrantyMonths = reader.getInt(7);
+                product = new Electronics(id, name, category, importPrice,
+                        salePrice, stockQuantity, warrantyMonths);
+                break;
+
+            case "CLOTHING":
+                String size = reader.getString(7, pool);
+                String material = reader.getString(8, pool);
+                product = new Clothing(id, name, category, importPrice,
+                        salePrice, stockQuantity, size, material);
+                break;
+
+            case "FOOD":
+                LocalDate expiryDate = reader.getDate(7);
+                product = new Food(id, name, category, importPrice,
+                        salePrice, stockQuantity, expiryDate);
+                break;
+
+            case "FURNITURE":
+                String dimensions = reader.getString(7);
+                double weight = reader.getDouble(8);
+                product = new Furniture(id, name, category, importPrice,
+                        salePrice, stockQuantity, dimensions, weight);
+                break;
+        }
+
+        return product;
+    }
+
+    // Ngược với parseProduct; tên/danh mục có dấu phẩy, dấu nháy vẫn đọc lại đúng
+    static String toCsvRow(Product product) {
+        Object extra1 = null;
+        Object extra2 = null;
+        if (product instanceof Electronics) {
+            extra1 = ((Electronics) product).getWarrantyMonths();
+        } else if (product instanceof Clothing) {
+            extra1 = ((Clothing) product).getSize();
+            extra2 = ((Clothing) product).getMaterial();
+        } else if (product instanceof Food) {
+            extra1 = ((Food) product).getExpiryDate();
+        } else if (product instanceof Furniture) {
+            extra1 = ((Furniture) product).getDimensions();
+            extra2 = ((Furniture) product).getWeight();
         }
+        return Csv.row(product.getId(), product.getProductType(), product.getName(), product.getCategory(),
+                product.getImportPrice(), product.getSalePrice(), product.getStockQuantity(), extra1, extra2);
     }
 
     @Override
@@ -103,79 +255,452 @@ public class ProductRepository implements Persistable, Searchable<Product> {
         return filePath;
     }
 
+    // Một lần reset(): findById không thấy sản phẩm nào mất tạm thời
+    @Override
+    public void replaceAll(Collection<Product> loaded) {
+        long start = metrics.start();
+        try {
+            resetProducts(loaded);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
     @Override
     public void clear() {
-        products.clear();
+        long start = metrics.start();
+        try {
+            resetProducts(Collections.emptyList());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.CLEAR, start);
+        }
     }
 
     @Override
     public Product findById(String id) {
-        return products.stream()
-                .filter(p -> p.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = metrics.start();
+        try {
+            return products.get(id);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
     }
 
     @Override
     public List<Product> findByName(String name) {
-        String lowerName = name.toLowerCase();
-        return products.stream()
-                .filter(p -> p.getName().toLowerCase().contains(lowerName))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        products.lockRead();
+        try {
+            return searchIndex.search(name, 0);
+        } finally {
+            products.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_NAME, start);
+        }
     }
 
     @Override
     public List<Product> findAll() {
-        return new ArrayList<>(products);
+        long start = metrics.start();
+        try {
+            return new ArrayList<>(products.snapshot());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
     }
 
     @Override
     public List<Product> search(String criteria) {
-        String lower = criteria.toLowerCase();
-        return products.stream()
-                .filter(p -> p.getName().toLowerCase().contains(lower) ||
-                        p.getCategory().toLowerCase().contains(lower) ||
-                        p.getId().toLowerCase().contains(lower))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        products.lockRead();
+        try {
+            return searchIndex.search(criteria);
+        } finally {
+            products.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.SEARCH, start);
+        }
     }
 
     // CRUD operations
+    @Override
     public void add(Product product) {
-        products.add(product);
+        products.lockWrite();
+        try {
+            Integer before = stockOf(product.getId());
+            if (journaling) {
+                changeLog.append(ChangeLog.ADD, toCsvRow(product));
+            }
+            products.put(product);
+            fireStockAlerts(product, before);
+        } finally {
+            products.unlockWrite();
+        }
     }
 
     public void update(Product product) throws ProductNotFoundException {
-        Product existing = findById(product.getId());
-        if (existing == null) {
-            throw new ProductNotFoundException(product.getId(), "ID");
+        products.lockWrite();
+        try {
+            Integer before = stockOf(product.getId());
+            if (before == null) {
+                throw new ProductNotFoundException(product.getId(), "ID");
+            }
+            if (journaling) {
+                changeLog.append(ChangeLog.UPDATE, toCsvRow(product));
+            }
+            products.replace(product);
+            fireStockAlerts(product, before);
+        } finally {
+            products.unlockWrite();
         }
-        products.remove(existing);
-        products.add(product);
     }
 
     public void delete(String id) throws ProductNotFoundException {
-        Product product = findById(id);
-        if (product == null) {
-            throw new ProductNotFoundException(id, "ID");
+        products.lockWrite();
+        try {
+            Product previous = products.get(id);
+            if (previous == null) {
+                throw new ProductNotFoundException(id, "ID");
+            }
+            Integer before = stockOf(id);
+            if (journaling) {
+                changeLog.append(ChangeLog.DELETE, Csv.quote(id));
+            }
+            products.remove(id);
+            fireRemovedAlerts(previous, before);
+        } finally {
+            products.unlockWrite();
+        }
+    }
+
+    // Đổi tồn kho qua repository để stock index và các StockListener được cập nhật
+    public void updateStock(String id, int quantity) throws ProductNotFoundException {
+        products.lockWrite();
+        try {
+            Product product = products.get(id);
+            if (product == null) {
+                throw new ProductNotFoundException(id, "ID");
+            }
+            Integer before = stockOf(id);
+            int previous = product.getStockQuantity();
+            product.setStockQuantity(quantity);
+            if (journaling) {
+                try {
+                    changeLog.append(ChangeLog.ADD, toCsvRow(product)); // ADD: phát lại giữ nguyên vị trí
+                } catch (UncheckedIOException e) {
+                    product.setStockQuantity(previous);
+                    throw e;
+                }
+            }
+            products.put(product);
+            fireStockAlerts(product, before);
+        } finally {
+            products.unlockWrite();
         }
-        products.remove(product);
     }
 
+    // Báo mọi thay đổi của tập sản phẩm dưới ngưỡng, để không cần poll getLowStockProducts:
+    // - stockLow: sản phẩm mới thêm đã dưới ngưỡng, hoặc stock xuống dưới threshold
+    // - stockRestored: stock lên lại >= threshold
+    // - lowStockRemoved: sản phẩm đang dưới ngưỡng bị xóa
+    // load()/replaceAll()/clear() báo phần chênh lệch giữa dữ liệu cũ và mới theo đúng các quy tắc trên.
+    // Listener được gọi trong khóa ghi nên cần xử lý nhanh; danh sách ban đầu lấy bằng getLowStockProducts.
+    public void addStockListener(int threshold, StockListener listener) {
+        stockAlerts.add(new StockAlert(threshold, listener));
+    }
+
+    public void removeStockListener(StockListener listener) {
+        stockAlerts.removeIf(alert -> alert.listener == listener);
+    }
+
+    private Integer stockOf(String id) {
+        Product current = products.get(id);
+        return current == null ? null : stockIndex.quantityOf(current);
+    }
+
+    // Thay toàn bộ kho trong một lần khóa ghi rồi báo chênh lệch so với dữ liệu cũ
+    private void resetProducts(Collection<Product> loaded) {
+        products.lockWrite();
+        try {
+            if (stockAlerts.isEmpty()) {
+                products.reset(loaded);
+                return;
+            }
+            Map<String, Product> previous = new HashMap<>();
+            Map<String, Integer> before = new HashMap<>();
+            for (Product product : products.snapshot()) {
+                previous.put(product.getId(), product);
+                before.put(product.getId(), stockIndex.quantityOf(product));
+            }
+
+            products.reset(loaded);
+
+            for (Product product : products.snapshot()) {
+                previous.remove(product.getId());
+                fireStockAlerts(product, before.get(product.getId()));
+            }
+            for (Product removed : previous.values()) {
+                fireRemovedAlerts(removed, before.get(removed.getId()));
+            }
+        } finally {
+            products.unlockWrite();
+        }
+    }
+
+    // before null: sản phẩm mới thêm, coi như trước đó không dưới ngưỡng
+    private void fireStockAlerts(Product product, Integer before) {
+        int after = product.getStockQuantity();
+        for (StockAlert alert : stockAlerts) {
+            boolean wasLow = before != null && before < alert.threshold;
+            boolean isLow = after < alert.threshold;
+            if (isLow && !wasLow) {
+                alert.listener.stockLow(product, alert.threshold);
+            } else if (wasLow && !isLow) {
+                alert.listener.stockRestored(product, alert.threshold);
+            }
+        }
+    }
+
+    private void fireRemovedAlerts(Product product, Integer before) {
+        if (before == null) {
+            return;
+        }
+        for (StockAlert alert : stockAlerts) {
+            if (before < alert.threshold) {
+                alert.listener.lowStockRemoved(product, alert.threshold);
+            }
+        }
+    }
+
+    @Override
     public int count() {
         return products.size();
     }
 
+    @Override
+    public long version() {
+        return products.version();
+    }
+
     // Lấy sản phẩm theo loại
     public List<Product> findByType(String type) {
-        return products.stream()
-                .filter(p -> p.getProductType().equals(type))
-                .collect(Collectors.toList());
+        products.lockRead();
+        try {
+            return typeIndex.find(TYPE, type);
+        } finally {
+            products.unlockRead();
+        }
     }
 
-    // Lấy sản phẩm sắp hết hàng (stock < threshold)
+    public List<Product> findByCategory(String category) {
+        products.lockRead();
+        try {
+            return typeIndex.find(CATEGORY, category);
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    // vd. ELECTRONICS ∩ "Smartphone"
+    public List<Product> findByTypeAndCategory(String type, String category) {
+        products.lockRead();
+        try {
+            BitSet bits = typeIndex.matching(TYPE, type);
+            bits.and(typeIndex.matching(CATEGORY, category));
+            return typeIndex.collect(bits);
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    // Lọc nhiều giá trị: thuộc một trong các types VÀ một trong các categories (null = không lọc)
+    public List<Product> filter(Collection<String> types, Collection<String> categories) {
+        products.lockRead();
+        try {
+            if (types == null && categories == null) {
+                return new ArrayList<>(products.snapshot());
+            }
+            BitSet bits = null;
+            if (types != null) {
+                bits = typeIndex.matchingAny(TYPE, types);
+            }
+            if (categories != null) {
+                BitSet byCategory = typeIndex.matchingAny(CATEGORY, categories);
+                if (bits == null) {
+                    bits = byCategory;
+                } else {
+                    bits.and(byCategory);
+                }
+            }
+            return typeIndex.collect(bits);
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    // Lấy sản phẩm sắp hết hàng (stock < threshold), tăng dần theo stock
+    @Override
     public List<Product> getLowStockProducts(int threshold) {
-        return products.stream()
-                .filter(p -> p.getStockQuantity() < threshold)
-                .collect(Collectors.toList());
+        products.lockRead();
+        try {
+            return stockIndex.below(threshold);
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    public int countLowStockProducts(int threshold) {
+        products.lockRead();
+        try {
+            return stockIndex.countBelow(threshold);
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    // Truy vấn nhiều điều kiện (xem ProductQuery): đã lọc, sắp xếp và cắt theo limit
+    public List<Product> query(ProductQuery query) {
+        long start = metrics.start();
+        try {
+            return execute(query).collect(Collectors.toList());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    // Như query() nhưng trả về Stream. Khi không có index phù hợp và không sắp xếp, stream lọc dần
+    // trên snapshot bất biến của store: không copy danh sách, không giữ khóa, dừng ngay khi đủ limit.
+    // Metric QUERY được ghi khi stream được close (dùng try-with-resources).
+    public Stream<Product> stream(ProductQuery query) {
+        long start = metrics.start();
+        Stream<Product> result;
+        try {
+            result = execute(query);
+        } catch (RuntimeException e) {
+            metrics.record(RepositoryMetrics.Operation.QUERY, start);
+            throw e;
+        }
+        return metrics.recordOnClose(RepositoryMetrics.Operation.QUERY, start, result);
+    }
+
+    public QueryPlan explain(ProductQuery query) {
+        products.lockRead();
+        try {
+            return plan(query, nameMatches(query), typeMatches(query));
+        } finally {
+            products.unlockRead();
+        }
+    }
+
+    private Stream<Product> execute(ProductQuery query) {
+        Comparator<Product> order = query.comparator();
+        int limit = query.getLimit();
+        Predicate<Product> filter = query::matches;
+        List<Product> all;
+
+        products.lockRead();
+        try {
+            List<Product> named = nameMatches(query);
+            BitSet typed = typeMatches(query);
+            QueryPlan plan = plan(query, named, typed);
+            if (named != null) {
+                Set<Product> nameSet = Collections.newSetFromMap(new IdentityHashMap<>());
+                nameSet.addAll(named);
+                filter = filter.and(nameSet::contains);
+            }
+
+            switch (plan.getAccess()) {
+                case NAME_INDEX:
+                    return QueryPlan.collect(named.stream(), filter, order, limit).stream();
+                case TYPE_INDEX:
+                    return QueryPlan.collect(typeIndex.stream(typed), filter, order, limit).stream();
+                case STOCK_INDEX:
+                    Stream<Collection<Product>> groups = query.getStockBelow() != null
+                            ? stockIndex.groupsBelow(query.getStockBelow()) : stockIndex.groups();
+                    if (plan.isLimitPushedDown() && order != null) {
+                        return QueryPlan.collectGroups(groups, filter, order, limit).stream();
+                    }
+                    return QueryPlan.collect(groups.flatMap(Collection::stream), filter, order, limit).stream();
+                default:
+                    all = products.snapshot();
+            }
+        } finally {
+            products.unlockRead();
+        }
+
+        // Quét toàn bộ ngoài khóa: snapshot không đổi dù có ghi sau đó
+        if (order == null) {
+            return all.stream().filter(filter).limit(limit);
+        }
+        return QueryPlan.collect(all.stream(), filter, order, limit).stream();
+    }
+
+    // Chọn cách lấy ứng viên phải duyệt ít dòng nhất. Số dòng của mỗi index là cận trên số kết quả;
+    // sắp theo stock tăng dần có limit thì duyệt StockIndex theo thứ tự và dừng khi đủ.
+    private QueryPlan plan(ProductQuery query, List<Product> named, BitSet typed) {
+        int limit = query.getLimit();
+        boolean unordered = query.getSort() == null;
+        long total = products.size();
+        long matches = total;
+        QueryPlan best = new QueryPlan(QueryPlan.Access.FULL_SCAN, total, limit, unordered);
+
+        if (named != null) {
+            matches = Math.min(matches, named.size());
+            best = QueryPlan.cheaper(best, new QueryPlan(QueryPlan.Access.NAME_INDEX, named.size(), limit, unordered));
+        }
+        if (typed != null) {
+            int typedRows = typed.cardinality();
+            matches = Math.min(matches, typedRows);
+            best = QueryPlan.cheaper(best, new QueryPlan(QueryPlan.Access.TYPE_INDEX, typedRows, limit, unordered));
+        }
+
+        boolean stockOrder = query.getSort() == ProductQuery.Sort.STOCK && !query.isDescending()
+                && limit != QueryPlan.NO_LIMIT;
+        if (query.getStockBelow() != null || stockOrder) {
+            long stockRows = query.getStockBelow() != null ? stockIndex.countBelow(query.getStockBelow()) : total;
+            matches = Math.min(matches, stockRows);
+            QueryPlan byStock = stockOrder
+                    ? new QueryPlan(QueryPlan.Access.STOCK_INDEX, QueryPlan.orderedCost(stockRows, matches, limit), limit, true)
+                    : new QueryPlan(QueryPlan.Access.STOCK_INDEX, stockRows, limit, unordered);
+            best = QueryPlan.cheaper(best, byStock);
+        }
+        return best;
+    }
+
+    private List<Product> nameMatches(ProductQuery query) {
+        return query.getNameContains() == null ? null : searchIndex.search(query.getNameContains(), 0);
+    }
+
+    // Slot khớp type VÀ category theo BitmapIndex, null nếu truy vấn không lọc hai chiều này
+    private BitSet typeMatches(ProductQuery query) {
+        BitSet bits = null;
+        if (query.getTypes() != null) {
+            bits = typeIndex.matchingAny(TYPE, query.getTypes());
+        }
+        if (query.getCategories() != null) {
+            BitSet byCategory = typeIndex.matchingAny(CATEGORY, query.getCategories());
+            if (bits == null) {
+                bits = byCategory;
+            } else {
+                bits.and(byCategory);
+            }
+        }
+        return bits;
+    }
+
+    public interface StockListener {
+        void stockLow(Product product, int threshold);
+
+        void stockRestored(Product product, int threshold);
+
+        void lowStockRemoved(Product product, int threshold);
+    }
+
+    private static class StockAlert {
+        private final int threshold;
+        private final StockListener listener;
+
+        StockAlert(int threshold, StockListener listener) {
+            this.threshold = threshold;
+            this.listener = listener;
+        }
     }
 }
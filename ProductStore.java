@@ -0,0 +1,33 @@
+package repository;
+
+import domain.Product;
+import interfaces.Persistable;
+import interfaces.Searchable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+// Kho sản phẩm dùng chung cho OrderRepository, OrderViewCache và BinarySnapshot:
+// ProductRepository (trên heap, có index) hoặc OffHeapProductStore (catalog rất lớn).
+public interface ProductStore extends Persistable, Searchable<Product> {
+    // Thêm mới, hoặc thay thế nếu id đã có
+    void add(Product product);
+
+    int count();
+
+    // Sản phẩm có stock < threshold
+    List<Product> getLowStockProducts(int threshold);
+
+    // Tăng sau mỗi thay đổi, để cache dựng từ sản phẩm biết đã cũ
+    long version();
+
+    // Nhận thông báo khi product được thêm/sửa/xóa/load lại; gọi trong khóa ghi
+    void addChangeListener(EntityStore.Listener<Product> listener);
+
+    // Ghi lại toàn bộ file (và xóa change log nếu có)
+    void compact() throws IOException;
+
+    // Thay toàn bộ sản phẩm bằng dữ liệu đã dựng sẵn (BinarySnapshot), không ghi change log
+    void replaceAll(Collection<Product> products);
+}
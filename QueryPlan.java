@@ -0,0 +1,119 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Cách repository chạy một ProductQuery/OrderQuery: index dùng để lấy ứng viên, số dòng ước tính phải duyệt,
+// và limit có được đẩy xuống hay không: không sắp xếp, hoặc index đã đúng thứ tự sắp xếp, thì dừng ngay khi đủ limit;
+// ngược lại phải duyệt hết ứng viên và giữ top-k.
+// Các điều kiện còn lại luôn được kiểm tra lại trên từng ứng viên.
+public class QueryPlan {
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    public enum Access {
+        FULL_SCAN, TYPE_INDEX, NAME_INDEX, STOCK_INDEX, STATUS_INDEX, DATE_INDEX
+    }
+
+    private final Access access;
+    private final long estimatedRows;
+    private final int limit;
+    private final boolean limitPushedDown;
+
+    QueryPlan(Access access, long estimatedRows, int limit, boolean limitPushedDown) {
+        this.access = access;
+        this.estimatedRows = estimatedRows;
+        this.limit = limit;
+        this.limitPushedDown = limitPushedDown;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isLimitPushedDown() {
+        return limitPushedDown;
+    }
+
+    @Override
+    public String toString() {
+        return access + " rows~" + estimatedRows
+                + (limit == NO_LIMIT ? "" : " limit=" + limit + (limitPushedDown ? " (early stop)" : " (top-k)"));
+    }
+
+    static QueryPlan cheaper(QueryPlan current, QueryPlan candidate) {
+        return candidate.estimatedRows < current.estimatedRows ? candidate : current;
+    }
+
+    // Số dòng phải duyệt khi đi theo index đã đúng thứ tự: đủ limit kết quả thì dừng.
+    // matches: cận trên số kết quả (ước tính tốt nhất từ các index khác), coi các điều kiện độc lập.
+    static long orderedCost(long indexRows, long matches, int limit) {
+        if (matches <= 0) {
+            return indexRows;
+        }
+        return Math.min(indexRows, (long) Math.ceil((double) limit * indexRows / matches));
+    }
+
+    // Lọc ứng viên rồi sắp xếp/cắt theo limit. Có limit và có sắp xếp thì chỉ giữ top-k trong heap
+    // thay vì sắp xếp toàn bộ kết quả.
+    static <T> List<T> collect(Stream<T> candidates, Predicate<T> filter, Comparator<T> order, int limit) {
+        Stream<T> matched = candidates.filter(filter);
+        if (order == null) {
+            return matched.limit(limit).collect(Collectors.toList());
+        }
+        if (limit == NO_LIMIT) {
+            List<T> result = matched.collect(Collectors.toList());
+            result.sort(order);
+            return result;
+        }
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+
+        PriorityQueue<T> top = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+        Iterator<T> iterator = matched.iterator();
+        while (iterator.hasNext()) {
+            T candidate = iterator.next();
+            if (top.size() < limit) {
+                top.add(candidate);
+            } else if (order.compare(candidate, top.peek()) < 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        }
+        List<T> result = new ArrayList<>(top);
+        result.sort(order);
+        return result;
+    }
+
+    // Ứng viên đến theo nhóm cùng khóa sắp xếp, nhóm tăng dần (một mức stock, một ngày...).
+    // Đủ limit kết quả thì dừng ở cuối nhóm hiện tại; chỉ sắp xếp lại phần đã lấy (thứ tự trong nhóm).
+    static <T> List<T> collectGroups(Stream<? extends Collection<T>> groups, Predicate<T> filter,
+                                     Comparator<T> order, int limit) {
+        List<T> result = new ArrayList<>();
+        Iterator<? extends Collection<T>> iterator = groups.iterator();
+        while (iterator.hasNext() && result.size() < limit) {
+            for (T candidate : iterator.next()) {
+                if (filter.test(candidate)) {
+                    result.add(candidate);
+                }
+            }
+        }
+        result.sort(order);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+}
@@ -0,0 +1,113 @@
+package repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Nạp toàn bộ dữ liệu khi khởi động theo đúng thứ tự phụ thuộc:
+// 1. customers, suppliers, products (độc lập) chạy song song
+// 2. import_orders, export_orders, order_items chạy song song
+// 3. gán items vào order
+// Mọi bước đi qua load() có đo của từng repository nên RepositoryMetrics vẫn ghi LOAD.
+public class RepositoryBootstrap {
+    private final CustomerRepository customerRepository;
+    private final SupplierRepository supplierRepository;
+    private final ProductStore productRepository;
+    private final OrderRepository orderRepository;
+
+    private final Map<String, Long> loadTimes; // file -> thời gian load (ms)
+
+    public RepositoryBootstrap(CustomerRepository customerRepository,
+                               SupplierRepository supplierRepository,
+                               ProductStore productRepository,
+                               OrderRepository orderRepository) {
+        this.customerRepository = customerRepository;
+        this.supplierRepository = supplierRepository;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.loadTimes = new LinkedHashMap<>();
+    }
+
+    // Trả về thời gian load (ms) của từng file, theo thứ tự nạp
+    public Map<String, Long> loadAll() throws IOException {
+        orderRepository.setCustomerRepository(customerRepository);
+        orderRepository.setSupplierRepository(supplierRepository);
+        orderRepository.setProductRepository(productRepository);
+        loadTimes.clear();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            String[] names = {customerRepository.getFilePath(), supplierRepository.getFilePath(),
+                    productRepository.getFilePath()};
+            long[] millis = runParallel(executor, customerRepository::load, supplierRepository::load,
+                    productRepository::load);
+            for (int i = 0; i < names.length; i++) {
+                loadTimes.put(names[i], millis[i]);
+            }
+
+            // import_orders, export_orders, order_items rồi attachOrderItems
+            loadTimes.putAll(orderRepository.load(executor));
+        } finally {
+            executor.shutdown();
+        }
+
+        return new LinkedHashMap<>(loadTimes);
+    }
+
+    public Map<String, Long> getLoadTimes() {
+        return new LinkedHashMap<>(loadTimes);
+    }
+
+    // Chạy các tác vụ load song song, chờ tất cả xong; trả về thời gian (ms) của từng tác vụ
+    static long[] runParallel(ExecutorService executor, LoadTask... tasks) throws IOException {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (LoadTask task : tasks) {
+            futures.add(executor.submit(() -> timed(task)));
+        }
+
+        long[] millis = new long[tasks.length];
+        for (int i = 0; i < millis.length; i++) {
+            millis[i] = await(futures.get(i));
+        }
+        return millis;
+    }
+
+    static long timed(LoadTask task) throws IOException {
+        long start = System.nanoTime();
+        task.load();
+        return elapsedMillis(start);
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi đang load dữ liệu");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    interface LoadTask {
+        void load() throws IOException;
+    }
+}
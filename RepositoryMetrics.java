@@ -0,0 +1,236 @@
+package repository;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Số lần gọi, độ trễ (LatencyHistogram, nano giây) của từng thao tác repository,
+// cùng số dòng/byte đọc khi load() và ghi khi save().
+// Cách dùng trong repository:
+//     long start = metrics.start();
+//     try { ... } finally { metrics.record(Operation.FIND_BY_ID, start); }
+// Method trả về Stream lọc dần thì ghi lúc stream được close: return metrics.recordOnClose(Operation.QUERY, start, stream);
+// Khi tắt, start() chỉ đọc một biến volatile và record() thoát ngay, không gọi nanoTime.
+// Mặc định tắt, bật bằng setEnabled(true), qua JMX hoặc -Drepository.metrics=true.
+public class RepositoryMetrics implements RepositoryMetricsMXBean {
+    public enum Operation {
+        LOAD, SAVE, CLEAR, FIND_BY_ID, FIND_BY_NAME, FIND_ALL, SEARCH, QUERY
+    }
+
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    private final String name;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder rowsRead;
+    private final LongAdder bytesRead;
+    private final LongAdder rowsWritten;
+    private final LongAdder bytesWritten;
+    private volatile boolean enabled;
+
+    public RepositoryMetrics(String name) {
+        this.name = name;
+        this.latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        this.rowsRead = new LongAdder();
+        this.bytesRead = new LongAdder();
+        this.rowsWritten = new LongAdder();
+        this.bytesWritten = new LongAdder();
+        this.enabled = Boolean.getBoolean("repository.metrics");
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    public void record(Operation operation, long start) {
+        if (start == DISABLED) {
+            return;
+        }
+        latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    // Thời gian tính tới khi caller close stream (try-with-resources), gồm cả phần lọc lúc duyệt.
+    // Stream không được close thì không ghi.
+    public <T> Stream<T> recordOnClose(Operation operation, long start, Stream<T> stream) {
+        if (start == DISABLED) {
+            return stream;
+        }
+        return stream.onClose(() -> record(operation, start));
+    }
+
+    public void recordRead(long rows, long bytes) {
+        if (enabled) {
+            rowsRead.add(rows);
+            bytesRead.add(bytes);
+        }
+    }
+
+    public void recordWrite(long rows, long bytes) {
+        if (enabled) {
+            rowsWritten.add(rows);
+            bytesWritten.add(bytes);
+        }
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    // Đăng ký vào platform MBeanServer; đã có bean cùng tên thì thay bằng bean này
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName("repository:type=RepositoryMetrics,name=" + ObjectName.quote(name));
+            try {
+                server.registerMBean(this, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Không đăng ký được MBean cho " + name, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    // Chỉ các thao tác đã được gọi ít nhất một lần
+    @Override
+    public List<OperationSnapshot> getOperations() {
+        List<OperationSnapshot> result = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            if (histogram.count() > 0) {
+                result.add(new OperationSnapshot(operation, histogram));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s enabled=%s rowsRead=%d bytesRead=%d rowsWritten=%d bytesWritten=%d%n",
+                name, enabled, getRowsRead(), getBytesRead(), getRowsWritten(), getBytesWritten()));
+        sb.append(String.format("  %-13s %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+        for (OperationSnapshot s : getOperations()) {
+            sb.append(String.format("  %-13s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    s.getOperation(), s.getCount(), s.getMeanMicros(), s.getP50Micros(),
+                    s.getP90Micros(), s.getP99Micros(), s.getP999Micros(), s.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        rowsRead.reset();
+        bytesRead.reset();
+        rowsWritten.reset();
+        bytesWritten.reset();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    // Số liệu của một thao tác tại thời điểm gọi; JMX hiển thị dạng CompositeData
+    public static class OperationSnapshot {
+        private final String operation;
+        private final long count;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p90Micros;
+        private final double p99Micros;
+        private final double p999Micros;
+        private final double maxMicros;
+
+        OperationSnapshot(Operation operation, LatencyHistogram histogram) {
+            this.operation = operation.name();
+            this.count = histogram.count();
+            this.meanMicros = histogram.mean() / 1000.0;
+            this.p50Micros = histogram.percentile(50) / 1000.0;
+            this.p90Micros = histogram.percentile(90) / 1000.0;
+            this.p99Micros = histogram.percentile(99) / 1000.0;
+            this.p999Micros = histogram.percentile(99.9) / 1000.0;
+            this.maxMicros = histogram.max() / 1000.0;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public double getP50Micros() {
+            return p50Micros;
+        }
+
+        public double getP90Micros() {
+            return p90Micros;
+        }
+
+        public double getP99Micros() {
+            return p99Micros;
+        }
+
+        public double getP999Micros() {
+            return p999Micros;
+        }
+
+        public double getMaxMicros() {
+            return maxMicros;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package repository;
+
+import java.util.List;
+
+// Giao diện JMX của RepositoryMetrics (jconsole: repository:type=RepositoryMetrics,name=...)
+public interface RepositoryMetricsMXBean {
+    String getName();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getRowsRead();
+
+    long getBytesRead();
+
+    long getRowsWritten();
+
+    long getBytesWritten();
+
+    List<RepositoryMetrics.OperationSnapshot> getOperations();
+
+    String dump();
+
+    void reset();
+}
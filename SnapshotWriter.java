@@ -0,0 +1,173 @@
+package repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Ghi file snapshot an toàn khi bị kill giữa chừng:
+// ghi ra <file>.tmp qua FileChannel với direct buffer lớn, force() xuống đĩa,
+// rồi đổi tên đè lên file đích và fsync thư mục để lần đổi tên cũng nằm trên đĩa.
+// Nếu không gọi commit() thì file đích giữ nguyên.
+public class SnapshotWriter implements Closeable {
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final CharBuffer NO_CHARS = CharBuffer.allocate(0);
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    // Direct buffer dùng lại giữa các lần save: cấp phát direct buffer chậm và chỉ được giải phóng khi GC.
+    // Giữ tối đa 4 cái (3 file order ghi song song + 1).
+    private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(4);
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private ByteBuffer buffer; // null sau close(), đã trả về BUFFERS
+    private boolean committed;
+    private long bytesWritten;
+
+    public SnapshotWriter(String filePath) throws IOException {
+        this.target = Paths.get(filePath).toAbsolutePath();
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer pooled = BUFFERS.poll();
+        this.buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    public void write(String text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (!result.isOverflow()) {
+                break;
+            }
+            drain();
+        }
+    }
+
+    public void newLine() throws IOException {
+        write(LINE_SEPARATOR);
+    }
+
+    // Ghi dữ liệu nhị phân (BinarySnapshot) vào cùng buffer/file tạm
+    public OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                while (length > 0) {
+                    if (!buffer.hasRemaining()) {
+                        drain();
+                    }
+                    int n = Math.min(length, buffer.remaining());
+                    buffer.put(bytes, offset, n);
+                    offset += n;
+                    length -= n;
+                }
+            }
+        };
+    }
+
+    // Số byte đã đẩy xuống file tạm (đủ cả file sau commit)
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    // Offset (byte) trong file của ký tự sẽ ghi tiếp theo
+    public long position() {
+        return bytesWritten + buffer.position();
+    }
+
+    // Đẩy dữ liệu xuống đĩa rồi thay file đích bằng file tạm
+    public void commit() throws IOException {
+        // Báo encoder hết dữ liệu để nó ghi nốt phần còn giữ lại (vd. surrogate lẻ cuối cùng)
+        while (encoder.encode(NO_CHARS, buffer, true).isOverflow()) {
+            drain();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+        drain();
+        channel.force(true);
+        channel.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        syncDirectory(target.getParent());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            if (buffer != null) {
+                buffer.clear();
+                BUFFERS.offer(buffer); // pool đầy thì bỏ, GC giải phóng sau
+                buffer = null;
+            }
+        }
+    }
+
+    // Tên file nằm trong thư mục: phải fsync thư mục thì lần đổi tên mới chắc chắn còn sau khi mất điện.
+    // Windows không mở được thư mục như file (AccessDeniedException; NTFS tự ghi metadata khi đổi tên)
+    // nên bỏ qua đúng trường hợp đó; lỗi khác (đĩa, quyền trên Unix...) vẫn ném ra vì file chưa chắc đã bền.
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            if (WINDOWS) {
+                return;
+            }
+            throw e;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
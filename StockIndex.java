@@ -0,0 +1,88 @@
+package repository;
+
+import domain.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// Chỉ mục sắp xếp theo stockQuantity: "stock < N" là một lần duyệt headMap thay vì quét toàn bộ.
+// Mỗi mức tồn kho giữ các sản phẩm theo thứ tự thêm vào (theo id).
+// Không tự đồng bộ: listener chạy trong khóa ghi của store, truy vấn phải giữ khóa đọc.
+public class StockIndex implements EntityStore.Listener<Product> {
+    private final TreeMap<Integer, Map<String, Product>> byStock;
+    private final Map<Product, Integer> indexedStock; // số lượng lúc được index, để gỡ đúng nhóm
+
+    public StockIndex() {
+        this.byStock = new TreeMap<>();
+        this.indexedStock = new IdentityHashMap<>();
+    }
+
+    // Sản phẩm có stock < threshold, tăng dần theo stock
+    public List<Product> below(int threshold) {
+        List<Product> result = new ArrayList<>();
+        for (Map<String, Product> group : byStock.headMap(threshold, false).values()) {
+            result.addAll(group.values());
+        }
+        return result;
+    }
+
+    public int countBelow(int threshold) {
+        int count = 0;
+        for (Map<String, Product> group : byStock.headMap(threshold, false).values()) {
+            count += group.size();
+        }
+        return count;
+    }
+
+    // Các nhóm cùng mức stock < threshold, tăng dần theo stock; chỉ dùng trong khóa đọc
+    public Stream<Collection<Product>> groupsBelow(int threshold) {
+        return byStock.headMap(threshold, false).values().stream().map(Map::values);
+    }
+
+    public Stream<Collection<Product>> groups() {
+        return byStock.values().stream().map(Map::values);
+    }
+
+    // Số lượng đã index của sản phẩm (null nếu không có), dùng để so trước/sau khi đổi stock
+    public Integer quantityOf(Product product) {
+        return indexedStock.get(product);
+    }
+
+    @Override
+    public void added(Product product) {
+        int quantity = product.getStockQuantity();
+        byStock.computeIfAbsent(quantity, k -> new LinkedHashMap<>()).put(product.getId(), product);
+        indexedStock.put(product, quantity);
+    }
+
+    @Override
+    public void removed(Product product) {
+        Integer quantity = indexedStock.remove(product);
+        if (quantity == null) {
+            return;
+        }
+        Map<String, Product> group = byStock.get(quantity);
+        group.remove(product.getId());
+        if (group.isEmpty()) {
+            byStock.remove(quantity);
+        }
+    }
+
+    @Override
+    public void replaced(Product previous, Product current) {
+        removed(previous);
+        added(current);
+    }
+
+    @Override
+    public void cleared() {
+        byStock.clear();
+        indexedStock.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package repository;
+
+// Từ điển chuỗi dùng trong một lần load: field ít giá trị (category, status, "Kho A"...) lặp lại
+// ở hàng triệu dòng chỉ tạo String một lần. Tra bằng hash trên vùng char của buffer CsvReader,
+// nên dòng trùng giá trị không tạo String mới. Quá maxSize giá trị thì không nhận thêm
+// (field nhiều giá trị hơn dự kiến không làm phình pool). Không an toàn đa luồng: mỗi lần load một pool.
+public class StringPool {
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final int maxSize;
+    private String[] values;
+    private int[] hashes;
+    private int size;
+
+    public StringPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+        this.values = new String[64];
+        this.hashes = new int[64];
+    }
+
+    public String get(char[] buf, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buf[i]; // giống String.hashCode
+        }
+
+        int mask = values.length - 1;
+        int slot = mix(hash) & mask;
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && matches(values[slot], buf, start, length)) {
+                return values[slot];
+            }
+        }
+
+        String value = new String(buf, start, length);
+        if (size < maxSize) {
+            values[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > values.length) {
+                grow();
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        values = new String[oldValues.length * 2];
+        hashes = new int[oldValues.length * 2];
+        int mask = values.length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static boolean matches(String value, char[] buf, int start, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -6,62 +6,174 @@ import interfaces.Searchable;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class SupplierRepository implements Persistable, Searchable<Supplier> {
-    private List<Supplier> suppliers;
+    private final EntityStore<Supplier> suppliers; // id -> Supplier, giữ thứ tự thêm vào
+    private final TrigramIndex<Supplier> searchIndex; // trường 0 là name
     private final String filePath;
+    private final RepositoryMetrics metrics;
+
+    private final ChangeLog changeLog;
+    private final Object compactLock; // compact() ghi cùng file .tmp nên chạy lần lượt
+    private boolean journaling;
+    private int compactThreshold = ChangeLog.DEFAULT_COMPACT_THRESHOLD;
 
     public SupplierRepository(String filePath) {
         this.filePath = filePath;
-        this.suppliers = new ArrayList<>();
+        this.suppliers = new EntityStore<>(Supplier::getId);
+        this.searchIndex = new TrigramIndex<>(String::toLowerCase, Supplier::getName, Supplier::getPhone, Supplier::getProductCategories);
+        this.suppliers.addListener(searchIndex);
+        this.changeLog = new ChangeLog(filePath);
+        this.compactLock = new Object();
+        this.metrics = new RepositoryMetrics("suppliers");
+    }
+
+    // Số liệu thao tác (mặc định tắt), xem RepositoryMetrics
+    public RepositoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Chế độ journal: add/update/delete ghi nối vào <file>.log,
+    // save() chỉ ghi lại toàn bộ file khi log vượt ngưỡng compactThreshold
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    public void setAccentInsensitive(boolean accentInsensitive) {
+        suppliers.lockWrite();
+        try {
+            searchIndex.setFolding(accentInsensitive ? TextFolding::fold : String::toLowerCase);
+        } finally {
+            suppliers.unlockWrite();
+        }
     }
 
     @Override
     public void save() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            // Header
-            writer.write("id,name,phone,email,address,productCategories");
-            writer.newLine();
-
-            // Data
-            for (Supplier supplier : suppliers) {
-                writer.write(supplier.toCSV());
+        long start = metrics.start();
+        try {
+            if (journaling && !changeLog.needsCompaction(compactThreshold)) {
+                return; // Các thay đổi đã nằm trong log
+            }
+            compact();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.SAVE, start);
+        }
+    }
+
+    // Ghi toàn bộ dữ liệu ra file snapshot rồi xóa log.
+    // Chỉ khóa lúc lấy snapshot (bất biến) và version của store; ghi file và fsync ngoài khóa nên đọc/ghi
+    // không bị chặn. Có ghi chen vào lúc đang ghi file thì giữ nguyên log: record mang cả dòng dữ liệu
+    // nên phát lại trên snapshot mới vẫn ra đúng, và log được xóa ở lần compact sau.
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            List<Supplier> snapshot;
+            long version;
+            suppliers.lockRead();
+            try {
+                snapshot = suppliers.snapshot();
+                version = suppliers.version();
+            } finally {
+                suppliers.unlockRead();
+            }
+
+            try (SnapshotWriter writer = new SnapshotWriter(filePath)) {
+                // Header
+                writer.write("id,name,phone,email,address,productCategories");
                 writer.newLine();
+
+                // Data
+                for (Supplier supplier : snapshot) {
+                    writer.write(toCsvRow(supplier));
+                    writer.newLine();
+                }
+                writer.commit();
+                metrics.recordWrite(snapshot.size(), writer.bytesWritten());
+            }
+
+            suppliers.lockWrite();
+            try {
+                if (suppliers.version() == version) {
+                    changeLog.reset();
+                }
+            } finally {
+                suppliers.unlockWrite();
             }
         }
     }
 
     @Override
     public void load() throws IOException {
-        suppliers.clear();
+        long start = metrics.start();
+        try {
+            loadFile();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.LOAD, start);
+        }
+    }
+
+    private void loadFile() throws IOException {
+        Map<String, Supplier> loaded = new LinkedHashMap<>();
+        StringPool pool = new StringPool();
 
         File file = new File(filePath);
-        if (!file.exists()) {
-            return;
+        if (file.exists()) {
+            long rows = 0;
+            try (CsvReader reader = CsvReader.open(filePath)) {
+                reader.next(); // Skip header
+
+                while (reader.next()) {
+                    rows++;
+                    Supplier supplier = parseSupplier(reader, pool);
+                    if (supplier != null) {
+                        loaded.put(supplier.getId(), supplier);
+                    }
+                }
+            }
+            metrics.recordRead(rows, file.length());
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line = reader.readLine(); // Skip header
+        // Phát lại các thay đổi ghi sau snapshot
+        changeLog.replay((op, reader) -> {
+            if (op == ChangeLog.DELETE) {
+                loaded.remove(reader.getString(0));
+                return;
+            }
+            Supplier supplier = parseSupplier(reader, pool);
+            if (supplier != null) {
+                if (op == ChangeLog.UPDATE) {
+                    loaded.remove(supplier.getId());
+                }
+                loaded.put(supplier.getId(), supplier);
+            }
+        });
 
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
+        suppliers.reset(loaded.values());
+    }
 
-                String[] parts = line.split(",", -1);
-                if (parts.length < 6) continue;
+    private Supplier parseSupplier(CsvReader reader, StringPool pool) {
+        if (reader.size() < 6) return null;
 
-                String id = parts[0];
-                String name = parts[1];
-                String phone = parts[2];
-                String email = parts[3];
-                String address = parts[4];
-                String productCategories = parts[5];
+        String id = reader.getString(0);
+        String name = reader.getString(1);
+        String phone = reader.getString(2);
+        String email = reader.getString(3);
+        String address = reader.getString(4);
+        String productCategories = reader.getString(5, pool);
 
-                Supplier supplier = new Supplier(id, name, phone, email, address, productCategories);
-                suppliers.add(supplier);
-            }
-        }
+        return new Supplier(id, name, phone, email, address, productCategories);
+    }
+
+    static String toCsvRow(Supplier supplier) {
+        return Csv.row(supplier.getId(), supplier.getName(), supplier.getPhone(),
+                supplier.getEmail(), supplier.getAddress(), supplier.getProductCategories());
     }
 
     @Override
@@ -71,57 +183,98 @@ public class SupplierRepository implements Persistable, Searchable<Supplier> {
 
     @Override
     public void clear() {
-        suppliers.clear();
+        long start = metrics.start();
+        try {
+            suppliers.clear();
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.CLEAR, start);
+        }
     }
 
     @Override
     public Supplier findById(String id) {
-        return suppliers.stream()
-                .filter(s -> s.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long start = metrics.start();
+        try {
+            return suppliers.get(id);
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        }
     }
 
     @Override
     public List<Supplier> findByName(String name) {
-        String lowerName = name.toLowerCase();
-        return suppliers.stream()
-                .filter(s -> s.getName().toLowerCase().contains(lowerName))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        suppliers.lockRead();
+        try {
+            return searchIndex.search(name, 0);
+        } finally {
+            suppliers.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.FIND_BY_NAME, start);
+        }
     }
 
     @Override
     public List<Supplier> findAll() {
-        return new ArrayList<>(suppliers);
+        long start = metrics.start();
+        try {
+            return new ArrayList<>(suppliers.snapshot());
+        } finally {
+            metrics.record(RepositoryMetrics.Operation.FIND_ALL, start);
+        }
     }
 
     @Override
     public List<Supplier> search(String criteria) {
-        String lower = criteria.toLowerCase();
-        return suppliers.stream()
-                .filter(s -> s.getName().toLowerCase().contains(lower) ||
-                        s.getPhone().contains(lower) ||
-                        s.getProductCategories().toLowerCase().contains(lower))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        suppliers.lockRead();
+        try {
+            return searchIndex.search(criteria);
+        } finally {
+            suppliers.unlockRead();
+            metrics.record(RepositoryMetrics.Operation.SEARCH, start);
+        }
     }
 
     // CRUD operations
     public void add(Supplier supplier) {
-        suppliers.add(supplier);
+        suppliers.lockWrite();
+        try {
+            if (journaling) {
+                changeLog.append(ChangeLog.ADD, toCsvRow(supplier));
+            }
+            suppliers.put(supplier);
+        } finally {
+            suppliers.unlockWrite();
+        }
     }
 
     public void update(Supplier supplier) {
-        Supplier existing = findById(supplier.getId());
-        if (existing != null) {
-            suppliers.remove(existing);
-            suppliers.add(supplier);
+        suppliers.lockWrite();
+        try {
+            if (suppliers.get(supplier.getId()) == null) {
+                return;
+            }
+            if (journaling) {
+                changeLog.append(ChangeLog.UPDATE, toCsvRow(supplier));
+            }
+            suppliers.replace(supplier);
+        } finally {
+            suppliers.unlockWrite();
         }
     }
 
     public void delete(String id) {
-        Supplier supplier = findById(id);
-        if (supplier != null) {
-            suppliers.remove(supplier);
+        suppliers.lockWrite();
+        try {
+            if (suppliers.get(id) == null) {
+                return;
+            }
+            if (journaling) {
+                changeLog.append(ChangeLog.DELETE, Csv.quote(id));
+            }
+            suppliers.remove(id);
+        } finally {
+            suppliers.unlockWrite();
         }
     }
 
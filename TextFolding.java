@@ -0,0 +1,47 @@
+package repository;
+
+import java.text.Normalizer;
+
+// Chuẩn hóa chuỗi để tìm không dấu: "Nguyễn Văn Đức" -> "nguyen van duc"
+// (NFD, bỏ dấu kết hợp, đ/Đ -> d, chữ thường). Chuỗi ASCII chỉ cần lowercase.
+// setAccentInsensitive(true) của các repository fold sẵn key của mỗi entity một lần khi thêm/load,
+// nên search/findByName "nguyen" khớp "Nguyễn" mà không phải fold lại từng entity mỗi truy vấn.
+public final class TextFolding {
+    private TextFolding() {
+    }
+
+    public static String fold(String text) {
+        if (isAscii(text)) {
+            return text.toLowerCase();
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            switch (Character.getType(c)) {
+                case Character.NON_SPACING_MARK:
+                case Character.COMBINING_SPACING_MARK:
+                case Character.ENCLOSING_MARK:
+                    continue; // Dấu thanh, dấu mũ, dấu móc...
+                default:
+                    break;
+            }
+            if (c == 'đ' || c == 'Đ') {
+                sb.append('d');
+            } else {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
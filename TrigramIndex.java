@@ -0,0 +1,233 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Chỉ mục trigram cho tìm chuỗi con (search / findByName), cập nhật theo từng thay đổi của EntityStore.
+// Mỗi entity được gán docId tăng dần theo thứ tự thêm vào và fold (lowercase, bỏ dấu...) các trường một lần.
+// Truy vấn >= 3 ký tự: giao các posting list của trigram trong query rồi kiểm tra lại bằng contains;
+// query ngắn hơn thì duyệt các key đã fold sẵn.
+// Không tự đồng bộ: listener chạy trong khóa ghi của store, truy vấn phải giữ khóa đọc.
+public class TrigramIndex<T> implements EntityStore.Listener<T> {
+    public static final int ALL_FIELDS = -1;
+
+    private static final int MIN_GARBAGE_TO_REBUILD = 1024;
+
+    private Function<String, String> folding;
+    private final List<Function<T, String>> fields;
+    private final List<T> docs;        // docId -> entity, null nếu đã xóa
+    private final List<String[]> keys; // docId -> giá trị đã fold của từng trường
+    private final Map<T, Integer> docIds;
+    private final Map<Long, Postings> postings;
+    private int garbage; // số doc đã xóa/sửa còn để lại docId cũ trong posting
+
+    @SafeVarargs
+    public TrigramIndex(Function<String, String> folding, Function<T, String>... fields) {
+        this.folding = folding;
+        this.fields = Arrays.asList(fields);
+        this.docs = new ArrayList<>();
+        this.keys = new ArrayList<>();
+        this.docIds = new IdentityHashMap<>();
+        this.postings = new HashMap<>();
+    }
+
+    // Đổi cách fold (vd. TextFolding::fold để tìm không dấu) và fold lại toàn bộ entity.
+    // Gọi trong khóa ghi của store.
+    public void setFolding(Function<String, String> folding) {
+        this.folding = folding;
+        rebuild();
+    }
+
+    // Các entity có ít nhất một trường chứa query, theo thứ tự thêm vào
+    public List<T> search(String query) {
+        return search(query, ALL_FIELDS);
+    }
+
+    // field: vị trí trường trong constructor, hoặc ALL_FIELDS
+    public List<T> search(String query, int field) {
+        String key = fold(query);
+        List<T> result = new ArrayList<>();
+
+        if (key.length() < 3) {
+            for (int docId = 0; docId < docs.size(); docId++) {
+                T doc = docs.get(docId);
+                if (doc != null && matches(keys.get(docId), key, field)) {
+                    result.add(doc);
+                }
+            }
+            return result;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            Postings list = postings.get(trigram(key, i));
+            if (list == null) {
+                return result; // Có trigram không xuất hiện ở đâu cả
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        Postings smallest = lists.get(0);
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int docId = smallest.ids[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(docId)) {
+                    continue candidates;
+                }
+            }
+            T doc = docs.get(docId);
+            if (doc != null && matches(keys.get(docId), key, field)) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void added(T entity) {
+        int docId = docs.size();
+        String[] folded = foldFields(entity);
+        docs.add(entity);
+        keys.add(folded);
+        docIds.put(entity, docId);
+        index(docId, folded);
+    }
+
+    @Override
+    public void removed(T entity) {
+        Integer docId = docIds.remove(entity);
+        if (docId == null) {
+            return;
+        }
+        docs.set(docId, null);
+        keys.set(docId, null);
+        garbage++;
+        rebuildIfNeeded();
+    }
+
+    // Giữ docId cũ để thứ tự kết quả không đổi; trigram cũ không còn đúng sẽ bị loại ở bước kiểm tra lại.
+    // Key đã fold không đổi (vd. updateStock, đổi giá) thì posting vẫn đúng: không tạo rác, không rebuild.
+    @Override
+    public void replaced(T previous, T current) {
+        Integer docId = docIds.remove(previous);
+        if (docId == null) {
+            added(current);
+            return;
+        }
+        String[] folded = foldFields(current);
+        docs.set(docId, current);
+        docIds.put(current, docId);
+        if (Arrays.equals(folded, keys.get(docId))) {
+            return;
+        }
+        keys.set(docId, folded);
+        index(docId, folded);
+        garbage++;
+        rebuildIfNeeded();
+    }
+
+    @Override
+    public void cleared() {
+        docs.clear();
+        keys.clear();
+        docIds.clear();
+        postings.clear();
+        garbage = 0;
+    }
+
+    public int size() {
+        return docIds.size();
+    }
+
+    private void index(int docId, String[] folded) {
+        for (String value : folded) {
+            for (int i = 0; i + 3 <= value.length(); i++) {
+                postings.computeIfAbsent(trigram(value, i), k -> new Postings()).add(docId);
+            }
+        }
+    }
+
+    // Đánh số lại khi docId rác chiếm quá nửa
+    private void rebuildIfNeeded() {
+        if (garbage >= MIN_GARBAGE_TO_REBUILD && garbage >= docIds.size()) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        List<T> live = new ArrayList<>(docIds.size());
+        for (T doc : docs) {
+            if (doc != null) {
+                live.add(doc);
+            }
+        }
+        cleared();
+        for (T doc : live) {
+            added(doc);
+        }
+    }
+
+    private String[] foldFields(T entity) {
+        String[] folded = new String[fields.size()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = fold(fields.get(i).apply(entity));
+        }
+        return folded;
+    }
+
+    private String fold(String value) {
+        return value == null ? "" : folding.apply(value);
+    }
+
+    private static boolean matches(String[] folded, String key, int field) {
+        if (field != ALL_FIELDS) {
+            return folded[field].contains(key);
+        }
+        for (String value : folded) {
+            if (value.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long trigram(String value, int i) {
+        return ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+    }
+
+    // Danh sách docId tăng dần
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int docId) {
+            if (size > 0 && ids[size - 1] == docId) {
+                return;
+            }
+            int pos = size == 0 || ids[size - 1] < docId ? size : Arrays.binarySearch(ids, 0, size, docId);
+            if (pos < 0) {
+                pos = -pos - 1;
+            } else if (pos < size) {
+                return; // Đã có
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = docId;
+            size++;
+        }
+
+        boolean contains(int docId) {
+            return Arrays.binarySearch(ids, 0, size, docId) >= 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package benchmark;
+
+import domain.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.OrderRepository;
+import repository.ProductRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Thông lượng đọc của repository dùng chung khi số thread đọc tăng từ 1 đến 32.
+// main() chạy lần lượt 1, 2, 4, 8, 16, 32 thread (JMH -t); đọc không khóa thì ops/s tổng tăng theo
+// số nhân CPU rồi đi ngang, không giảm khi thêm thread.
+// writer=true: thêm một thread nền gọi updateStock ~10 000 lần/s để đo đọc khi có ghi xen kẽ.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrencyBenchmark {
+    private static final int[] READER_THREADS = {1, 2, 4, 8, 16, 32};
+    private static final int LOW_STOCK_THRESHOLD = 20;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean writer;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private ProductRepository productRepository;
+    private OrderRepository orderRepository;
+    private String[] productIds;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-concurrency-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        orderRepository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orderRepository.setProductRepository(productRepository);
+        productRepository.load();
+        orderRepository.load();
+        productIds = productRepository.findAll().stream().map(Product::getId).toArray(String[]::new);
+
+        if (writer) {
+            running = true;
+            writerThread = new Thread(this::writeStock, "stock-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join();
+        }
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Product findById() {
+        return productRepository.findById(productIds[ThreadLocalRandom.current().nextInt(productIds.length)]);
+    }
+
+    @Benchmark
+    public int findAll() {
+        return productRepository.findAll().size();
+    }
+
+    @Benchmark
+    public int getLowStockProducts() {
+        return productRepository.getLowStockProducts(LOW_STOCK_THRESHOLD).size();
+    }
+
+    @Benchmark
+    public double getTotalExportAmount() {
+        return orderRepository.getTotalExportAmount();
+    }
+
+    private void writeStock() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            try {
+                productRepository.updateStock(productIds[random.nextInt(productIds.length)], random.nextInt(100));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : READER_THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(ConcurrencyBenchmark.class.getSimpleName())
+                    .param("sampleDir", args.length > 0 ? args[0] : ".")
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package benchmark;
+
+import repository.Csv;
+import repository.CsvReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Sinh bộ CSV lớn từ các file mẫu (products.csv, customers.csv...) cho benchmark:
+// mỗi file có đúng `rows` dòng, lấy ngẫu nhiên dòng mẫu rồi thay id, tên (thêm số thứ tự),
+// ngày (rải trong 1 năm) và khóa ngoại (order -> supplier/customer, item -> order/product).
+// Chạy: java benchmark.DataGenerator <thư mục mẫu> <thư mục đích> <rows>
+public final class DataGenerator {
+    public static final String PRODUCTS = "products.csv";
+    public static final String CUSTOMERS = "customers.csv";
+    public static final String SUPPLIERS = "suppliers.csv";
+    public static final String IMPORT_ORDERS = "import_orders.csv";
+    public static final String EXPORT_ORDERS = "export_orders.csv";
+    public static final String ORDER_ITEMS = "order_items.csv";
+
+    private static final int DATE_SPREAD_DAYS = 365;
+
+    private DataGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Cách dùng: DataGenerator <thư mục mẫu> <thư mục đích> <rows>");
+            System.exit(1);
+        }
+        generate(Paths.get(args[0]), Paths.get(args[1]), Integer.parseInt(args[2]));
+    }
+
+    public static void generate(Path sampleDir, Path targetDir, int rows) throws IOException {
+        Files.createDirectories(targetDir);
+        Random random = new Random(42); // cố định để các lần chạy so sánh được với nhau
+
+        // Khóa ngoại trỏ tới id đã sinh ở các file trước
+        String[] productIds = ids("P", rows);
+        String[] customerIds = ids("CUS-", rows);
+        String[] supplierIds = ids("SUP-", rows);
+        String[] importIds = ids("IMP-", rows);
+        String[] exportIds = ids("EXP-", rows);
+
+        scale(sampleDir.resolve(PRODUCTS), targetDir.resolve(PRODUCTS), rows, random,
+                (row, i) -> {
+                    row[0] = productIds[i];
+                    row[2] = row[2] + " " + i;
+                });
+        scale(sampleDir.resolve(CUSTOMERS), targetDir.resolve(CUSTOMERS), rows, random,
+                (row, i) -> {
+                    row[0] = customerIds[i];
+                    row[1] = row[1] + " " + i;
+                });
+        scale(sampleDir.resolve(SUPPLIERS), targetDir.resolve(SUPPLIERS), rows, random,
+                (row, i) -> {
+                    row[0] = supplierIds[i];
+                    row[1] = row[1] + " " + i;
+                });
+        scale(sampleDir.resolve(IMPORT_ORDERS), targetDir.resolve(IMPORT_ORDERS), rows, random,
+                (row, i) -> {
+                    row[0] = importIds[i];
+                    row[1] = supplierIds[random.nextInt(rows)];
+                    row[2] = spread(row[2], random);
+                });
+        scale(sampleDir.resolve(EXPORT_ORDERS), targetDir.resolve(EXPORT_ORDERS), rows, random,
+                (row, i) -> {
+                    row[0] = exportIds[i];
+                    row[1] = customerIds[random.nextInt(rows)];
+                    row[2] = spread(row[2], random);
+                });
+        scale(sampleDir.resolve(ORDER_ITEMS), targetDir.resolve(ORDER_ITEMS), rows, random,
+                (row, i) -> {
+                    row[0] = random.nextBoolean() ? importIds[random.nextInt(rows)] : exportIds[random.nextInt(rows)];
+                    row[1] = productIds[random.nextInt(rows)];
+                });
+    }
+
+    private static void scale(Path sample, Path target, int rows, Random random, RowMapper mapper) throws IOException {
+        List<String[]> templates = new ArrayList<>();
+        String header;
+        try (CsvReader reader = CsvReader.open(sample.toString())) {
+            reader.next();
+            header = join(reader);
+            while (reader.next()) {
+                String[] row = new String[reader.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = reader.getString(i);
+                }
+                templates.add(row);
+            }
+        }
+        if (templates.isEmpty()) {
+            throw new IOException("File mẫu không có dữ liệu: " + sample);
+        }
+
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(target, StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(header);
+            writer.write('\n');
+            for (int i = 0; i < rows; i++) {
+                String[] row = templates.get(random.nextInt(templates.size())).clone();
+                mapper.map(row, i);
+                for (int c = 0; c < row.length; c++) {
+                    if (c > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(Csv.quote(row[c]));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String[] ids(String prefix, int rows) {
+        String[] ids = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = prefix + i;
+        }
+        return ids;
+    }
+
+    private static String spread(String date, Random random) {
+        return LocalDate.parse(date).plusDays(random.nextInt(DATE_SPREAD_DAYS)).toString();
+    }
+
+    private static String join(CsvReader reader) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < reader.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(reader.getString(i));
+        }
+        return sb.toString();
+    }
+
+    private interface RowMapper {
+        void map(String[] row, int index);
+    }
+}
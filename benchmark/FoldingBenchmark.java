@@ -0,0 +1,105 @@
+package benchmark;
+
+import domain.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.CustomerRepository;
+import repository.TextFolding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Tìm khách hàng không dấu: key đã fold sẵn khi load (setAccentInsensitive, qua trigram index)
+// so với cách ngây thơ fold lại tên từng khách hàng ở mỗi truy vấn.
+// Kèm GCProfiler: cách ngây thơ cấp phát một chuỗi mới cho mỗi entity mỗi lần tìm.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FoldingBenchmark {
+    private static final String[] QUERIES = {"nguyen", "tran thi", "binh", "le van", "duc"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private CustomerRepository customerRepository;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-folding-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        customerRepository = new CustomerRepository(dataDir.resolve(DataGenerator.CUSTOMERS).toString());
+        customerRepository.setAccentInsensitive(true);
+        customerRepository.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int precomputedKeys() {
+        return customerRepository.findByName(nextQuery()).size();
+    }
+
+    @Benchmark
+    public int perQueryFolding() {
+        String key = TextFolding.fold(nextQuery());
+        List<Customer> result = new ArrayList<>();
+        for (Customer customer : customerRepository.findAll()) {
+            if (TextFolding.fold(customer.getName()).contains(key)) {
+                result.add(customer);
+            }
+        }
+        return result.size();
+    }
+
+    private String nextQuery() {
+        return QUERIES[cursor++ % QUERIES.length];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FoldingBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,155 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.BinarySnapshot;
+import repository.CustomerRepository;
+import repository.OrderRepository;
+import repository.ProductRepository;
+import repository.RepositoryBootstrap;
+import repository.SupplierRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Thời gian nạp lúc khởi động theo cỡ dữ liệu: mỗi lần đo là một lần load mới từ đầu (SingleShotTime).
+// - loadOrders: import_orders + export_orders + order_items rồi gắn items vào order
+//   (customers/suppliers/products đã nạp sẵn trong setUp)
+// - loadAll: cả 6 file qua RepositoryBootstrap
+// - loadBinarySnapshot / loadProductsAndOrdersCsv: cùng products + orders, từ snapshot nhị phân
+//   (BinarySnapshot.load, một lần reset() mỗi store) so với từ 4 file CSV
+// Load tuyến tính thì ms/op chia cho rows gần như không đổi khi rows tăng 10 lần.
+// mapped=true đọc 3 file order bằng MappedCsvFile, các chunk parse song song (không áp dụng cho loadBinarySnapshot).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private CustomerRepository customerRepository;
+    private SupplierRepository supplierRepository;
+    private ProductRepository productRepository;
+    private String snapshotFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-load-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        customerRepository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        supplierRepository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        customerRepository.load();
+        supplierRepository.load();
+        productRepository.load();
+
+        snapshotFile = file("snapshot.bin");
+        OrderRepository orders = newOrderRepository(productRepository);
+        new BinarySnapshot(snapshotFile, productRepository, orders, null, null).convertFromCsv();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int loadOrders() throws IOException {
+        OrderRepository repository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        repository.setCustomerRepository(customerRepository);
+        repository.setSupplierRepository(supplierRepository);
+        repository.setProductRepository(productRepository);
+        repository.setMappedLoad(mapped);
+        repository.load();
+        return repository.countImportOrders() + repository.countExportOrders();
+    }
+
+    @Benchmark
+    public int loadBinarySnapshot() throws IOException {
+        ProductRepository products = new ProductRepository(file(DataGenerator.PRODUCTS));
+        OrderRepository orders = newOrderRepository(products);
+        new BinarySnapshot(snapshotFile, products, orders, null, null).load();
+        return orders.countImportOrders() + orders.countExportOrders();
+    }
+
+    @Benchmark
+    public int loadProductsAndOrdersCsv() throws IOException {
+        ProductRepository products = new ProductRepository(file(DataGenerator.PRODUCTS));
+        OrderRepository orders = newOrderRepository(products);
+        products.load();
+        orders.load();
+        return orders.countImportOrders() + orders.countExportOrders();
+    }
+
+    @Benchmark
+    public int loadAll() throws IOException {
+        OrderRepository orders = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orders.setMappedLoad(mapped);
+        RepositoryBootstrap bootstrap = new RepositoryBootstrap(
+                new CustomerRepository(file(DataGenerator.CUSTOMERS)),
+                new SupplierRepository(file(DataGenerator.SUPPLIERS)),
+                new ProductRepository(file(DataGenerator.PRODUCTS)),
+                orders);
+        bootstrap.loadAll();
+        return orders.countImportOrders() + orders.countExportOrders();
+    }
+
+    private OrderRepository newOrderRepository(ProductRepository products) {
+        OrderRepository orders = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orders.setCustomerRepository(customerRepository);
+        orders.setSupplierRepository(supplierRepository);
+        orders.setProductRepository(products);
+        orders.setMappedLoad(mapped);
+        return orders;
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoadBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import domain.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.ProductRepository;
+import repository.RepositoryMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Chi phí của RepositoryMetrics trên thao tác nhanh nhất (findById) và thao tác có khóa (findByName).
+// So sánh enabled=false với enabled=true; gc.alloc.rate.norm phải bằng nhau ở hai chế độ
+// (ghi số liệu không cấp phát). measureOnly đo riêng cặp start()/record().
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private ProductRepository productRepository;
+    private RepositoryMetrics metrics;
+    private String[] productIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-metrics-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, 100_000);
+        productRepository = new ProductRepository(dataDir.resolve(DataGenerator.PRODUCTS).toString());
+        productRepository.load();
+        productIds = productRepository.findAll().stream().map(Product::getId).toArray(String[]::new);
+
+        metrics = productRepository.getMetrics();
+        metrics.setEnabled(enabled);
+        metrics.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dataDir.resolve(DataGenerator.PRODUCTS));
+        for (String name : new String[]{DataGenerator.CUSTOMERS, DataGenerator.SUPPLIERS,
+                DataGenerator.IMPORT_ORDERS, DataGenerator.EXPORT_ORDERS, DataGenerator.ORDER_ITEMS}) {
+            Files.deleteIfExists(dataDir.resolve(name));
+        }
+        Files.deleteIfExists(dataDir);
+    }
+
+    @Benchmark
+    public Product findById() {
+        cursor = (cursor + 1) % productIds.length;
+        return productRepository.findById(productIds[cursor]);
+    }
+
+    @Benchmark
+    public List<Product> findByName() {
+        return productRepository.findByName("dell");
+    }
+
+    @Benchmark
+    public long measureOnly() {
+        long start = metrics.start();
+        metrics.record(RepositoryMetrics.Operation.FIND_BY_ID, start);
+        return start;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MetricsBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
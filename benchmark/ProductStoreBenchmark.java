@@ -0,0 +1,120 @@
+package benchmark;
+
+import domain.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.OffHeapProductStore;
+import repository.ProductRepository;
+import repository.ProductStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Thời gian dừng GC khi catalog lớn: ProductRepository (mọi Product trên heap)
+// so với OffHeapProductStore (record và chuỗi ngoài heap), cùng đi qua ProductStore.
+// fullGc: thời gian một lần System.gc() phải duyệt toàn bộ heap đang sống.
+// lookupUnderChurn: độ trễ findById khi có rác ngắn hạn liên tục (kéo theo young GC); xem p99/p99.9.
+// setUp in heap đang dùng sau GC để so footprint.
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ProductStoreBenchmark {
+    @Param({"heap", "offheap"})
+    public String store;
+
+    @Param({"1000000", "5000000"})
+    public int rows;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private ProductStore products;
+    private String[] ids;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-product-store-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        String file = dataDir.resolve(DataGenerator.PRODUCTS).toString();
+        products = "offheap".equals(store) ? new OffHeapProductStore(file) : new ProductRepository(file);
+        products.load();
+
+        ids = new String[Math.min(products.count(), 4096)];
+        int i = 0;
+        for (Product product : products.findAll()) {
+            if (i == ids.length) {
+                break;
+            }
+            ids[i++] = product.getId();
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        String offHeap = products instanceof OffHeapProductStore
+                ? " offHeapMB=" + ((OffHeapProductStore) products).offHeapBytes() / (1024 * 1024) : "";
+        System.out.println("\n" + store + " rows=" + products.count() + " heapUsedMB=" + usedMb + offHeap);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 5)
+    public Object lookupUnderChurn() {
+        // Rác ngắn hạn giống một request bình thường, để young GC chạy trong lúc đo
+        byte[] garbage = new byte[16 * 1024];
+        Product product = products.findById(ids[cursor++ % ids.length]);
+        return product != null ? product : garbage;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProductStoreBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
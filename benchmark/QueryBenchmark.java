@@ -0,0 +1,188 @@
+package benchmark;
+
+import domain.ExportOrder;
+import domain.Food;
+import domain.OrderStatus;
+import domain.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.CustomerRepository;
+import repository.OrderQuery;
+import repository.OrderRepository;
+import repository.ProductQuery;
+import repository.ProductRepository;
+import repository.SupplierRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// So sánh ProductQuery/OrderQuery với cách làm cũ findAll().stream().filter().sorted().limit()
+// trên cùng điều kiện. Mỗi cặp *Idiom / *Query phải trả về cùng kết quả (kiểm tra trong setUp).
+// - lowStockFood: type = FOOD AND stock < 200 AND expiry < 2026-07-01, sắp theo salePrice, limit 20
+// - firstByPrice: chỉ có điều kiện không có index (khoảng giá), limit 10, không sắp xếp:
+//   query quét snapshot và dừng ngay khi đủ, không copy danh sách
+// - topExportOrders: COMPLETED trong 1 tuần, sắp theo tổng tiền giảm dần, limit 10
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryBenchmark {
+    private static final int LOW_STOCK = 200;
+    private static final LocalDate EXPIRY = LocalDate.of(2026, 7, 1);
+    private static final double MIN_PRICE = 1_000_000;
+    private static final double MAX_PRICE = 10_000_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private ProductRepository productRepository;
+    private OrderRepository orderRepository;
+    private LocalDate rangeFrom;
+    private LocalDate rangeTo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-query-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        CustomerRepository customerRepository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        SupplierRepository supplierRepository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        orderRepository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orderRepository.setCustomerRepository(customerRepository);
+        orderRepository.setSupplierRepository(supplierRepository);
+        orderRepository.setProductRepository(productRepository);
+        customerRepository.load();
+        supplierRepository.load();
+        productRepository.load();
+        orderRepository.load();
+
+        // Khoảng 1 tuần ở giữa dải ngày đã sinh (như RepositoryBenchmark)
+        LocalDate first = orderRepository.findAllExportOrders().stream()
+                .map(ExportOrder::getOrderDate).min(Comparator.naturalOrder()).orElse(LocalDate.now());
+        rangeFrom = first.plusDays(180);
+        rangeTo = rangeFrom.plusDays(7);
+
+        if (!lowStockFoodIdiom().equals(lowStockFoodQuery())
+                || !topExportOrdersIdiom().equals(topExportOrdersQuery())
+                || firstByPriceIdiom().size() != firstByPriceQuery().size()) {
+            throw new IllegalStateException("Kết quả query khác với findAll().stream()");
+        }
+        System.out.println();
+        System.out.println("lowStockFood: " + productRepository.explain(lowStockFood()));
+        System.out.println("firstByPrice: " + productRepository.explain(firstByPrice()));
+        System.out.println("topExportOrders: " + orderRepository.explainExportOrders(topExportOrders()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Product> lowStockFoodIdiom() {
+        return productRepository.findAll().stream()
+                .filter(p -> "FOOD".equals(p.getProductType()))
+                .filter(p -> p.getStockQuantity() < LOW_STOCK)
+                .filter(p -> ((Food) p).getExpiryDate() != null && ((Food) p).getExpiryDate().isBefore(EXPIRY))
+                .sorted(Comparator.comparingDouble(Product::getSalePrice).thenComparing(Product::getId))
+                .limit(20)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Product> lowStockFoodQuery() {
+        return productRepository.query(lowStockFood());
+    }
+
+    @Benchmark
+    public List<Product> firstByPriceIdiom() {
+        return productRepository.findAll().stream()
+                .filter(p -> p.getSalePrice() >= MIN_PRICE && p.getSalePrice() <= MAX_PRICE)
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Product> firstByPriceQuery() {
+        return productRepository.query(firstByPrice());
+    }
+
+    @Benchmark
+    public List<ExportOrder> topExportOrdersIdiom() {
+        return orderRepository.findAllExportOrders().stream()
+                .filter(o -> o.getStatus() == OrderStatus.COMPLETED)
+                .filter(o -> !o.getOrderDate().isBefore(rangeFrom) && !o.getOrderDate().isAfter(rangeTo))
+                .sorted(Comparator.comparingDouble(ExportOrder::getTotalAmount).reversed()
+                        .thenComparing(ExportOrder::getId))
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ExportOrder> topExportOrdersQuery() {
+        return orderRepository.queryExportOrders(topExportOrders());
+    }
+
+    private ProductQuery lowStockFood() {
+        return new ProductQuery().type("FOOD").stockBelow(LOW_STOCK).expiryBefore(EXPIRY)
+                .orderBy(ProductQuery.Sort.SALE_PRICE).limit(20);
+    }
+
+    private ProductQuery firstByPrice() {
+        return new ProductQuery().salePriceBetween(MIN_PRICE, MAX_PRICE).limit(10);
+    }
+
+    private OrderQuery topExportOrders() {
+        return new OrderQuery().status(OrderStatus.COMPLETED).between(rangeFrom, rangeTo)
+                .orderByDescending(OrderQuery.Sort.TOTAL_AMOUNT).limit(10);
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(QueryBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
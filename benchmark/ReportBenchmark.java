@@ -0,0 +1,151 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.CustomerRepository;
+import repository.OrderAnalytics;
+import repository.OrderRepository;
+import repository.ProductRepository;
+import repository.SupplierRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Báo cáo group-by tuần tự (parallel=false, reportPool null) so với song song trên ForkJoinPool.commonPool().
+// setUp kiểm tra trước kết quả hai cách giống hệt nhau; bảng cột đã dựng sẵn nên chỉ đo phần cộng dồn.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ReportBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private OrderRepository orderRepository;
+    private OrderAnalytics exportAnalytics;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-report-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        CustomerRepository customerRepository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        SupplierRepository supplierRepository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        ProductRepository productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        orderRepository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orderRepository.setCustomerRepository(customerRepository);
+        orderRepository.setSupplierRepository(supplierRepository);
+        orderRepository.setProductRepository(productRepository);
+        customerRepository.load();
+        supplierRepository.load();
+        productRepository.load();
+        orderRepository.load();
+        exportAnalytics = orderRepository.getExportAnalytics();
+        orderRepository.getImportAnalytics();
+
+        checkIdentical();
+        pool = parallel ? ForkJoinPool.commonPool() : null;
+        orderRepository.setReportPool(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Double> revenueByCustomer() {
+        return orderRepository.getRevenueByCustomer();
+    }
+
+    @Benchmark
+    public Map<String, Long> quantitySoldByProduct() {
+        return orderRepository.getQuantitySoldByProduct();
+    }
+
+    @Benchmark
+    public Map<String, Double> importSpendBySupplier() {
+        return orderRepository.getImportSpendBySupplier();
+    }
+
+    @Benchmark
+    public Map<String, Double> importSpendByWarehouse() {
+        return orderRepository.getImportSpendByWarehouse();
+    }
+
+    // Quét cột item, không đổi sang Map: đo riêng phần fork-join + gộp mảng nhóm
+    @Benchmark
+    public long[] marginByCategory() {
+        return exportAnalytics.sum(OrderAnalytics.Dimension.CATEGORY, OrderAnalytics.Measure.MARGIN,
+                null, null, null, pool);
+    }
+
+    // Double.equals so sánh theo bit nên map tiền cũng phải giống hệt, không chỉ gần bằng
+    private void checkIdentical() {
+        if (!Arrays.deepEquals(reports(null), reports(ForkJoinPool.commonPool()))) {
+            throw new IllegalStateException("Kết quả tuần tự và song song khác nhau");
+        }
+    }
+
+    private Object[] reports(ForkJoinPool reportPool) {
+        orderRepository.setReportPool(reportPool);
+        return new Object[]{
+                orderRepository.getRevenueByCustomer(),
+                orderRepository.getQuantitySoldByProduct(),
+                orderRepository.getImportSpendBySupplier(),
+                orderRepository.getImportSpendByWarehouse(),
+                exportAnalytics.sum(OrderAnalytics.Dimension.CATEGORY, OrderAnalytics.Measure.MARGIN,
+                        null, null, null, reportPool)
+        };
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ReportBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .build();
+        new Runner(options).run();
+    }
+}
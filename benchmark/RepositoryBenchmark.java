@@ -0,0 +1,277 @@
+package benchmark;
+
+import domain.Customer;
+import domain.ExportOrder;
+import domain.ImportOrder;
+import domain.Product;
+import domain.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.CustomerRepository;
+import repository.OrderRepository;
+import repository.ProductRepository;
+import repository.SupplierRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Benchmark các đường nóng của 4 repository trên dữ liệu sinh bởi DataGenerator.
+// Chạy: java -cp <classpath có jmh-core> benchmark.RepositoryBenchmark [thư mục csv mẫu]
+// Mặc định chạy kèm GCProfiler để có cả ops/s lẫn tốc độ cấp phát (gc.alloc.rate.norm).
+// Chỉ chạy vài cỡ dữ liệu: -p rows=1000,100000 (qua JMH CLI) hoặc sửa @Param.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RepositoryBenchmark {
+    private static final int LOW_STOCK_THRESHOLD = 20;
+    private static final String[] QUERIES = {"lap", "dell", "samsung", "ao", "ban"};
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    // Thư mục chứa file csv mẫu, mặc định là thư mục chạy
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private CustomerRepository customerRepository;
+    private SupplierRepository supplierRepository;
+    private ProductRepository productRepository;
+    private OrderRepository orderRepository;
+
+    private String[] productIds;
+    private String[] customerIds;
+    private String[] supplierIds;
+    private String[] importOrderIds;
+    private String[] exportOrderIds;
+    private LocalDate rangeFrom;
+    private LocalDate rangeTo;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        customerRepository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        supplierRepository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        orderRepository = newOrderRepository();
+        customerRepository.load();
+        supplierRepository.load();
+        productRepository.load();
+        orderRepository.load();
+
+        productIds = productRepository.findAll().stream().map(Product::getId).toArray(String[]::new);
+        customerIds = customerRepository.findAll().stream().map(Customer::getId).toArray(String[]::new);
+        supplierIds = supplierRepository.findAll().stream().map(Supplier::getId).toArray(String[]::new);
+        importOrderIds = orderRepository.findAllImportOrders().stream().map(ImportOrder::getId).toArray(String[]::new);
+        exportOrderIds = orderRepository.findAllExportOrders().stream().map(ExportOrder::getId).toArray(String[]::new);
+
+        // Khoảng 1 tuần ở giữa dải ngày đã sinh
+        LocalDate first = orderRepository.findAllExportOrders().stream()
+                .map(ExportOrder::getOrderDate).min(Comparator.naturalOrder()).orElse(LocalDate.now());
+        rangeFrom = first.plusDays(180);
+        rangeTo = rangeFrom.plusDays(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // ---- load / save ----
+
+    @Benchmark
+    public int loadProducts() throws IOException {
+        ProductRepository repository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        repository.load();
+        return repository.count();
+    }
+
+    @Benchmark
+    public int loadCustomers() throws IOException {
+        CustomerRepository repository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        repository.load();
+        return repository.count();
+    }
+
+    @Benchmark
+    public int loadSuppliers() throws IOException {
+        SupplierRepository repository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        repository.load();
+        return repository.count();
+    }
+
+    @Benchmark
+    public int loadOrders() throws IOException {
+        OrderRepository repository = newOrderRepository();
+        repository.load();
+        return repository.countImportOrders() + repository.countExportOrders();
+    }
+
+    @Benchmark
+    public void saveProducts() throws IOException {
+        productRepository.save();
+    }
+
+    @Benchmark
+    public void saveCustomers() throws IOException {
+        customerRepository.save();
+    }
+
+    @Benchmark
+    public void saveSuppliers() throws IOException {
+        supplierRepository.save();
+    }
+
+    @Benchmark
+    public void saveOrders() throws IOException {
+        orderRepository.save();
+    }
+
+    // ---- findById / findByName / search ----
+
+    @Benchmark
+    public Product findProductById() {
+        return productRepository.findById(productIds[next(productIds.length)]);
+    }
+
+    @Benchmark
+    public Customer findCustomerById() {
+        return customerRepository.findById(customerIds[next(customerIds.length)]);
+    }
+
+    @Benchmark
+    public Supplier findSupplierById() {
+        return supplierRepository.findById(supplierIds[next(supplierIds.length)]);
+    }
+
+    @Benchmark
+    public ImportOrder findImportOrderById() {
+        return orderRepository.findImportOrderById(importOrderIds[next(importOrderIds.length)]);
+    }
+
+    @Benchmark
+    public ExportOrder findExportOrderById() {
+        return orderRepository.findExportOrderById(exportOrderIds[next(exportOrderIds.length)]);
+    }
+
+    @Benchmark
+    public List<Product> findProductsByName() {
+        return productRepository.findByName(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Customer> findCustomersByName() {
+        return customerRepository.findByName(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Supplier> findSuppliersByName() {
+        return supplierRepository.findByName(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Product> searchProducts() {
+        return productRepository.search(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Customer> searchCustomers() {
+        return customerRepository.search(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Supplier> searchSuppliers() {
+        return supplierRepository.search(QUERIES[next(QUERIES.length)]);
+    }
+
+    // ---- truy vấn tổng hợp ----
+
+    @Benchmark
+    public List<Product> getLowStockProducts() {
+        return productRepository.getLowStockProducts(LOW_STOCK_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<ImportOrder> getImportOrdersByDateRange() {
+        return orderRepository.getImportOrdersByDateRange(rangeFrom, rangeTo);
+    }
+
+    @Benchmark
+    public List<ExportOrder> getExportOrdersByDateRange() {
+        return orderRepository.getExportOrdersByDateRange(rangeFrom, rangeTo);
+    }
+
+    @Benchmark
+    public double getTotalImportAmount() {
+        return orderRepository.getTotalImportAmount();
+    }
+
+    @Benchmark
+    public double getTotalExportAmount() {
+        return orderRepository.getTotalExportAmount();
+    }
+
+    private OrderRepository newOrderRepository() {
+        OrderRepository repository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        repository.setCustomerRepository(customerRepository);
+        repository.setSupplierRepository(supplierRepository);
+        repository.setProductRepository(productRepository);
+        return repository;
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    // Xoay vòng qua các id thay vì Random để không đo cả chi phí sinh số ngẫu nhiên
+    private int next(int bound) {
+        cursor = cursor + 7919; // số nguyên tố, đi qua mọi vị trí khi bound không chia hết cho nó
+        if (cursor < 0) {
+            cursor = 0;
+        }
+        return cursor % bound;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RepositoryBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,187 @@
+package benchmark;
+
+import domain.ExportOrder;
+import domain.ImportOrder;
+import domain.OrderItem;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import repository.CustomerRepository;
+import repository.OrderRepository;
+import repository.ProductRepository;
+import repository.SupplierRepository;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Ghi 3 file order: SnapshotWriter (file tạm + direct buffer 1 MB + fsync + đổi tên, tuần tự hoặc song song)
+// so với cách cũ BufferedWriter 8 KB ghi đè thẳng lên file, không fsync.
+// - *Throughput: số MB ghi được mỗi giây ở cột "megabytes" (AuxCounters)
+// - *Latency: phân bố thời gian một lần save, p1.00 là trường hợp xấu nhất
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SaveBenchmark {
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean parallelSave;
+
+    @Param({"."})
+    public String sampleDir;
+
+    private Path dataDir;
+    private OrderRepository orderRepository;
+    private List<ImportOrder> importOrders;
+    private List<ExportOrder> exportOrders;
+    private double megabytesPerSave;
+
+    // Số MB đã ghi; JMH chia cho thời gian đo thành MB/s
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Written {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("bench-save-" + rows + "-");
+        DataGenerator.generate(Paths.get(sampleDir), dataDir, rows);
+
+        CustomerRepository customerRepository = new CustomerRepository(file(DataGenerator.CUSTOMERS));
+        SupplierRepository supplierRepository = new SupplierRepository(file(DataGenerator.SUPPLIERS));
+        ProductRepository productRepository = new ProductRepository(file(DataGenerator.PRODUCTS));
+        orderRepository = new OrderRepository(file(DataGenerator.IMPORT_ORDERS),
+                file(DataGenerator.EXPORT_ORDERS), file(DataGenerator.ORDER_ITEMS));
+        orderRepository.setCustomerRepository(customerRepository);
+        orderRepository.setSupplierRepository(supplierRepository);
+        orderRepository.setProductRepository(productRepository);
+        orderRepository.setParallelSave(parallelSave);
+        customerRepository.load();
+        supplierRepository.load();
+        productRepository.load();
+        orderRepository.load();
+        importOrders = orderRepository.findAllImportOrders();
+        exportOrders = orderRepository.findAllExportOrders();
+
+        orderRepository.save();
+        megabytesPerSave = (size(DataGenerator.IMPORT_ORDERS) + size(DataGenerator.EXPORT_ORDERS)
+                + size(DataGenerator.ORDER_ITEMS)) / (1024.0 * 1024.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void snapshotWriterThroughput(Written written) throws IOException {
+        orderRepository.save();
+        written.megabytes += megabytesPerSave;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void bufferedWriterThroughput(Written written) throws IOException {
+        saveWithBufferedWriter();
+        written.megabytes += megabytesPerSave;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void snapshotWriterLatency() throws IOException {
+        orderRepository.save();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void bufferedWriterLatency() throws IOException {
+        saveWithBufferedWriter();
+    }
+
+    // Cách ghi trước khi có SnapshotWriter (không phụ thuộc parallelSave)
+    private void saveWithBufferedWriter() throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file("baseline_" + DataGenerator.IMPORT_ORDERS)))) {
+            writer.write("orderId,supplierId,orderDate,totalAmount,status,warehouseLocation");
+            writer.newLine();
+            for (ImportOrder order : importOrders) {
+                writer.write(order.toCSV());
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file("baseline_" + DataGenerator.EXPORT_ORDERS)))) {
+            writer.write("orderId,customerId,orderDate,totalAmount,status,deliveryAddress");
+            writer.newLine();
+            for (ExportOrder order : exportOrders) {
+                writer.write(order.toCSV());
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file("baseline_" + DataGenerator.ORDER_ITEMS)))) {
+            writer.write("orderId,productId,quantity,unitPrice");
+            writer.newLine();
+            for (ImportOrder order : importOrders) {
+                for (OrderItem item : order.getItems()) {
+                    writer.write(item.toCSV(order.getId()));
+                    writer.newLine();
+                }
+            }
+            for (ExportOrder order : exportOrders) {
+                for (OrderItem item : order.getItems()) {
+                    writer.write(item.toCSV(order.getId()));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private long size(String name) throws IOException {
+        return Files.size(dataDir.resolve(name));
+    }
+
+    private String file(String name) {
+        return dataDir.resolve(name).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SaveBenchmark.class.getSimpleName())
+                .param("sampleDir", args.length > 0 ? args[0] : ".")
+                .build();
+        new Runner(options).run();
+    }
+}
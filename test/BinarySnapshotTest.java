@@ -0,0 +1,117 @@
+package repository;
+
+import domain.Clothing;
+import domain.Electronics;
+import domain.ExportOrder;
+import domain.Food;
+import domain.Furniture;
+import domain.ImportOrder;
+import domain.OrderItem;
+import domain.OrderStatus;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// save() rồi load() vào repository mới phải ra đúng từng giá trị,
+// kể cả giá sản phẩm lẻ hơn 2 chữ số thập phân; tiền của order so theo đơn vị Money (như trong CSV)
+class BinarySnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsEveryValue() throws IOException {
+        ProductRepository products = new ProductRepository(file("products.csv"));
+        OrderRepository orders = newOrderRepository(products);
+
+        Product laptop = new Electronics("P1", "Laptop, 13\"", "Computer", 15_000_000.125, 0.1 + 0.2, 25, 24);
+        Product shirt = new Clothing("P2", "Áo thun", "Áo", 99.999, 150.5, 3, "M", "Cotton");
+        Product milk = new Food("P3", "Sữa", "Đồ uống", 1.0 / 3, 12.345, 40, LocalDate.of(2026, 7, 1));
+        Product table = new Furniture("P4", "Bàn", "Nội thất", 3000, 4500, 2, "120x60", 12.75);
+        for (Product product : Arrays.asList(laptop, shirt, milk, table)) {
+            products.add(product);
+        }
+
+        ImportOrder imported = new ImportOrder("IMP-1", LocalDate.of(2025, 11, 1), 45_000_000.05,
+                OrderStatus.COMPLETED, null, "Kho A");
+        imported.setItems(new ArrayList<>(Arrays.asList(
+                new OrderItem(laptop, 3, 15_000_000.01), new OrderItem(milk, 7, 0.07 * 2))));
+        orders.addImportOrder(imported);
+        ExportOrder exported = new ExportOrder("EXP-1", LocalDate.of(2025, 11, 5), 0.1 + 0.7,
+                OrderStatus.PENDING, null, "123 Lê Lợi, Q1");
+        exported.setItems(new ArrayList<>(Arrays.asList(new OrderItem(table, 1, 4499.99))));
+        orders.addExportOrder(exported);
+
+        new BinarySnapshot(file("snapshot.bin"), products, orders, null, null).save();
+
+        ProductRepository loadedProducts = new ProductRepository(file("products.csv"));
+        OrderRepository loadedOrders = newOrderRepository(loadedProducts);
+        new BinarySnapshot(file("snapshot.bin"), loadedProducts, loadedOrders, null, null).load();
+
+        assertEquals(rows(products, orders), rows(loadedProducts, loadedOrders));
+    }
+
+    @Test
+    void loadDoesNotWriteChangeLog() throws IOException {
+        ProductRepository products = new ProductRepository(file("products.csv"));
+        OrderRepository orders = newOrderRepository(products);
+        products.add(new Electronics("P1", "Laptop", "Computer", 100, 150, 5, 12));
+        new BinarySnapshot(file("snapshot.bin"), products, orders, null, null).save();
+
+        ProductRepository loadedProducts = new ProductRepository(file("products.csv"));
+        OrderRepository loadedOrders = newOrderRepository(loadedProducts);
+        loadedProducts.setJournaling(true);
+        loadedOrders.setJournaling(true);
+        new BinarySnapshot(file("snapshot.bin"), loadedProducts, loadedOrders, null, null).load();
+
+        assertEquals(1, loadedProducts.count());
+        assertFalse(Files.exists(dir.resolve("products.csv.log")));
+        assertFalse(Files.exists(dir.resolve("import_orders.csv.log")));
+    }
+
+    private OrderRepository newOrderRepository(ProductRepository products) {
+        OrderRepository orders = new OrderRepository(file("import_orders.csv"),
+                file("export_orders.csv"), file("order_items.csv"));
+        orders.setProductRepository(products);
+        return orders;
+    }
+
+    // Double.toString in đủ chữ số để phân biệt mọi giá trị double
+    private static List<String> rows(ProductRepository products, OrderRepository orders) {
+        List<String> rows = new ArrayList<>();
+        for (Product product : products.findAll()) {
+            rows.add(ProductRepository.toCsvRow(product));
+        }
+        for (ImportOrder order : orders.findAllImportOrders()) {
+            rows.add(Csv.row(order.getId(), order.getOrderDate(), Money.toMinorExact(order.getTotalAmount()),
+                    order.getStatus(), order.getWarehouseLocation()));
+            addItems(rows, order.getItems());
+        }
+        for (ExportOrder order : orders.findAllExportOrders()) {
+            rows.add(Csv.row(order.getId(), order.getOrderDate(), Money.toMinorExact(order.getTotalAmount()),
+                    order.getStatus(), order.getDeliveryAddress()));
+            addItems(rows, order.getItems());
+        }
+        return rows;
+    }
+
+    private static void addItems(List<String> rows, List<OrderItem> items) {
+        for (OrderItem item : items) {
+            rows.add(Csv.row(item.getProduct().getId(), item.getQuantity(), Money.toMinorExact(item.getUnitPrice())));
+        }
+    }
+
+    private String file(String name) {
+        return dir.resolve(name).toString();
+    }
+}
@@ -0,0 +1,59 @@
+package repository;
+
+import domain.Customer;
+import domain.CustomerType;
+import domain.Electronics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Ghi log trước khi đổi dữ liệu: log không ghi được thì repository giữ nguyên như cũ
+class ChangeLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void failedAppendLeavesRepositoryUnchanged() throws Exception {
+        String file = dir.resolve("products.csv").toString();
+        ProductRepository repository = new ProductRepository(file);
+        repository.add(new Electronics("P1", "Laptop", "Computer", 100, 150, 5, 12));
+        repository.setJournaling(true);
+
+        // Thư mục trùng tên file log: mọi lần ghi log đều lỗi
+        Files.createDirectory(dir.resolve("products.csv.log"));
+
+        assertThrows(UncheckedIOException.class,
+                () -> repository.add(new Electronics("P2", "Tivi", "TV", 100, 150, 5, 12)));
+        assertNull(repository.findById("P2"));
+
+        assertThrows(UncheckedIOException.class, () -> repository.updateStock("P1", 1));
+        assertEquals(5, repository.findById("P1").getStockQuantity());
+        assertEquals(0, repository.getLowStockProducts(2).size());
+
+        assertThrows(UncheckedIOException.class, () -> repository.delete("P1"));
+        assertNotNull(repository.findById("P1"));
+    }
+
+    @Test
+    void appendedRecordsSurviveReopen() throws Exception {
+        String file = dir.resolve("customers.csv").toString();
+        CustomerRepository repository = new CustomerRepository(file);
+        repository.setJournaling(true);
+        repository.add(new Customer("CUS-1", "Nguyễn Văn An", "0901", "a@x.vn", "Q1", CustomerType.RETAIL));
+        repository.add(new Customer("CUS-2", "Trần Thị Bình", "0902", "b@x.vn", "Q3", CustomerType.VIP));
+        repository.delete("CUS-1");
+
+        CustomerRepository reopened = new CustomerRepository(file);
+        reopened.load();
+        assertEquals(1, reopened.count());
+        assertEquals("Trần Thị Bình", reopened.findById("CUS-2").getName());
+    }
+}
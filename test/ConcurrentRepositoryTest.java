@@ -0,0 +1,291 @@
+package repository;
+
+import domain.Electronics;
+import domain.ExportOrder;
+import domain.OrderItem;
+import domain.OrderStatus;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nhiều thread ghi và đọc cùng lúc: mỗi lần đọc phải thấy một snapshot nhất quán
+// (không trùng id, không thấy dữ liệu ghi dở), và kết quả cuối đúng như chạy tuần tự.
+class ConcurrentRepositoryTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int PER_WRITER = 2000;
+    private static final int LOW_STOCK = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @Timeout(60)
+    void productReadsSeeConsistentSnapshots() throws Exception {
+        ProductRepository repository = new ProductRepository(dir.resolve("products.csv").toString());
+        for (int i = 0; i < 20; i++) {
+            repository.add(new Electronics("S-" + i, "Stock " + i, "Computer", 100, 150, 500, 12));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS + 1);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int i = 0; i < PER_WRITER; i++) {
+                        repository.add(new Electronics(id(writer, i), "Laptop " + i, "Computer", 100, 150, i % 50, 12));
+                        if (i % 2 == 1) {
+                            repository.delete(id(writer, i));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            writers.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < PER_WRITER; i++) {
+                    repository.updateStock("S-" + (i % 20), i % 2 == 0 ? 5 : 500);
+                }
+                return null;
+            }));
+
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(reader(writing, startSignal, () -> {
+                    List<Product> all = repository.findAll();
+                    assertTrue(uniqueIds(all), "findAll có id trùng");
+                    List<Product> low = repository.getLowStockProducts(LOW_STOCK);
+                    assertTrue(uniqueIds(low), "getLowStockProducts có id trùng");
+                    for (Product product : low) {
+                        // stock của W-* không đổi sau khi thêm; S-* có thể đã được updateStock sau khi lấy danh sách
+                        if (product.getId().startsWith("W")) {
+                            assertTrue(product.getStockQuantity() < LOW_STOCK, product.getId());
+                        }
+                    }
+                    return all.size();
+                })));
+            }
+
+            startSignal.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(20 + WRITERS * PER_WRITER / 2, repository.count());
+        assertEquals(repository.count(), repository.findAll().size());
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 0; i < PER_WRITER; i++) {
+                if (i % 2 == 0) {
+                    assertNotNull(repository.findById(id(w, i)));
+                } else {
+                    assertNull(repository.findById(id(w, i)));
+                }
+            }
+        }
+        int expectedLow = 0;
+        for (Product product : repository.findAll()) {
+            if (product.getStockQuantity() < LOW_STOCK) {
+                expectedLow++;
+            }
+        }
+        assertEquals(expectedLow, repository.getLowStockProducts(LOW_STOCK).size());
+    }
+
+    @Test
+    @Timeout(60)
+    void exportTotalsNeverSeeHalfWrittenOrders() throws Exception {
+        OrderRepository repository = new OrderRepository(dir.resolve("import_orders.csv").toString(),
+                dir.resolve("export_orders.csv").toString(), dir.resolve("order_items.csv").toString());
+        LocalDate date = LocalDate.of(2025, 11, 5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int i = 0; i < PER_WRITER; i++) {
+                        repository.addExportOrder(new ExportOrder(id(writer, i), date, 100,
+                                OrderStatus.COMPLETED, null, "Q1"));
+                        if (i % 2 == 1) {
+                            repository.deleteExportOrder(id(writer, i));
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(reader(writing, startSignal, () -> {
+                    double total = repository.getTotalExportAmount();
+                    assertEquals(0, total % 100, 0.0, "tổng tiền lệch: " + total);
+                    assertTrue(total <= 100.0 * WRITERS * PER_WRITER);
+                    List<ExportOrder> orders = repository.findAllExportOrders();
+                    Set<String> ids = new HashSet<>();
+                    for (ExportOrder order : orders) {
+                        assertTrue(ids.add(order.getId()), "findAllExportOrders có id trùng");
+                    }
+                    return orders.size();
+                })));
+            }
+
+            startSignal.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            for (Future<Integer> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(WRITERS * PER_WRITER / 2, repository.countExportOrders());
+        assertEquals(100.0 * repository.countExportOrders(), repository.getTotalExportAmount(), 0.0);
+        assertEquals(repository.countExportOrders(), repository.findAllExportOrders().size());
+    }
+
+    // compact() ghi file ngoài khóa: thay đổi chen vào lúc đang ghi phải còn nguyên sau khi load lại
+    // (nằm trong snapshot mới hoặc trong log được giữ lại)
+    @Test
+    @Timeout(60)
+    void writesDuringCompactSurviveReload() throws Exception {
+        ProductRepository products = new ProductRepository(dir.resolve("products.csv").toString());
+        OrderRepository orders = new OrderRepository(dir.resolve("import_orders.csv").toString(),
+                dir.resolve("export_orders.csv").toString(), dir.resolve("order_items.csv").toString());
+        products.setJournaling(true);
+        orders.setJournaling(true);
+        orders.setProductRepository(products);
+        LocalDate date = LocalDate.of(2025, 11, 5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < PER_WRITER; i++) {
+                    Product product = new Electronics(id(0, i), "Laptop " + i, "Computer", 100, 150, i % 50, 12);
+                    products.add(product);
+                    ExportOrder order = new ExportOrder(id(0, i), date, 150, OrderStatus.PENDING, null, "Q1");
+                    order.setItems(new ArrayList<>(Arrays.asList(new OrderItem(product, 1, 150))));
+                    orders.addExportOrder(order);
+                    if (i % 3 == 2) {
+                        products.delete(id(0, i - 1));
+                        orders.deleteExportOrder(id(0, i - 1));
+                    }
+                    if (i % 5 == 0) {
+                        orders.updateExportOrderStatus(id(0, i), OrderStatus.COMPLETED);
+                    }
+                }
+                return null;
+            });
+            Future<Integer> compactor = executor.submit(() -> {
+                int compactions = 0;
+                do {
+                    products.compact();
+                    orders.compact();
+                    compactions++;
+                } while (writing.get());
+                return compactions;
+            });
+            writer.get();
+            writing.set(false);
+            assertTrue(compactor.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ProductRepository loadedProducts = new ProductRepository(dir.resolve("products.csv").toString());
+        loadedProducts.load();
+        OrderRepository loadedOrders = new OrderRepository(dir.resolve("import_orders.csv").toString(),
+                dir.resolve("export_orders.csv").toString(), dir.resolve("order_items.csv").toString());
+        loadedOrders.setProductRepository(loadedProducts);
+        loadedOrders.load();
+
+        assertEquals(productRows(products.findAll()), productRows(loadedProducts.findAll()));
+        assertEquals(orderRows(orders.findAllExportOrders()), orderRows(loadedOrders.findAllExportOrders()));
+        assertEquals(orders.getTotalExportAmountMinor(), loadedOrders.getTotalExportAmountMinor());
+    }
+
+    // So theo id (thứ tự có thể khác: phát lại U đưa entity xuống cuối)
+    private static Set<String> productRows(List<Product> products) {
+        Set<String> rows = new HashSet<>();
+        for (Product product : products) {
+            rows.add(ProductRepository.toCsvRow(product));
+        }
+        return rows;
+    }
+
+    private static Set<String> orderRows(List<ExportOrder> orders) {
+        Set<String> rows = new HashSet<>();
+        for (ExportOrder order : orders) {
+            StringBuilder row = new StringBuilder(OrderRepository.toCsvRow(order));
+            for (OrderItem item : order.getItems()) {
+                row.append('|').append(OrderRepository.toCsvRow(order.getId(), item));
+            }
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    // Đọc lặp lại cho tới khi các thread ghi xong (ít nhất một lần), trả về kết quả lần đọc cuối
+    private static Callable<Integer> reader(AtomicBoolean writing, CountDownLatch startSignal, Callable<Integer> read) {
+        return () -> {
+            startSignal.await();
+            int last;
+            do {
+                last = read.call();
+            } while (writing.get());
+            return last;
+        };
+    }
+
+    private static boolean uniqueIds(List<Product> products) {
+        Set<String> ids = new HashSet<>();
+        for (Product product : products) {
+            if (!ids.add(product.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String id(int writer, int i) {
+        return "W" + writer + "-" + i;
+    }
+}
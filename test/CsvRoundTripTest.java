@@ -0,0 +1,162 @@
+package repository;
+
+import domain.Clothing;
+import domain.Customer;
+import domain.CustomerType;
+import domain.Electronics;
+import domain.Food;
+import domain.Furniture;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Ghi bằng Csv rồi đọc lại bằng CsvReader phải ra đúng giá trị cũ,
+// kể cả khi field có dấu phẩy, dấu nháy kép hoặc xuống dòng.
+class CsvRoundTripTest {
+    private static final String[] TRICKY = {
+            "Tivi 55\"", "Bàn, ghế gỗ", "Áo \"thun\" trắng", "Dòng 1\nDòng 2", "Kho A\r\ntầng 2", "\"", ",", ""
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quoteOnlyWhenNeeded() {
+        assertEquals("Laptop Dell", Csv.quote("Laptop Dell"));
+        assertEquals("\"Bàn, ghế\"", Csv.quote("Bàn, ghế"));
+        assertEquals("\"Tivi 55\"\"\"", Csv.quote("Tivi 55\""));
+        assertEquals("\"a\nb\"", Csv.quote("a\nb"));
+        assertEquals("", Csv.quote(null));
+        assertEquals("P1,,12,2025-01-02,", Csv.row("P1", null, 12, LocalDate.of(2025, 1, 2), null));
+    }
+
+    @Test
+    void readerReadsBackQuotedFields() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String value : TRICKY) {
+            text.append(Csv.row("id", value, 1)).append('\n');
+        }
+        try (CsvReader reader = new CsvReader(new StringReader(text.toString()))) {
+            for (String value : TRICKY) {
+                assertTrue(reader.next());
+                assertEquals(3, reader.size());
+                assertEquals(value, reader.getString(1));
+                assertEquals(1, reader.getInt(2));
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void strayQuoteInsideFieldIsPlainCharacter() throws IOException {
+        // File sửa tay: dấu nháy giữa field không được nuốt các dòng phía sau
+        String text = "P1,Tivi 55\" Sony,10\nP2,Loa,20\n";
+        try (CsvReader reader = new CsvReader(new StringReader(text))) {
+            assertTrue(reader.next());
+            assertEquals("Tivi 55\" Sony", reader.getString(1));
+            assertTrue(reader.next());
+            assertEquals("P2", reader.getString(0));
+            assertEquals(20, reader.getInt(2));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void productSnapshotRoundTrip() throws IOException {
+        String file = dir.resolve("products.csv").toString();
+        ProductRepository repository = new ProductRepository(file);
+        List<Product> products = products();
+        for (Product product : products) {
+            repository.add(product);
+        }
+        repository.save();
+
+        ProductRepository reloaded = new ProductRepository(file);
+        reloaded.load();
+        assertSameRows(products, reloaded.findAll());
+    }
+
+    @Test
+    void productJournalRoundTrip() throws Exception {
+        String file = dir.resolve("products.csv").toString();
+        ProductRepository repository = new ProductRepository(file);
+        repository.setJournaling(true);
+        List<Product> products = products();
+        for (Product product : products) {
+            repository.add(product);
+        }
+        repository.delete(products.get(0).getId());
+        products.remove(0);
+
+        ProductRepository reloaded = new ProductRepository(file);
+        reloaded.load();
+        assertSameRows(products, reloaded.findAll());
+    }
+
+    @Test
+    void customerJournalRoundTrip() throws IOException {
+        String file = dir.resolve("customers.csv").toString();
+        CustomerRepository repository = new CustomerRepository(file);
+        repository.setJournaling(true);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < TRICKY.length; i++) {
+            Customer customer = new Customer("CUS-" + i, TRICKY[i], "090" + i, "a" + i + "@x.vn",
+                    TRICKY[TRICKY.length - 1 - i], CustomerType.RETAIL);
+            repository.add(customer);
+            expected.add(CustomerRepository.toCsvRow(customer));
+        }
+
+        CustomerRepository reloaded = new CustomerRepository(file);
+        reloaded.load();
+        List<String> actual = new ArrayList<>();
+        for (Customer customer : reloaded.findAll()) {
+            actual.add(CustomerRepository.toCsvRow(customer));
+        }
+        assertEquals(expected, actual);
+        assertTrue(new String(Files.readAllBytes(Paths.get(file + ".log")), StandardCharsets.UTF_8).contains("\"Bàn, ghế gỗ\""));
+    }
+
+    private static List<Product> products() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < TRICKY.length; i++) {
+            String name = TRICKY[i];
+            String other = TRICKY[TRICKY.length - 1 - i];
+            switch (i % 4) {
+                case 0:
+                    products.add(new Electronics("P" + i, name, other, 1500.5, 1999.99, i, 12));
+                    break;
+                case 1:
+                    products.add(new Clothing("P" + i, name, "Áo", 100, 150, i, other, name));
+                    break;
+                case 2:
+                    products.add(new Food("P" + i, name, other, 10, 12.5, i, LocalDate.of(2026, 1, i + 1)));
+                    break;
+                default:
+                    products.add(new Furniture("P" + i, name, other, 3000, 4500, i, other, 12.75));
+                    break;
+            }
+        }
+        return products;
+    }
+
+    private static void assertSameRows(List<Product> expected, List<Product> actual) {
+        String[] expectedRows = expected.stream().map(ProductRepository::toCsvRow).sorted().toArray(String[]::new);
+        String[] actualRows = actual.stream().map(ProductRepository::toCsvRow).sorted().toArray(String[]::new);
+        assertEquals(Arrays.asList(expectedRows), Arrays.asList(actualRows));
+    }
+}
@@ -0,0 +1,57 @@
+package repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Chia chunk ở mọi cỡ phải đọc ra đúng các dòng như CsvReader đọc cả file,
+// kể cả khi field trong nháy có xuống dòng hoặc dấu nháy lạc giữa field.
+class MappedCsvFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunksNeverSplitQuotedMultiLineFields() throws IOException {
+        StringBuilder text = new StringBuilder("orderId,customerId,orderDate,totalAmount,status,deliveryAddress\n");
+        for (int i = 0; i < 200; i++) {
+            String address = i % 3 == 0 ? "Tầng " + i + "\nQ1, TPHCM" : i % 3 == 1 ? "Kho \"B\"\n\nlô " + i : "Tivi 55\" " + i;
+            text.append(Csv.row("EXP-" + i, "CUS-" + i, "2025-11-05", 1000 * i, "COMPLETED", address)).append('\n');
+        }
+        Path file = dir.resolve("export_orders.csv");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> expected = new ArrayList<>();
+        try (CsvReader reader = CsvReader.open(file.toString())) {
+            readAll(reader, expected);
+        }
+        assertEquals(201, expected.size());
+
+        for (int chunkSize : new int[]{1, 7, 64, 1000, 1 << 20}) {
+            List<String> actual = new ArrayList<>();
+            try (MappedCsvFile mapped = MappedCsvFile.open(file.toString(), chunkSize)) {
+                for (MappedCsvFile.Chunk chunk; (chunk = mapped.nextChunk()) != null; ) {
+                    readAll(chunk.open(), actual);
+                }
+            }
+            assertEquals(expected, actual, "chunkSize=" + chunkSize);
+        }
+    }
+
+    private static void readAll(CsvReader reader, List<String> rows) throws IOException {
+        while (reader.next()) {
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < reader.size(); i++) {
+                fields.add(reader.getString(i));
+            }
+            rows.add(fields.toString());
+        }
+    }
+}
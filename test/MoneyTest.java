@@ -0,0 +1,112 @@
+package repository;
+
+import domain.ImportOrder;
+import domain.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Tiền đọc/ghi chính xác đến 1/SCALE: số lẻ hơn bị từ chối chứ không âm thầm làm tròn,
+// và mọi giá trị ghi ra đều đọc lại được
+class MoneyTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void parseRejectsMoreThanTwoDecimals() {
+        assertEquals(1235, Money.parseRounded("12.345"));
+        assertEquals(1250, parse("12.5"));
+        assertEquals(1250, parse("12.500"));
+        assertEquals(14_800_000_000L, parse("1.48E8"));
+        assertEquals(-5, parse("-0.05"));
+        assertThrows(NumberFormatException.class, () -> parse("12.345"));
+        assertThrows(NumberFormatException.class, () -> parse("0.005"));
+        assertThrows(NumberFormatException.class, () -> parse("1.23456E2"));
+    }
+
+    @Test
+    void formatRoundTripsThroughParse() {
+        long[] values = {0, 5, 50, 1250, 1205, -5, -1250, 14_800_000_000L, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        for (long minor : values) {
+            assertEquals(minor, parse(Money.format(minor)), Money.format(minor));
+        }
+        assertEquals("148000000", Money.format(14_800_000_000L));
+        assertEquals("12.05", Money.format(1205));
+        assertEquals("-0.5", Money.format(-50));
+    }
+
+    @Test
+    void toMinorExactIgnoresDoubleNoiseOnly() {
+        assertEquals(30, Money.toMinorExact(0.1 + 0.2));
+        assertEquals(4_500_000_000L, Money.toMinorExact(4.5E7));
+        assertThrows(ArithmeticException.class, () -> Money.toMinorExact(12.345));
+        assertThrows(ArithmeticException.class, () -> Money.toMinorExact(45_000_000.005));
+    }
+
+    @Test
+    void savedOrdersLoadBack() throws Exception {
+        OrderRepository orders = newOrderRepository();
+        orders.addImportOrder(new ImportOrder("IMP-1", LocalDate.of(2025, 11, 1), 0.1 + 0.2,
+                OrderStatus.COMPLETED, null, "Kho A"));
+        orders.addImportOrder(new ImportOrder("IMP-2", LocalDate.of(2025, 11, 2), 148_000_000,
+                OrderStatus.COMPLETED, null, "Kho A"));
+        orders.save();
+
+        OrderRepository loaded = newOrderRepository();
+        loaded.load();
+        assertEquals(0.3, loaded.findImportOrderById("IMP-1").getTotalAmount(), 0.0);
+        assertEquals(148_000_000, loaded.findImportOrderById("IMP-2").getTotalAmount(), 0.0);
+
+    }
+
+    @Test
+    void subCentOrderIsRejectedBeforeItReachesTheStore() throws Exception {
+        OrderRepository orders = newOrderRepository();
+        orders.addImportOrder(new ImportOrder("IMP-1", LocalDate.of(2025, 11, 1), 12.34,
+                OrderStatus.COMPLETED, null, "Kho A"));
+
+        assertThrows(ArithmeticException.class, () -> orders.addImportOrder(new ImportOrder("IMP-2",
+                LocalDate.of(2025, 11, 2), 12.345, OrderStatus.COMPLETED, null, "Kho A")));
+        assertNull(orders.findImportOrderById("IMP-2"));
+        assertEquals(1, orders.countImportOrdersByStatus(OrderStatus.COMPLETED));
+        assertEquals(12.34, orders.getImportAmountByStatus(OrderStatus.COMPLETED), 0.0);
+
+        orders.save();
+        OrderRepository loaded = newOrderRepository();
+        loaded.load();
+        assertEquals(1, loaded.findAllImportOrders().size());
+    }
+
+    @Test
+    void legacyCsvWithMoreDecimalsIsRoundedOnLoad() throws Exception {
+        Files.write(dir.resolve("import_orders.csv"), Arrays.asList(
+                "orderId,supplierId,orderDate,totalAmount,status,warehouseLocation",
+                "IMP-1,,2025-11-01,12.345,COMPLETED,Kho A",
+                "IMP-2,,2025-11-02,0.1,COMPLETED,Kho A"), StandardCharsets.UTF_8);
+
+        OrderRepository loaded = newOrderRepository();
+        loaded.load();
+        assertEquals(12.35, loaded.findImportOrderById("IMP-1").getTotalAmount(), 0.0);
+        assertEquals(0.1, loaded.findImportOrderById("IMP-2").getTotalAmount(), 0.0);
+        loaded.save();
+    }
+
+    private static long parse(String text) {
+        char[] buf = text.toCharArray();
+        return Money.parse(buf, 0, buf.length);
+    }
+
+    private OrderRepository newOrderRepository() {
+        return new OrderRepository(dir.resolve("import_orders.csv").toString(),
+                dir.resolve("export_orders.csv").toString(), dir.resolve("order_items.csv").toString());
+    }
+}
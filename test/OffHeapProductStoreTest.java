@@ -0,0 +1,118 @@
+package repository;
+
+import domain.Clothing;
+import domain.Electronics;
+import domain.Food;
+import domain.Furniture;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// OffHeapProductStore phải trả đúng như ProductRepository sau mọi chuỗi thao tác,
+// và không phình mãi khi sản phẩm bị xóa hoặc đổi tên liên tục
+class OffHeapProductStoreTest {
+    private static final String[] WORDS = {"Laptop", "ÁO", "Đèn", "bàn", "Sữa", "tivi", "DELL", "Ấm"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesProductRepositoryAfterRandomChanges() throws Exception {
+        Random random = new Random(7);
+        ProductRepository expected = new ProductRepository(dir.resolve("heap.csv").toString());
+        OffHeapProductStore actual = new OffHeapProductStore(dir.resolve("offheap.csv").toString());
+
+        for (int step = 0; step < 20_000; step++) {
+            String id = "P" + random.nextInt(500);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Product product = product(id, random);
+                    expected.add(product);
+                    actual.add(product);
+                    break;
+                case 2:
+                    if (expected.findById(id) != null) {
+                        expected.delete(id);
+                    }
+                    actual.delete(id);
+                    break;
+                default:
+                    int stock = random.nextInt(30);
+                    if (expected.findById(id) != null) {
+                        expected.updateStock(id, stock);
+                    }
+                    actual.updateStock(id, stock);
+                    break;
+            }
+
+            if (step % 500 == 0) {
+                assertEquals(rows(expected.findAll()), rows(actual.findAll()), "step=" + step);
+                String query = WORDS[random.nextInt(WORDS.length)].substring(0, 2);
+                assertEquals(rows(expected.search(query)), rows(actual.search(query)), query);
+                assertEquals(rows(expected.findByName(query)), rows(actual.findByName(query)), query);
+            }
+        }
+        assertEquals(expected.count(), actual.count());
+        assertEquals(rows(expected.findAll()), rows(actual.findAll()));
+    }
+
+    @Test
+    void deletesAndRenamesDoNotGrowOffHeapMemory() {
+        OffHeapProductStore store = new OffHeapProductStore(dir.resolve("offheap.csv").toString());
+        store.add(new Electronics("P0", "Laptop", "Computer", 100, 150, 5, 12));
+        long initial = store.offHeapBytes();
+
+        // Mỗi tên ~1 KB, tổng ~100 MB chuỗi đã bỏ
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < 100_000; i++) {
+            store.add(new Electronics("P1", "Tivi " + i + padding, "TV", 100, 150, 5, 12));
+        }
+        for (int i = 0; i < 200_000; i++) {
+            store.add(new Electronics("T" + i, "Tạm", "TV", 100, 150, 5, 12));
+            store.delete("T" + i);
+        }
+
+        assertEquals(2, store.count());
+        assertEquals("Tivi 99999" + padding, store.findById("P1").getName());
+        assertEquals(1, store.search("tivi 99999").size());
+        assertTrue(store.offHeapBytes() <= 2 * initial, "offHeapBytes=" + store.offHeapBytes());
+    }
+
+    private static Product product(String id, Random random) {
+        String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+        String category = WORDS[random.nextInt(WORDS.length)];
+        double importPrice = random.nextInt(100_000) / 7.0;
+        int stock = random.nextInt(30);
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Electronics(id, name, category, importPrice, importPrice * 1.2, stock, 12);
+            case 1:
+                return new Clothing(id, name, category, importPrice, importPrice * 1.2, stock, "M", "Cotton");
+            case 2:
+                return new Food(id, name, category, importPrice, importPrice * 1.2, stock, LocalDate.of(2026, 7, 1));
+            default:
+                return new Furniture(id, name, category, importPrice, importPrice * 1.2, stock, "120x60", 12.75);
+        }
+    }
+
+    private static List<String> rows(List<Product> products) {
+        List<String> rows = new ArrayList<>();
+        for (Product product : products) {
+            rows.add(ProductRepository.toCsvRow(product));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,48 @@
+package repository;
+
+import domain.Electronics;
+import domain.ImportOrder;
+import domain.OrderItem;
+import domain.OrderStatus;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Bảng phân tích đã cache phải dựng lại khi sản phẩm đổi, dù không có order nào đổi
+class OrderAnalyticsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void productUpdateInvalidatesCachedAnalytics() throws Exception {
+        ProductRepository products = new ProductRepository(dir.resolve("products.csv").toString());
+        OrderRepository orders = new OrderRepository(dir.resolve("import_orders.csv").toString(),
+                dir.resolve("export_orders.csv").toString(), dir.resolve("order_items.csv").toString());
+        orders.setProductRepository(products);
+
+        Product laptop = new Electronics("P1", "Laptop", "Computer", 100, 150, 5, 12);
+        products.add(laptop);
+        ImportOrder order = new ImportOrder("IMP-1", LocalDate.of(2025, 11, 1), 300,
+                OrderStatus.COMPLETED, null, "Kho A");
+        order.setItems(new ArrayList<>(Collections.singletonList(new OrderItem(laptop, 3, 100))));
+        orders.addImportOrder(order);
+
+        Map<String, Long> before = orders.getImportAnalytics().groupSum(
+                OrderAnalytics.Dimension.CATEGORY, OrderAnalytics.Measure.MARGIN, null);
+        assertEquals(Collections.singletonMap("Computer", 3 * 50L * Money.SCALE), before);
+
+        products.update(new Electronics("P1", "Laptop", "Laptop", 100, 180, 5, 12));
+
+        Map<String, Long> after = orders.getImportAnalytics().groupSum(
+                OrderAnalytics.Dimension.CATEGORY, OrderAnalytics.Measure.MARGIN, null);
+        assertEquals(Collections.singletonMap("Laptop", 3 * 80L * Money.SCALE), after);
+    }
+}
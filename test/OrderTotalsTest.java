@@ -0,0 +1,188 @@
+package repository;
+
+import domain.ExportOrder;
+import domain.ImportOrder;
+import domain.OrderStatus;
+import exception.OrderNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Bộ đếm cập nhật dần phải luôn bằng tính lại từ đầu trên findAll...(),
+// sau mọi chuỗi thêm / thay thế / đổi status / xóa ngẫu nhiên.
+class OrderTotalsTest {
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void incrementalTotalsMatchFullRecomputation() throws Exception {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            OrderRepository repository = new OrderRepository(file("import_orders.csv"),
+                    file("export_orders.csv"), file("order_items.csv"));
+
+            for (int step = 0; step < 2000; step++) {
+                String id = "O" + random.nextInt(200);
+                try {
+                    switch (random.nextInt(6)) {
+                        case 0:
+                            repository.addImportOrder(new ImportOrder(id, date(random), amount(random),
+                                    status(random), null, "Kho A"));
+                            break;
+                        case 1:
+                            repository.addExportOrder(new ExportOrder(id, date(random), amount(random),
+                                    status(random), null, "Q1"));
+                            break;
+                        case 2:
+                            repository.updateImportOrderStatus(id, status(random));
+                            break;
+                        case 3:
+                            repository.updateExportOrderStatus(id, status(random));
+                            break;
+                        case 4:
+                            repository.deleteImportOrder(id);
+                            break;
+                        default:
+                            repository.deleteExportOrder(id);
+                            break;
+                    }
+                } catch (OrderNotFoundException e) {
+                    // id chưa có: bỏ qua, vẫn kiểm tra bộ đếm không đổi
+                }
+
+                if (step % 50 == 0) {
+                    assertMatches(repository, "seed=" + seed + " step=" + step);
+                }
+            }
+            assertMatches(repository, "seed=" + seed);
+        }
+    }
+
+    // Đổi status liên tục trong lúc đọc: mỗi snapshot phải khớp tính lại từ đầu, tức mọi order
+    // nằm đúng một status và tiền từng status = số order x tiền mỗi order (cùng tiền cho mọi order)
+    @Test
+    @Timeout(60)
+    void totalsStayConsistentDuringStatusTransitions() throws Exception {
+        int orders = 200;
+        long amountMinor = 10_025;
+        OrderRepository repository = new OrderRepository(file("import_orders.csv"),
+                file("export_orders.csv"), file("order_items.csv"));
+        for (int i = 0; i < orders; i++) {
+            repository.addExportOrder(new ExportOrder("O" + i, START, Money.toDouble(amountMinor),
+                    OrderStatus.PENDING, null, "Q1"));
+        }
+        repository.save();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                Random random = new Random(3);
+                for (int step = 0; step < 50_000; step++) {
+                    repository.updateExportOrderStatus("O" + random.nextInt(orders), status(random));
+                    if (step % 5_000 == 0) {
+                        repository.load(); // reset về file đã lưu: cleared rồi added từng order
+                    }
+                }
+                return null;
+            });
+            List<Future<Long>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    long reads = 0;
+                    do {
+                        OrderTotals.Snapshot totals = repository.getExportTotals();
+                        long count = 0;
+                        long amount = 0;
+                        for (OrderStatus status : STATUSES) {
+                            assertEquals(totals.count(status) * amountMinor, totals.amountMinor(status), status.name());
+                            count += totals.count(status);
+                            amount += totals.amountMinor(status);
+                        }
+                        assertEquals(orders, count);
+                        assertEquals(count * amountMinor, amount);
+                        reads++;
+                    } while (writing.get());
+                    return reads;
+                }));
+            }
+            writer.get();
+            writing.set(false);
+            for (Future<Long> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertMatches(repository, "concurrent");
+    }
+
+    private static void assertMatches(OrderRepository repository, String context) {
+        List<ImportOrder> imports = repository.findAllImportOrders();
+        List<ExportOrder> exports = repository.findAllExportOrders();
+        for (OrderStatus status : STATUSES) {
+            long importCount = 0;
+            BigDecimal importAmount = BigDecimal.ZERO;
+            for (ImportOrder order : imports) {
+                if (order.getStatus() == status) {
+                    importCount++;
+                    importAmount = importAmount.add(BigDecimal.valueOf(order.getTotalAmount()));
+                }
+            }
+            long exportCount = 0;
+            BigDecimal exportAmount = BigDecimal.ZERO;
+            for (ExportOrder order : exports) {
+                if (order.getStatus() == status) {
+                    exportCount++;
+                    exportAmount = exportAmount.add(BigDecimal.valueOf(order.getTotalAmount()));
+                }
+            }
+
+            String where = context + " " + status;
+            assertEquals(importCount, repository.countImportOrdersByStatus(status), where);
+            assertEquals(exportCount, repository.countExportOrdersByStatus(status), where);
+            assertEquals(0, importAmount.compareTo(BigDecimal.valueOf(repository.getImportAmountByStatus(status))),
+                    where + " import " + importAmount);
+            assertEquals(0, exportAmount.compareTo(BigDecimal.valueOf(repository.getExportAmountByStatus(status))),
+                    where + " export " + exportAmount);
+        }
+
+        BigDecimal completed = BigDecimal.valueOf(repository.getTotalExportAmountMinor())
+                .divide(BigDecimal.valueOf(Money.SCALE));
+        assertEquals(0, completed.compareTo(BigDecimal.valueOf(repository.getTotalExportAmount())), context);
+    }
+
+    // Số tiền có đúng 2 chữ số thập phân, đủ lớn để cộng bằng double thì lệch
+    private static double amount(Random random) {
+        return (random.nextInt(1_000_000_000) + 1) / 100.0;
+    }
+
+    private static LocalDate date(Random random) {
+        return START.plusDays(random.nextInt(365));
+    }
+
+    private static OrderStatus status(Random random) {
+        return STATUSES[random.nextInt(STATUSES.length)];
+    }
+
+    private String file(String name) {
+        return dir.resolve(name).toString();
+    }
+}
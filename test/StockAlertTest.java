@@ -0,0 +1,90 @@
+package repository;
+
+import domain.Electronics;
+import domain.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Listener nhận đủ mọi thay đổi của tập sản phẩm dưới ngưỡng (thêm mới, đổi stock, xóa, load lại, clear)
+// nên không cần poll getLowStockProducts
+class StockAlertTest {
+    private static final int THRESHOLD = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void addDeleteAndUpdateNotify() throws Exception {
+        ProductRepository repository = new ProductRepository(dir.resolve("products.csv").toString());
+        List<String> events = new ArrayList<>();
+        repository.addStockListener(THRESHOLD, recorder(events));
+
+        repository.add(product("P1", 3));
+        repository.add(product("P2", 50));
+        repository.updateStock("P2", 5);
+        repository.updateStock("P1", 20);
+        repository.delete("P2");
+        repository.delete("P1");
+
+        assertEquals(Arrays.asList("low P1", "low P2", "restored P1", "removed P2"), events);
+    }
+
+    @Test
+    void loadAndClearNotifyTheDifference() throws Exception {
+        ProductRepository saved = new ProductRepository(dir.resolve("products.csv").toString());
+        saved.add(product("P1", 3));   // vẫn thấp sau load
+        saved.add(product("P2", 50));  // thấp trong bộ nhớ, cao trong file
+        saved.add(product("P4", 1));   // chỉ có trong file
+        saved.save();
+
+        ProductRepository repository = new ProductRepository(dir.resolve("products.csv").toString());
+        repository.add(product("P1", 3));
+        repository.add(product("P2", 5));
+        repository.add(product("P3", 2)); // không có trong file
+        List<String> events = new ArrayList<>();
+        repository.addStockListener(THRESHOLD, recorder(events));
+
+        repository.load();
+        assertEquals(Arrays.asList("restored P2", "low P4", "removed P3"), events);
+
+        events.clear();
+        repository.clear();
+        assertEquals(Arrays.asList("removed P1", "removed P4"), sorted(events));
+    }
+
+    private static ProductRepository.StockListener recorder(List<String> events) {
+        return new ProductRepository.StockListener() {
+            @Override
+            public void stockLow(Product product, int threshold) {
+                events.add("low " + product.getId());
+            }
+
+            @Override
+            public void stockRestored(Product product, int threshold) {
+                events.add("restored " + product.getId());
+            }
+
+            @Override
+            public void lowStockRemoved(Product product, int threshold) {
+                events.add("removed " + product.getId());
+            }
+        };
+    }
+
+    private static List<String> sorted(List<String> events) {
+        List<String> copy = new ArrayList<>(events);
+        copy.sort(null);
+        return copy;
+    }
+
+    private static Product product(String id, int stock) {
+        return new Electronics(id, "Laptop " + id, "Computer", 100, 150, stock, 12);
+    }
+}